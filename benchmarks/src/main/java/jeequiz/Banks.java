@@ -0,0 +1,64 @@
+package jeequiz;
+
+// Banks : this class builds synthetic question banks of a given size for the
+// benchmarks. Questions are created once and shared by every student, so a
+// benchmark with many sessions only allocates the per-student score state, just
+// like sessions in QuizEngine share one compiled bank.
+
+class Banks {
+
+    static final int SUBJECTS = 3;
+    static final int SUBTOPICS = 3;
+
+    // questions[subject][subtopic][question] for a bank of about bankSize questions
+
+    static MCQQuestion[][][] questions(int bankSize, int subjects, int subtopics) {
+        int perSubtopic = Math.max(1, bankSize / (subjects * subtopics));
+        MCQQuestion[][][] qs = new MCQQuestion[subjects][subtopics][perSubtopic];
+        for (int s = 0; s < subjects; s++)
+            for (int t = 0; t < subtopics; t++)
+                for (int q = 0; q < perSubtopic; q++) {
+                    String[] opts = { "A" + q, "B" + q, "C" + q, "D" + q };
+                    qs[s][t][q] = new MCQQuestion("Question " + s + "." + t + "." + q, opts, q % 4, t);
+                }
+        return qs;
+    }
+
+    static MCQQuestion[][][] questions(int bankSize) {
+        return questions(bankSize, SUBJECTS, SUBTOPICS);
+    }
+
+    static Student newStudent(MCQQuestion[][][] questions, int id) {
+        Student student = new Student("Student " + id, "student" + id + "@bench", 17);
+        fill(student, questions);
+        return student;
+    }
+
+    // gives the student subjects and subtopics over the shared questions
+    // (usable as a BankCache.Loader)
+
+    static void fill(Student student, MCQQuestion[][][] questions) {
+        for (int s = 0; s < questions.length; s++) {
+            Subject subj = new Subject("Subject " + s);
+            for (int t = 0; t < questions[s].length; t++) {
+                Subtopic st = new Subtopic("Subtopic " + s + "." + t);
+                for (MCQQuestion q : questions[s][t])
+                    st.addQuestion(q);
+                subj.addSubtopic(st);
+            }
+            student.addSubject(subj);
+        }
+    }
+
+    // answers every question of the quiz once with a fixed pattern, so score
+    // based benchmarks see realistic non-zero values
+
+    static void answerAll(Quiz quiz) {
+        quiz.start();
+        int n = 0;
+        while (!quiz.isQuizFinished()) {
+            quiz.submitAnswer(n % 4, 1 + n % 3);
+            n++;
+        }
+    }
+}
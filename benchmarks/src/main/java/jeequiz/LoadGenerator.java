@@ -0,0 +1,347 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// LoadGenerator : this class drives many synthetic students through headless
+// quiz sessions to size hardware and to catch performance regressions.
+//
+// Sessions are not threads: every worker thread owns a share of the sessions
+// and keeps them in a heap ordered by the time of their next answer, so a
+// single core can hold tens of thousands of students who are "thinking".
+// Each student has their own accuracy (around the configured mean) and picks
+// a confidence level from the configured weights; think time between answers
+// is exponential with the configured mean (0 runs every session flat out).
+// A finished quiz gets its result report built and the student is replaced
+// by a new one, as a real cohort turns over. All sessions share one cached
+// bank, like QuizEngine.
+//
+// After a warmup the run is measured and reported: answers and quizzes per
+// second, submitAnswer latency percentiles, how late answers ran against
+// their schedule (lag, which grows once the machine is saturated), bytes
+// allocated per answer and GC counts and time.
+//
+// As a regression gate, save=<file> stores the figures and baseline=<file>
+// compares a run against them: the process exits with 2 when throughput drops
+// or p99 latency or allocation grows by more than the tolerance.
+//
+// Usage: java -cp benchmarks/target/benchmarks.jar jeequiz.LoadGenerator [key=value ...]
+//   sessions=10000 threads=<cores> bank=3600 (questions, or a .bank file)
+//   accuracy=0.7 spread=0.2 confidence=30:40:30 (low:medium:high weights)
+//   think=0 (mean ms) warmup=5 duration=20 (s) seed=1
+//   save=<file> baseline=<file> tolerance=0.2
+
+class LoadGenerator {
+
+    private final int sessions, threads;
+    private final double accuracy, spread, thinkNanos;
+    private final double[] confidence = new double[3]; // cumulative weights of levels 1..3
+    private final long seed;
+    private final BankCache.SharedBank bank;
+
+    // measurement state, reset when the warmup ends
+    private volatile LatencyHistogram submit = newSubmitHistogram(), lag = newLagHistogram();
+    private final AtomicLong answers = new AtomicLong(), quizzes = new AtomicLong(), allocated = new AtomicLong();
+    private volatile boolean measuring, stopped;
+
+    LoadGenerator(Map<String, String> opts) throws IOException {
+        sessions = Integer.parseInt(opts.getOrDefault("sessions", "10000"));
+        threads = Integer.parseInt(opts.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        accuracy = Double.parseDouble(opts.getOrDefault("accuracy", "0.7"));
+        spread = Double.parseDouble(opts.getOrDefault("spread", "0.2"));
+        thinkNanos = Double.parseDouble(opts.getOrDefault("think", "0")) * 1e6;
+        seed = Long.parseLong(opts.getOrDefault("seed", "1"));
+        String[] w = opts.getOrDefault("confidence", "30:40:30").split(":");
+        if (w.length != 3)
+            throw new IllegalArgumentException("confidence must be low:medium:high");
+        double sum = 0;
+        for (int i = 0; i < 3; i++)
+            confidence[i] = sum += Double.parseDouble(w[i]);
+        for (int i = 0; i < 3; i++)
+            confidence[i] /= sum;
+        if (sessions < 1 || threads < 1 || accuracy < 0 || accuracy > 1 || thinkNanos < 0 || sum <= 0)
+            throw new IllegalArgumentException("Invalid load options: " + opts);
+
+        String b = opts.getOrDefault("bank", "3600");
+        if (b.endsWith(".bank")) {
+            BinaryBank file = BinaryBank.open(Paths.get(b));
+            bank = BankCache.shared().get(file.getFile().toAbsolutePath().toString(), file::loadInto);
+        } else {
+            MCQQuestion[][][] qs = Banks.questions(Integer.parseInt(b));
+            bank = BankCache.shared().get("synthetic:" + b, s -> Banks.fill(s, qs));
+        }
+    }
+
+    private static LatencyHistogram newSubmitHistogram() {
+        return new LatencyHistogram("load_submit_answer", "submitAnswer latency under load");
+    }
+
+    private static LatencyHistogram newLagHistogram() {
+        return new LatencyHistogram("load_schedule_lag", "Delay of answers behind their schedule");
+    }
+
+    // Worker : the sessions of one thread in a heap by due time
+
+    private class Worker implements Runnable {
+        private final SplittableRandom random;
+        private final int first;
+        private final Quiz[] quizzes;
+        private final double[] skill;
+        private final long[] due;
+        private final int[] heap;
+        private int nextStudent;
+
+        Worker(int index, int first, int count) {
+            random = new SplittableRandom(seed * 31 + index);
+            this.first = first;
+            quizzes = new Quiz[count];
+            skill = new double[count];
+            due = new long[count];
+            heap = new int[count];
+            long now = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                newSession(i);
+                due[i] = now + think(); // spreads the first answers out
+                heap[i] = i;
+            }
+            for (int i = count / 2 - 1; i >= 0; i--)
+                siftDown(i);
+        }
+
+        private void newSession(int i) {
+            Student student = new Student("Load " + (first + i), "load" + (first + i) + "." + nextStudent++
+                    + "@load", 17);
+            bank.addTo(student);
+            quizzes[i] = new Quiz(student, bank.getPlan());
+            quizzes[i].start();
+            skill[i] = Math.max(0, Math.min(1, accuracy + (random.nextDouble() * 2 - 1) * spread));
+        }
+
+        private long think() {
+            return thinkNanos == 0 ? 0 : (long) (-Math.log(1 - random.nextDouble()) * thinkNanos);
+        }
+
+        @Override
+        public void run() {
+            boolean counting = false;
+            long allocStart = 0;
+            while (!stopped) {
+                if (measuring && !counting) {
+                    counting = true;
+                    allocStart = allocatedBytes();
+                }
+                int i = heap[0];
+                long now = System.nanoTime();
+                if (due[i] > now) {
+                    LockSupport.parkNanos(due[i] - now);
+                    continue;
+                }
+                lag.record(now - due[i]);
+                answer(i);
+                due[i] = System.nanoTime() + think();
+                siftDown(0);
+            }
+            if (counting)
+                allocated.addAndGet(allocatedBytes() - allocStart);
+        }
+
+        private void answer(int i) {
+            Quiz quiz = quizzes[i];
+            int correct = quiz.getCurrentQuestion().getCorrectAnswer();
+            int selected = random.nextDouble() < skill[i] ? correct : (correct + 1 + random.nextInt(3)) & 3;
+            double c = random.nextDouble();
+            int confidenceValue = c < confidence[0] ? 1 : c < confidence[1] ? 2 : 3;
+            long t0 = System.nanoTime();
+            quiz.submitAnswer(selected, confidenceValue);
+            submit.recordSince(t0);
+            answers.incrementAndGet();
+            if (quiz.isQuizFinished()) {
+                ResultReport.build(quiz.getStudent());
+                LoadGenerator.this.quizzes.incrementAndGet();
+                newSession(i);
+            }
+        }
+
+        private void siftDown(int k) {
+            int n = heap.length, x = heap[k];
+            while (true) {
+                int child = 2 * k + 1;
+                if (child >= n)
+                    break;
+                if (child + 1 < n && due[heap[child + 1]] < due[heap[child]])
+                    child++;
+                if (due[heap[child]] >= due[x])
+                    break;
+                heap[k] = heap[child];
+                k = child;
+            }
+            heap[k] = x;
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean
+                ? ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    // runs the load and returns the measured figures
+
+    public Map<String, Double> run(double warmupSeconds, double durationSeconds) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        CountDownLatch ready = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int first = (int) ((long) sessions * t / threads), end = (int) ((long) sessions * (t + 1) / threads);
+            int index = t;
+            Thread thread = new Thread(() -> {
+                Worker w = new Worker(index, first, end - first);
+                ready.countDown();
+                w.run();
+            }, "load-" + t);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+        ready.await();
+        Thread.sleep((long) (warmupSeconds * 1000));
+
+        System.gc();
+        submit = newSubmitHistogram();
+        lag = newLagHistogram();
+        answers.set(0);
+        quizzes.set(0);
+        long gcCount = 0, gcMillis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount -= gc.getCollectionCount();
+            gcMillis -= gc.getCollectionTime();
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+        long t0 = System.nanoTime();
+        measuring = true;
+        Thread.sleep((long) (durationSeconds * 1000));
+        stopped = true;
+        double secs = (System.nanoTime() - t0) / 1e9;
+        long done = answers.get();
+        for (Thread thread : workers)
+            thread.join();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcMillis += gc.getCollectionTime();
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+
+        Map<String, Double> r = new HashMap<>();
+        r.put("answers_per_second", done / secs);
+        r.put("quizzes_per_second", quizzes.get() / secs);
+        r.put("p50_us", submit.getPercentile(0.5) / 1e3);
+        r.put("p99_us", submit.getPercentile(0.99) / 1e3);
+        r.put("p999_us", submit.getPercentile(0.999) / 1e3);
+        r.put("max_us", submit.getMax() / 1e3);
+        if (thinkNanos > 0) // without think time every session is always due
+            r.put("lag_p99_ms", lag.getPercentile(0.99) / 1e6);
+        r.put("alloc_bytes_per_answer", done == 0 ? 0 : (double) allocated.get() / done);
+        r.put("gc_count", (double) gcCount);
+        r.put("gc_ms", (double) gcMillis);
+        r.put("heap_peak_mb", peak / 1048576.0);
+        return r;
+    }
+
+    static void print(Map<String, Double> r) {
+        System.out.println(String.format("throughput  %.0f answers/s, %.1f quizzes/s", r.get("answers_per_second"),
+                r.get("quizzes_per_second")));
+        System.out.println(String.format("submit      p50 %.2f us, p99 %.2f us, p99.9 %.2f us, max %.0f us",
+                r.get("p50_us"), r.get("p99_us"), r.get("p999_us"), r.get("max_us")));
+        if (r.containsKey("lag_p99_ms"))
+            System.out.println(String.format("lag         p99 %.2f ms", r.get("lag_p99_ms")));
+        System.out.println(String.format("memory      %.0f bytes/answer, heap peak %.0f MB, %.0f GCs, %.0f ms GC",
+                r.get("alloc_bytes_per_answer"), r.get("heap_peak_mb"), r.get("gc_count"), r.get("gc_ms")));
+    }
+
+    // the regressions of run against the baseline beyond the tolerance (empty if none)
+
+    static List<String> compare(Map<String, Double> run, Properties baseline, double tolerance) {
+        List<String> failures = new ArrayList<>();
+        check(failures, "answers_per_second", run, baseline, -tolerance);
+        check(failures, "p99_us", run, baseline, tolerance);
+        check(failures, "alloc_bytes_per_answer", run, baseline, tolerance);
+        return failures;
+    }
+
+    // a negative limit means lower is worse, a positive one that higher is worse
+
+    private static void check(List<String> failures, String key, Map<String, Double> run, Properties baseline,
+            double limit) {
+        String b = baseline.getProperty(key);
+        if (b == null)
+            return;
+        double base = Double.parseDouble(b), now = run.get(key);
+        double change = base == 0 ? 0 : (now - base) / base;
+        if (limit < 0 ? change < limit : change > limit)
+            failures.add(String.format("%s %.2f vs baseline %.2f (%+.0f%%)", key, now, base, change * 100));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                System.out.println("Usage: java jeequiz.LoadGenerator [key=value ...] (see LoadGenerator.java)");
+                return;
+            }
+            opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        LoadGenerator load = new LoadGenerator(opts);
+        System.out.println("Running " + load.sessions + " sessions on " + load.threads + " threads over "
+                + load.bank.getQuestionCount() + " questions");
+        Map<String, Double> r = load.run(Double.parseDouble(opts.getOrDefault("warmup", "5")),
+                Double.parseDouble(opts.getOrDefault("duration", "20")));
+        print(r);
+
+        if (opts.containsKey("save")) {
+            Properties p = new Properties();
+            for (Map.Entry<String, Double> e : r.entrySet())
+                p.setProperty(e.getKey(), String.valueOf(e.getValue()));
+            try (Writer out = Files.newBufferedWriter(Paths.get(opts.get("save")), StandardCharsets.UTF_8)) {
+                p.store(out, "LoadGenerator " + String.join(" ", args));
+            }
+        }
+        if (opts.containsKey("baseline")) {
+            Path file = Paths.get(opts.get("baseline"));
+            Properties baseline = new Properties();
+            try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                baseline.load(in);
+            }
+            List<String> failures = compare(r, baseline, Double.parseDouble(opts.getOrDefault("tolerance", "0.2")));
+            if (!failures.isEmpty()) {
+                System.out.println("REGRESSION against " + file + ":");
+                for (String f : failures)
+                    System.out.println("  " + f);
+                System.exit(2);
+            }
+            System.out.println("No regression against " + file);
+        }
+    }
+}
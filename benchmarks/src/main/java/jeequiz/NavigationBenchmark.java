@@ -0,0 +1,51 @@
+package jeequiz;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// NavigationBenchmark : measures Quiz.submitAnswer when the bank shape forces
+// boundary crossings. With one question per subtopic every answer moves to a
+// new subtopic and every third answer to a new subject.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NavigationBenchmark {
+
+    @Param({ "1", "4", "100" })
+    public int questionsPerSubtopic;
+
+    private Quiz quiz;
+    private int answer;
+
+    @Setup
+    public void setup() {
+        int subjects = 30, subtopics = 3;
+        MCQQuestion[][][] questions = Banks.questions(subjects * subtopics * questionsPerSubtopic, subjects,
+                subtopics);
+        quiz = new Quiz(Banks.newStudent(questions, 0));
+        quiz.start();
+    }
+
+    @Benchmark
+    public int submitAnswer() {
+        answer++;
+        quiz.submitAnswer(answer & 3, 1 + answer % 3);
+        if (quiz.isQuizFinished())
+            quiz.start();
+        return quiz.subtopicIndex;
+    }
+}
@@ -0,0 +1,73 @@
+package jeequiz;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// QuizBenchmark : measures the quiz flow for many sessions over banks of
+// different sizes. submitAnswer walks the sessions round robin, so every call
+// also moves one session forward and regularly crosses subtopic and subject
+// boundaries; a finished session is simply started again.
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuizBenchmark {
+
+    @Param({ "36", "3600", "36000" })
+    public int bankSize;
+
+    @Param({ "1", "100", "1000" })
+    public int sessions;
+
+    private Quiz[] quizzes;
+    private Student finished;
+    private int next, answer;
+
+    @Setup
+    public void setup() {
+        MCQQuestion[][][] questions = Banks.questions(bankSize);
+        quizzes = new Quiz[sessions];
+        for (int i = 0; i < sessions; i++) {
+            quizzes[i] = new Quiz(Banks.newStudent(questions, i));
+            quizzes[i].start();
+        }
+        Quiz done = new Quiz(Banks.newStudent(questions, -1));
+        Banks.answerAll(done);
+        finished = done.getStudent();
+    }
+
+    @Benchmark
+    public int submitAnswer() {
+        Quiz quiz = quizzes[next];
+        if (++next == quizzes.length)
+            next = 0;
+        answer++;
+        quiz.submitAnswer(answer & 3, 1 + answer % 3);
+        if (quiz.isQuizFinished())
+            quiz.start();
+        return quiz.questionIndex;
+    }
+
+    @Benchmark
+    public int subjectTotalScore() {
+        return finished.getSubjects().get(0).getTotalScore();
+    }
+
+    @Benchmark
+    public String resultReport() {
+        return ResultReport.build(finished);
+    }
+}
@@ -0,0 +1,75 @@
+package jeequiz;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// ScoringBenchmark : measures the marking of a single answer,
+// MCQQuestion.checkAnswer and Subtopic.processAnswer, and the table lookup of
+// a ScoringRules.Rule that the quiz uses for every answer, for single and
+// multiple answer (partial marking) questions
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private MCQQuestion question;
+    private Subtopic subtopic;
+    private int selected, confidence;
+    private final ScoringRules.Rule rule = ScoringRules
+            .parse("single:4/-1;Physics=single:3/-1,multiple:4/-2/1").forSubject("Physics");
+
+    @Setup
+    public void setup() {
+        question = new MCQQuestion("A 2kg block is pushed with 10N. Acceleration?",
+                new String[] { "2", "5", "10", "20" }, 0, 0);
+        subtopic = new Subtopic("Mechanics");
+        subtopic.addQuestion(question);
+    }
+
+    // the selected option and confidence rotate so the branch is not constant
+
+    private void next() {
+        selected = (selected + 1) & 3;
+        confidence = confidence == 3 ? 1 : confidence + 1;
+    }
+
+    @Benchmark
+    public int checkAnswer() {
+        next();
+        return question.checkAnswer(selected, confidence);
+    }
+
+    @Benchmark
+    public int processAnswer() {
+        next();
+        subtopic.processAnswer(question, selected, confidence);
+        return subtopic.getScore();
+    }
+
+    @Benchmark
+    public int rule() {
+        next();
+        return rule.total(rule.outcome(ScoringRules.SINGLE, 0, selected), confidence);
+    }
+
+    // key options 0 and 2; the masks 1-15 give correct, partial and wrong
+    @Benchmark
+    public int multiple() {
+        next();
+        int mask = (selected << 2 | confidence) & 15;
+        return rule.total(rule.outcome(ScoringRules.MULTIPLE, 0b0101, mask == 0 ? 1 : mask), confidence);
+    }
+}
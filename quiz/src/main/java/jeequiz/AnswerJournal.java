@@ -0,0 +1,427 @@
+package jeequiz;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+// AnswerJournal : this class is an append-only binary log of everything that
+// changes a quiz session, so sessions can be rebuilt after a crash.
+//
+// Records are first copied into an in-memory buffer. A single background
+// thread writes the buffer to the file and calls force() (fsync); every record
+// that arrived while the previous fsync was running goes out in the next one
+// ("group commit"), so one slow fsync is shared by many concurrent answers.
+// A caller that needs its record on disk calls awaitDurable() with the ticket
+// returned by append.
+//
+// File layout: magic (int), version (int), then records
+// START  : type 1, session (long), age (int), name and email (short length + UTF-8)
+// ANSWER : type 2, session (long), selected << 2 | confidence (byte)
+// END    : type 3, session (long)
+// RESUME : type 4, session (long), SessionSnapshot (int length + bytes)
+// TIMED  : type 5, session (long), selected << 2 | confidence (byte),
+//          time spent in ms (int)
+// TIMEOUT: type 6, session (long), end position (int), time spent in ms (int)
+// CHOICE : type 7, session (long), selected (int), confidence (byte), time
+//          spent in ms (int); written for every answer (an option, a mask
+//          of options or a value, see ScoringRules), ANSWER and TIMED are
+//          only read from older journals
+// Every record ends with the CRC32C of its bytes (int). Replay stops at the
+// first record that is cut off, fails its checksum or holds an impossible
+// answer, and that tail is cut from the file. A record of an unknown type is
+// such a tail too: a journal of a newer version is already refused by the
+// version in its header. Only in the older journals without checksums does
+// an unknown type stop the replay with an error.
+//
+// Versions: 1 START, ANSWER and END; 2 adds RESUME; 3 adds TIMED and
+// TIMEOUT; 4 adds the checksums; 5 adds CHOICE. Older journals are read as they are and
+// rewritten in the current format before anything is appended, so a reader
+// that does not know the new records refuses the file instead of cutting it.
+
+class AnswerJournal implements Closeable {
+
+    static final int MAGIC = 0x4A45454A; // "JEEJ"
+    static final int VERSION = 5, CHECKSUMS = 4, CHOICES = 5; // first versions with checksums and CHOICE
+    static final byte START = 1, ANSWER = 2, END = 3, RESUME = 4, TIMED = 5, TIMEOUT = 6, CHOICE = 7;
+    static final int MAX_SNAPSHOT = 1 << 24;
+
+    // Replay : callback used while reading a journal back
+
+    interface Replay {
+        void start(long session, String name, String email, int age);
+
+        // spentMillis is 0 for answers logged without their time
+        void answer(long session, int selected, int confidenceValue, int spentMillis);
+
+        // a timed exam's clock closed the positions before end (see Quiz.timeOut)
+        void timeout(long session, int end, int spentMillis);
+
+        void end(long session);
+
+        // a session brought in from a snapshot
+        void resume(long session, byte[] snapshot);
+    }
+
+    private final FileChannel channel;
+    private final Thread flusher;
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+    private long appended, durable;
+    private boolean closed;
+    private IOException failure;
+    private final CRC32C crc = new CRC32C();
+
+    // opens the journal for appending; a new file gets a header, an existing
+    // one is cut back to validLength (as returned by replay)
+
+    public AnswerJournal(Path file, long validLength) throws IOException {
+        if (validLength >= 8 && readVersion(file) < VERSION)
+            validLength = upgrade(file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+        if (channel.size() == 0 || validLength < 8) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+            validLength = 8;
+        } else {
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        flusher = new Thread(this::flushLoop, "answer-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public synchronized long appendStart(long session, String name, String email, int age) throws IOException {
+        byte[] n = name.getBytes(StandardCharsets.UTF_8), e = email.getBytes(StandardCharsets.UTF_8);
+        if (n.length > Short.MAX_VALUE || e.length > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Name or email too long");
+        ByteBuffer b = reserve(1 + 8 + 4 + 2 + n.length + 2 + e.length + 4);
+        int from = b.position();
+        b.put(START).putLong(session).putInt(age);
+        b.putShort((short) n.length).put(n).putShort((short) e.length).put(e);
+        return seal(b, from);
+    }
+
+    public synchronized long appendAnswer(long session, int selected, int confidenceValue, int spentMillis)
+            throws IOException {
+        ByteBuffer b = reserve(1 + 8 + 4 + 1 + 4 + 4);
+        int from = b.position();
+        b.put(CHOICE).putLong(session).putInt(selected).put((byte) confidenceValue).putInt(spentMillis);
+        return seal(b, from);
+    }
+
+    public synchronized long appendTimeout(long session, int end, int spentMillis) throws IOException {
+        ByteBuffer b = reserve(1 + 8 + 4 + 4 + 4);
+        int from = b.position();
+        b.put(TIMEOUT).putLong(session).putInt(end).putInt(spentMillis);
+        return seal(b, from);
+    }
+
+    public synchronized long appendResume(long session, byte[] snapshot) throws IOException {
+        if (snapshot.length > MAX_SNAPSHOT)
+            throw new IllegalArgumentException("Snapshot too large");
+        ByteBuffer b = reserve(1 + 8 + 4 + snapshot.length + 4);
+        int from = b.position();
+        b.put(RESUME).putLong(session).putInt(snapshot.length).put(snapshot);
+        return seal(b, from);
+    }
+
+    public synchronized long appendEnd(long session) throws IOException {
+        ByteBuffer b = reserve(1 + 8 + 4);
+        int from = b.position();
+        b.put(END).putLong(session);
+        return seal(b, from);
+    }
+
+    // blocks until the record with this ticket (and all before it) is on disk
+
+    public synchronized void awaitDurable(long ticket) throws IOException {
+        boolean interrupted = false;
+        while (durable < ticket && failure == null) {
+            if (closed && !flusher.isAlive())
+                throw new IOException("Journal closed");
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure != null && durable < ticket)
+            throw failure;
+    }
+
+    private ByteBuffer reserve(int bytes) throws IOException {
+        if (closed)
+            throw new IOException("Journal closed");
+        if (failure != null)
+            throw failure;
+        if (pending.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        if (pending.position() == 0)
+            notifyAll();
+        return pending;
+    }
+
+    // ends the record that starts at from with its checksum
+    private long seal(ByteBuffer b, int from) {
+        crc.reset();
+        crc.update(b.array(), from, b.position() - from);
+        b.putInt((int) crc.getValue());
+        return ++appended;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long batchEnd;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // only close() stops the flusher
+                    }
+                }
+                if (pending.position() == 0)
+                    return;
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                batchEnd = appended;
+            }
+            try {
+                writing.flip();
+                while (writing.hasRemaining())
+                    channel.write(writing);
+                channel.force(false);
+                writing.clear();
+                synchronized (this) {
+                    durable = batchEnd;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    // flushes what is still buffered and closes the file
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    // reads every complete record of the journal into the handler and returns
+    // the length of the valid part of the file (0 if it does not exist)
+
+    public static long replay(Path file, Replay handler) throws IOException {
+        if (!Files.exists(file))
+            return 0;
+        CRC32C crc = new CRC32C();
+        try (InputStream raw = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(
+                        new CheckedInputStream(new BufferedInputStream(raw, 1 << 16), crc))) {
+            long valid;
+            int version;
+            try {
+                if (in.readInt() != MAGIC)
+                    throw new IOException("Not an answer journal: " + file);
+                version = in.readInt();
+                if (version < 1 || version > VERSION)
+                    throw new IOException("Unsupported answer journal version " + version + ": " + file);
+                valid = 8;
+            } catch (EOFException e) {
+                return 0;
+            }
+            int trailer = version >= CHECKSUMS ? 4 : 0;
+            try {
+                while (true) {
+                    crc.reset();
+                    int type = in.read();
+                    if (type == START) {
+                        long session = in.readLong();
+                        int age = in.readInt();
+                        byte[] name = readBytes(in), email = readBytes(in);
+                        if (!intact(in, crc, version))
+                            return valid;
+                        handler.start(session, new String(name, StandardCharsets.UTF_8),
+                                new String(email, StandardCharsets.UTF_8), age);
+                        valid += 1 + 8 + 4 + 2 + name.length + 2 + email.length + trailer;
+                    } else if (type == ANSWER || type == TIMED) {
+                        long session = in.readLong();
+                        int packed = in.readUnsignedByte();
+                        int spent = type == TIMED ? in.readInt() : 0;
+                        int selected = packed >> 2, confidence = packed & 3;
+                        if (!intact(in, crc, version) || selected > 3 || confidence < 1 || spent < 0)
+                            return valid;
+                        handler.answer(session, selected, confidence, spent);
+                        valid += 1 + 8 + 1 + (type == TIMED ? 4 : 0) + trailer;
+                    } else if (type == CHOICE && version >= CHOICES) {
+                        long session = in.readLong();
+                        int selected = in.readInt(), confidence = in.readByte(), spent = in.readInt();
+                        if (!intact(in, crc, version) || confidence < 1 || confidence > 3 || spent < 0)
+                            return valid;
+                        handler.answer(session, selected, confidence, spent);
+                        valid += 1 + 8 + 4 + 1 + 4 + trailer;
+                    } else if (type == TIMEOUT) {
+                        long session = in.readLong();
+                        int end = in.readInt(), spent = in.readInt();
+                        if (!intact(in, crc, version) || end < 0 || spent < 0)
+                            return valid;
+                        handler.timeout(session, end, spent);
+                        valid += 1 + 8 + 4 + 4 + trailer;
+                    } else if (type == END) {
+                        long session = in.readLong();
+                        if (!intact(in, crc, version))
+                            return valid;
+                        handler.end(session);
+                        valid += 1 + 8 + trailer;
+                    } else if (type == RESUME) {
+                        long session = in.readLong();
+                        int length = in.readInt();
+                        if (length < 0 || length > MAX_SNAPSHOT)
+                            return valid;
+                        byte[] snapshot = new byte[length];
+                        in.readFully(snapshot);
+                        if (!intact(in, crc, version))
+                            return valid;
+                        handler.resume(session, snapshot);
+                        valid += 1 + 8 + 4 + length + trailer;
+                    } else if (type <= 0) {
+                        // end of file, or the zero filled / torn tail of a crash
+                        return valid;
+                    } else if (version >= CHECKSUMS) {
+                        // the header says this reader knows every type, so the
+                        // type byte itself is damaged
+                        return valid;
+                    } else {
+                        throw new IOException("Unknown answer journal record type " + type + " at offset " + valid
+                                + ": " + file);
+                    }
+                }
+            } catch (EOFException e) {
+                return valid;
+            }
+        }
+    }
+
+    // reads the checksum that ends a record and compares it with the bytes
+    // read since the record started; journals before CHECKSUMS have none
+    private static boolean intact(DataInputStream in, CRC32C crc, int version) throws IOException {
+        if (version < CHECKSUMS)
+            return true;
+        int expected = (int) crc.getValue();
+        return in.readInt() == expected;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static int readVersion(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            in.readInt();
+            return in.readInt();
+        }
+    }
+
+    // rewrites a journal of an older version in the current format: its valid
+    // records are replayed into a new journal that then replaces the file;
+    // returns the new length
+    private static long upgrade(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".upgrade");
+        Files.deleteIfExists(tmp);
+        boolean moved = false;
+        try {
+            try (AnswerJournal out = new AnswerJournal(tmp, 0)) {
+                replay(file, new Replay() {
+                    @Override
+                    public void start(long session, String name, String email, int age) {
+                        copy(() -> out.appendStart(session, name, email, age));
+                    }
+
+                    @Override
+                    public void answer(long session, int selected, int confidenceValue, int spentMillis) {
+                        copy(() -> out.appendAnswer(session, selected, confidenceValue, spentMillis));
+                    }
+
+                    @Override
+                    public void timeout(long session, int end, int spentMillis) {
+                        copy(() -> out.appendTimeout(session, end, spentMillis));
+                    }
+
+                    @Override
+                    public void end(long session) {
+                        copy(() -> out.appendEnd(session));
+                    }
+
+                    @Override
+                    public void resume(long session, byte[] snapshot) {
+                        copy(() -> out.appendResume(session, snapshot));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved)
+                Files.deleteIfExists(tmp);
+        }
+        return Files.size(file);
+    }
+
+    // Append : one append of upgrade()
+    private interface Append {
+        long run() throws IOException;
+    }
+
+    private static void copy(Append append) {
+        try {
+            append.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
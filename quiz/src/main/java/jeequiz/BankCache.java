@@ -0,0 +1,213 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// BankCache : this class keeps loaded question banks in memory so that all
+// sessions using the same bank share one copy of the question content.
+//
+// A bank is loaded once into a SharedBank: the questions are immutable and
+// every text, option and name string is de-duplicated while loading (the demo
+// bank alone repeats "0", "2", "Ethane", ... many times). A new session then
+// only gets fresh Subject and Subtopic objects for its own score state, which
+// point at the shared, read-only question lists.
+//
+// The cache is bounded by the estimated heap weight of its banks and evicts
+// the least recently used bank first. A bank heavier than the whole limit is
+// still returned and kept, but it pushes every other bank out.
+
+class BankCache {
+
+    static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private static final BankCache SHARED = new BankCache(DEFAULT_MAX_BYTES);
+
+    // Loader : fills a student with a bank, as QuestionBank.loadDefault,
+    // BinaryBank.loadInto and QuestionBankLoader.loadCsv do
+
+    interface Loader {
+        void load(Student student) throws IOException;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, SharedBank> banks = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits, misses, evictions;
+
+    public BankCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // process wide cache used by the GUI and the engine
+
+    public static BankCache shared() {
+        return SHARED;
+    }
+
+    // returns the cached bank for the key, loading it on a miss
+    // loading happens outside the lock; if two threads miss at the same time
+    // the first one to finish wins and the other copy is dropped
+
+    public SharedBank get(String key, Loader loader) throws IOException {
+        synchronized (this) {
+            SharedBank bank = banks.get(key);
+            if (bank != null) {
+                hits++;
+                return bank;
+            }
+            misses++;
+        }
+        long start = System.nanoTime();
+        QuizEvents.BankLoad event = null;
+        if (QuizEvents.BANK_LOAD.isEnabled()) {
+            event = new QuizEvents.BankLoad();
+            event.begin();
+            event.bank = key;
+        }
+        Student template = new Student("bank", "bank", 0);
+        loader.load(template);
+        SharedBank loaded = new SharedBank(template.getSubjects());
+        if (event != null) {
+            event.questions = loaded.getQuestionCount();
+            event.commit();
+        }
+        Metrics.BANKS_LOADED.increment();
+        Metrics.BANK_LOAD.recordSince(start);
+        synchronized (this) {
+            SharedBank raced = banks.get(key);
+            if (raced != null)
+                return raced;
+            banks.put(key, loaded);
+            weight += loaded.getWeight();
+            evict(key);
+            return loaded;
+        }
+    }
+
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, SharedBank>> it = banks.entrySet().iterator();
+        while (weight > maxBytes && it.hasNext()) {
+            Map.Entry<String, SharedBank> e = it.next();
+            if (e.getKey().equals(keep))
+                continue;
+            weight -= e.getValue().getWeight();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate(String key) {
+        SharedBank bank = banks.remove(key);
+        if (bank != null)
+            weight -= bank.getWeight();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized int size() {
+        return banks.size();
+    }
+
+    public synchronized String getStats() {
+        return "banks=" + banks.size() + " weight=" + weight + " hits=" + hits + " misses=" + misses
+                + " evictions=" + evictions;
+    }
+
+    // SharedBank : the immutable content of one bank, shared by every session
+
+    static class SharedBank {
+        private final String[] subjectNames;
+        private final String[][] subtopicNames;
+        private final List<List<List<MCQQuestion>>> questions;
+        private final int questionCount;
+        private final long weight;
+        private volatile QuizPlan plan;
+
+        SharedBank(List<Subject> subjects) {
+            Map<String, String> strings = new HashMap<>();
+            long w = 0;
+            int n = 0;
+            subjectNames = new String[subjects.size()];
+            subtopicNames = new String[subjects.size()][];
+            List<List<List<MCQQuestion>>> all = new ArrayList<>(subjects.size());
+            for (int s = 0; s < subjects.size(); s++) {
+                Subject subj = subjects.get(s);
+                subjectNames[s] = intern(strings, subj.getName());
+                List<Subtopic> sts = subj.getSubtopics();
+                subtopicNames[s] = new String[sts.size()];
+                List<List<MCQQuestion>> perSubject = new ArrayList<>(sts.size());
+                for (int t = 0; t < sts.size(); t++) {
+                    subtopicNames[s][t] = intern(strings, sts.get(t).getName());
+                    List<MCQQuestion> src = sts.get(t).getQuestions();
+                    MCQQuestion[] qs = new MCQQuestion[src.size()];
+                    for (int q = 0; q < qs.length; q++) {
+                        MCQQuestion orig = src.get(q);
+                        String[] o = orig.getOptions();
+                        String[] opts = new String[o.length];
+                        for (int i = 0; i < o.length; i++)
+                            opts[i] = intern(strings, o[i]);
+                        qs[q] = new MCQQuestion(intern(strings, orig.getText()), opts, orig.getType(),
+                                orig.getCorrectAnswer(), orig.getSubtopicIndex());
+                        w += 32 + 16 + 4L * opts.length; // question object and option array
+                    }
+                    n += qs.length;
+                    perSubject.add(Collections.unmodifiableList(Arrays.asList(qs)));
+                    w += 16 + 4L * qs.length;
+                }
+                all.add(Collections.unmodifiableList(perSubject));
+            }
+            questions = Collections.unmodifiableList(all);
+            for (String str : strings.keySet())
+                w += 40 + str.length() * 2L; // string header, array header and chars (upper bound)
+            questionCount = n;
+            weight = w + 24L * n; // plus the quiz plan
+        }
+
+        private static String intern(Map<String, String> strings, String s) {
+            String prev = strings.putIfAbsent(s, s);
+            return prev != null ? prev : s;
+        }
+
+        // gives the student its own Subject/Subtopic objects (score state) over
+        // the shared question lists
+
+        public void addTo(Student student) {
+            for (int s = 0; s < subjectNames.length; s++) {
+                Subject subj = new Subject(subjectNames[s]);
+                for (int t = 0; t < subtopicNames[s].length; t++)
+                    subj.addSubtopic(new Subtopic(subtopicNames[s][t], questions.get(s).get(t)));
+                student.addSubject(subj);
+            }
+        }
+
+        // the quiz plan only depends on the shared questions, so one plan
+        // serves every session of this bank
+
+        public QuizPlan getPlan() {
+            QuizPlan p = plan;
+            if (p == null) {
+                Student template = new Student("plan", "plan", 0);
+                addTo(template);
+                plan = p = QuizPlan.compile(template.getSubjects());
+            }
+            return p;
+        }
+
+        public int getQuestionCount() {
+            return questionCount;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+    }
+}
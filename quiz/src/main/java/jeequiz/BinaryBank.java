@@ -0,0 +1,350 @@
+package jeequiz;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// BinaryBank : this class is a compiled, memory-mapped question bank.
+// A CSV bank is compiled once with compile(); after that open() only maps the
+// file and checks the header, so starting a session costs almost nothing.
+// Subjects are turned into Subject/Subtopic/MCQQuestion objects only when
+// buildSubject() or loadInto() is called.
+//
+// File layout (all ints big endian):
+// header    : magic, version, subjects, subtopics, questions,
+//             subjectTable, subtopicTable, questionTable, stringPool (offsets)
+// subject   : nameRef, firstSubtopic, subtopicCount
+// subtopic  : nameRef, firstQuestion, questionCount
+// question  : textRef, option0Ref..option3Ref, correct option (byte), type
+//             (byte, see ScoringRules), correct option mask (byte), 1 padding
+//             byte, correct value (int); the key of a question is its option,
+//             mask or value by type (see Question.getCorrectAnswer)
+// stringPool: for every string its byte length (int) followed by UTF-8 bytes
+// a "Ref" is the offset of a string inside the string pool
+// Version 1 files (single answer questions only, without the type, mask and
+// value) are still read.
+
+class BinaryBank {
+
+    static final int MAGIC = 0x4A454551; // "JEEQ"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 9 * 4;
+    static final int SUBJECT_SIZE = 3 * 4;
+    static final int SUBTOPIC_SIZE = 3 * 4;
+    static final int QUESTION_SIZE = 7 * 4;
+    static final int QUESTION_SIZE_V1 = 6 * 4;
+
+    private final Path file;
+    private final ByteBuffer buf;
+    private final int version, questionSize;
+    private final int subjects, subtopics, questions;
+    private final int subjectTable, subtopicTable, questionTable, stringPool;
+
+    private BinaryBank(Path file, ByteBuffer buf) throws IOException {
+        this.file = file;
+        this.buf = buf;
+        if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC)
+            throw new IOException("Not a question bank file");
+        version = buf.getInt(4);
+        if (version != VERSION && version != 1)
+            throw new IOException("Unsupported question bank version " + version);
+        questionSize = version == 1 ? QUESTION_SIZE_V1 : QUESTION_SIZE;
+        subjects = buf.getInt(8);
+        subtopics = buf.getInt(12);
+        questions = buf.getInt(16);
+        subjectTable = buf.getInt(20);
+        subtopicTable = buf.getInt(24);
+        questionTable = buf.getInt(28);
+        stringPool = buf.getInt(32);
+        if (stringPool > buf.limit() || questionTable + (long) questions * questionSize > stringPool)
+            throw new IOException("Question bank file is truncated");
+    }
+
+    public static BinaryBank open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new BinaryBank(file, map);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getSubjectCount() {
+        return subjects;
+    }
+
+    public int getSubtopicCount() {
+        return subtopics;
+    }
+
+    public int getQuestionCount() {
+        return questions;
+    }
+
+    public String getSubjectName(int s) {
+        return readString(buf.getInt(subjectTable + s * SUBJECT_SIZE));
+    }
+
+    // builds the full object model for one subject
+
+    public Subject buildSubject(int s) {
+        int rec = subjectTable + s * SUBJECT_SIZE;
+        Subject subject = new Subject(readString(buf.getInt(rec)));
+        int first = buf.getInt(rec + 4), count = buf.getInt(rec + 8);
+        for (int t = 0; t < count; t++)
+            subject.addSubtopic(buildSubtopic(first + t, t));
+        return subject;
+    }
+
+    private Subtopic buildSubtopic(int st, int localIndex) {
+        int rec = subtopicTable + st * SUBTOPIC_SIZE;
+        Subtopic subtopic = new Subtopic(readString(buf.getInt(rec)));
+        int first = buf.getInt(rec + 4), count = buf.getInt(rec + 8);
+        for (int q = 0; q < count; q++)
+            subtopic.addQuestion(buildQuestion(first + q, localIndex));
+        return subtopic;
+    }
+
+    // adds every subject and subtopic of the bank to the student by name only,
+    // with empty question lists; the questions of a subject are built later
+    // with buildQuestions() (see LazyBank)
+
+    public void loadSkeleton(Student student) {
+        for (int s = 0; s < subjects; s++) {
+            int rec = subjectTable + s * SUBJECT_SIZE;
+            Subject subject = new Subject(readString(buf.getInt(rec)));
+            for (int st = buf.getInt(rec + 4), end = st + buf.getInt(rec + 8); st < end; st++)
+                subject.addSubtopic(new Subtopic(readString(buf.getInt(subtopicTable + st * SUBTOPIC_SIZE)),
+                        Collections.emptyList()));
+            student.addSubject(subject);
+        }
+    }
+
+    // number of questions of every subtopic, indexed [subject][subtopic]
+    // read from the tables only, no question is built
+
+    public int[][] getSubtopicSizes() {
+        int[][] sizes = new int[subjects][];
+        for (int s = 0; s < subjects; s++) {
+            int rec = subjectTable + s * SUBJECT_SIZE;
+            int first = buf.getInt(rec + 4);
+            sizes[s] = new int[buf.getInt(rec + 8)];
+            for (int t = 0; t < sizes[s].length; t++)
+                sizes[s][t] = buf.getInt(subtopicTable + (first + t) * SUBTOPIC_SIZE + 8);
+        }
+        return sizes;
+    }
+
+    // builds the questions of one subject, one list per subtopic
+    // only absolute reads of the mapped file are used, so any thread may call it
+
+    public List<List<MCQQuestion>> buildQuestions(int s) {
+        int rec = subjectTable + s * SUBJECT_SIZE;
+        int first = buf.getInt(rec + 4), count = buf.getInt(rec + 8);
+        List<List<MCQQuestion>> lists = new ArrayList<>(count);
+        for (int t = 0; t < count; t++) {
+            int trec = subtopicTable + (first + t) * SUBTOPIC_SIZE;
+            int q0 = buf.getInt(trec + 4);
+            MCQQuestion[] qs = new MCQQuestion[buf.getInt(trec + 8)];
+            for (int q = 0; q < qs.length; q++)
+                qs[q] = buildQuestion(q0 + q, t);
+            lists.add(Collections.unmodifiableList(Arrays.asList(qs)));
+        }
+        return lists;
+    }
+
+    private MCQQuestion buildQuestion(int q, int subtopicIndex) {
+        int rec = questionTable + q * questionSize;
+        String[] opts = new String[4];
+        for (int i = 0; i < 4; i++)
+            opts[i] = readString(buf.getInt(rec + 4 + i * 4));
+        return new MCQQuestion(readString(buf.getInt(rec)), opts, type(rec), key(rec), subtopicIndex);
+    }
+
+    private int type(int rec) {
+        return version == 1 ? ScoringRules.SINGLE : buf.get(rec + 21);
+    }
+
+    private int key(int rec) {
+        switch (type(rec)) {
+            case ScoringRules.MULTIPLE:
+                return buf.get(rec + 22);
+            case ScoringRules.NUMERIC:
+                return buf.getInt(rec + 24);
+            default:
+                return buf.get(rec + 20);
+        }
+    }
+
+    // feeds every question of the bank to the handler in file order without
+    // building any model objects
+
+    public void stream(QuestionBankLoader.RowHandler handler) throws IOException {
+        String[] opts = new String[4];
+        for (int s = 0; s < subjects; s++) {
+            int srec = subjectTable + s * SUBJECT_SIZE;
+            String subject = readString(buf.getInt(srec));
+            for (int st = buf.getInt(srec + 4), stEnd = st + buf.getInt(srec + 8); st < stEnd; st++) {
+                int trec = subtopicTable + st * SUBTOPIC_SIZE;
+                String subtopic = readString(buf.getInt(trec));
+                for (int q = buf.getInt(trec + 4), qEnd = q + buf.getInt(trec + 8); q < qEnd; q++) {
+                    int rec = questionTable + q * questionSize;
+                    for (int i = 0; i < 4; i++)
+                        opts[i] = readString(buf.getInt(rec + 4 + i * 4));
+                    handler.row(subject, subtopic, readString(buf.getInt(rec)), opts.clone(), type(rec), key(rec));
+                }
+            }
+        }
+    }
+
+    // loads every subject of the bank into the student
+
+    public void loadInto(Student student) {
+        for (int s = 0; s < subjects; s++)
+            student.addSubject(buildSubject(s));
+    }
+
+    private String readString(int ref) {
+        int pos = stringPool + ref;
+        int len = buf.getInt(pos);
+        byte[] bytes = new byte[len];
+        buf.get(pos + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // compiles a CSV bank into the binary format
+    // the CSV is streamed; only the fixed size tables are kept in memory and the
+    // string pool is written to a temporary file next to the output
+
+    public static void compile(Path csv, Path out) throws IOException {
+        IntList subjectRecs = new IntList(), subtopicRecs = new IntList(), questionRecs = new IntList();
+        Path poolFile = Files.createTempFile(out.toAbsolutePath().getParent(), "bank", ".pool");
+        try {
+            try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+                    DataOutputStream pool = new DataOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(poolFile), 1 << 16))) {
+                QuestionBankLoader.stream(in, new QuestionBankLoader.RowHandler() {
+                    private String subject, subtopic;
+
+                    @Override
+                    public void row(String subj, String topic, String text, String[] options, int type,
+                            int correct) throws IOException {
+                        if (!subj.equals(subject)) {
+                            subject = subj;
+                            subtopic = null;
+                            subjectRecs.add(writeString(pool, subj), subtopicRecs.size() / 3, 0);
+                        }
+                        if (!topic.equals(subtopic)) {
+                            subtopic = topic;
+                            subtopicRecs.add(writeString(pool, topic), questionRecs.size() * 4 / QUESTION_SIZE, 0);
+                            subjectRecs.increment(subjectRecs.size() - 1);
+                        }
+                        questionRecs.add(writeString(pool, text));
+                        for (String o : options)
+                            questionRecs.add(writeString(pool, o));
+                        int option = type == ScoringRules.SINGLE ? correct : 0;
+                        int mask = type == ScoringRules.SINGLE ? 1 << correct
+                                : type == ScoringRules.MULTIPLE ? correct : 0;
+                        questionRecs.add(option << 24 | type << 16 | mask << 8,
+                                type == ScoringRules.NUMERIC ? correct : 0);
+                        subtopicRecs.increment(subtopicRecs.size() - 1);
+                    }
+                });
+            }
+            int subjectTable = HEADER_SIZE;
+            int subtopicTable = subjectTable + subjectRecs.size() * 4;
+            int questionTable = subtopicTable + subtopicRecs.size() * 4;
+            int stringPool = questionTable + questionRecs.size() * 4;
+            try (FileChannel ch = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                    FileChannel poolCh = FileChannel.open(poolFile, StandardOpenOption.READ)) {
+                ByteBuffer head = ByteBuffer.allocate(stringPool);
+                head.putInt(MAGIC).putInt(VERSION).putInt(subjectRecs.size() / 3).putInt(subtopicRecs.size() / 3)
+                        .putInt(questionRecs.size() * 4 / QUESTION_SIZE).putInt(subjectTable)
+                        .putInt(subtopicTable).putInt(questionTable).putInt(stringPool);
+                subjectRecs.writeTo(head);
+                subtopicRecs.writeTo(head);
+                questionRecs.writeTo(head);
+                head.flip();
+                while (head.hasRemaining())
+                    ch.write(head);
+                long pos = 0, size = poolCh.size();
+                while (pos < size)
+                    pos += poolCh.transferTo(pos, size - pos, ch);
+            }
+        } finally {
+            Files.deleteIfExists(poolFile);
+        }
+    }
+
+    private static int writeString(DataOutputStream pool, String s) throws IOException {
+        int ref = pool.size();
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        pool.writeInt(bytes.length);
+        pool.write(bytes);
+        return ref;
+    }
+
+    // IntList : growable int array used for the compiled tables
+
+    static class IntList {
+        private int[] data = new int[1024];
+        private int size;
+
+        void add(int... values) {
+            if (size + values.length > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + values.length));
+            System.arraycopy(values, 0, data, size, values.length);
+            size += values.length;
+        }
+
+        void increment(int index) {
+            data[index]++;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        void writeTo(ByteBuffer b) {
+            for (int i = 0; i < size; i++)
+                b.putInt(data[i]);
+        }
+    }
+
+    // Main method to compile a CSV bank: java jeequiz.BinaryBank questions.csv questions.bank
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java jeequiz.BinaryBank <questions.csv> <questions.bank>");
+            return;
+        }
+        long t0 = System.nanoTime();
+        compile(Paths.get(args[0]), Paths.get(args[1]));
+        BinaryBank bank = open(Paths.get(args[1]));
+        System.out.println("Compiled " + bank.getQuestionCount() + " questions in " + bank.getSubjectCount()
+                + " subjects in " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,551 @@
+package jeequiz;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// BulkGrader : this class grades offline (paper / OMR) answer sheets in bulk.
+//
+// Input is a CSV file with one answer per line: student,question,option,confidence
+// where question is the question number in the bank (the order of the
+// QuestionStore), option is the answer as the question's type needs (0-3,
+// options 0-3 joined by '+', or an integer value, see QuestionBankLoader)
+// and confidence is 1-3. A header line starting with "student" is skipped;
+// malformed lines are counted and skipped.
+//
+// The file is cut into chunks at line boundaries and every chunk is mapped and
+// parsed straight from bytes by a parallel stream, so all cores work on their
+// own part of the file and only the small per-chunk totals are merged at the
+// end. Marking follows the ScoringRules of each subject (by default that of
+// MCQQuestion.checkAnswer) for the student total and Subtopic.processAnswer for
+// the subtopic score and confidence.
+// Optionally the same pass also feeds an ItemAnalysis of every question.
+//
+// Re-scoring: when an answer key is corrected (QuestionStore.withCorrections)
+// or the marking changes, the stored answers are graded again in one parallel
+// pass, either from an answer sheet file or from a QuizEngine journal
+// (gradeJournal).
+
+class BulkGrader {
+
+    static final int DEFAULT_CHUNK = 32 << 20;
+
+    private final QuestionStore store;
+    private final int chunkSize;
+    private final boolean itemAnalysis;
+    private final ScoringRules.Rule[] rules; // by subtopic of the store
+
+    public BulkGrader(QuestionStore store) {
+        this(store, DEFAULT_CHUNK);
+    }
+
+    public BulkGrader(QuestionStore store, int chunkSize) {
+        this(store, chunkSize, false);
+    }
+
+    // with itemAnalysis the result also holds the ItemAnalysis of the answers
+    // (15 longs per question and chunk in flight)
+
+    public BulkGrader(QuestionStore store, int chunkSize, boolean itemAnalysis) {
+        this(store, chunkSize, itemAnalysis, ScoringRules.DEFAULT);
+    }
+
+    public BulkGrader(QuestionStore store, int chunkSize, boolean itemAnalysis, ScoringRules scoring) {
+        this.store = store;
+        this.chunkSize = chunkSize;
+        this.itemAnalysis = itemAnalysis;
+        rules = new ScoringRules.Rule[store.getSubtopicCount()];
+        for (int st = 0; st < rules.length; st++)
+            rules[st] = scoring.forSubject(store.getSubjectName(store.getSubjectOf(st)));
+    }
+
+    // StudentTotals : running totals for one student
+
+    static class StudentTotals {
+        int totalScore; // sum of checkAnswer, as Student.getTotalScore
+        int subtopicScore; // sum of section marks, as Subtopic.getScore
+        int confidence, answers;
+
+        void add(StudentTotals o) {
+            totalScore += o.totalScore;
+            subtopicScore += o.subtopicScore;
+            confidence += o.confidence;
+            answers += o.answers;
+        }
+
+        public double getConfidencePercentage() {
+            return answers == 0 ? 0 : ((double) confidence / (answers * 3)) * 100;
+        }
+    }
+
+    // Result : totals of a grading run, per student and per subtopic of the bank
+
+    static class Result {
+        final Map<String, StudentTotals> students;
+        final long[] subtopicScore, subtopicConfidence, subtopicAnswers;
+        ItemAnalysis items;
+        long rows, rejected;
+
+        Result(int subtopics) {
+            students = new HashMap<>();
+            subtopicScore = new long[subtopics];
+            subtopicConfidence = new long[subtopics];
+            subtopicAnswers = new long[subtopics];
+        }
+
+        // folds the smaller result into the larger one and returns the larger
+        // o must come after this in the file (the item analysis joins the
+        // sheets cut at the chunk boundary)
+
+        Result merge(Result o) {
+            ItemAnalysis mergedItems = items != null && o.items != null ? items.merge(o.items) : null;
+            Result into = o.students.size() > students.size() ? o : this;
+            Result from = into == this ? o : this;
+            for (Map.Entry<String, StudentTotals> e : from.students.entrySet()) {
+                StudentTotals mine = into.students.putIfAbsent(e.getKey(), e.getValue());
+                if (mine != null)
+                    mine.add(e.getValue());
+            }
+            for (int i = 0; i < subtopicScore.length; i++) {
+                into.subtopicScore[i] += from.subtopicScore[i];
+                into.subtopicConfidence[i] += from.subtopicConfidence[i];
+                into.subtopicAnswers[i] += from.subtopicAnswers[i];
+            }
+            into.rows += from.rows;
+            into.rejected += from.rejected;
+            into.items = mergedItems;
+            return into;
+        }
+
+        public double getSubtopicConfidencePercentage(int st) {
+            return subtopicAnswers[st] == 0 ? 0 : ((double) subtopicConfidence[st] / (subtopicAnswers[st] * 3)) * 100;
+        }
+    }
+
+    public Result grade(Path answers) throws IOException {
+        try (FileChannel ch = FileChannel.open(answers, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(ch);
+            Result result = IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(i -> gradeChunk(ch, bounds[i], bounds[i + 1]))
+                    .reduce(Result::merge)
+                    .orElseGet(this::newResult);
+            if (result.items != null)
+                result.items.finish();
+            return result;
+        }
+    }
+
+    // chunk boundaries, each moved forward to just after a newline
+
+    private long[] chunkBounds(FileChannel ch) throws IOException {
+        long size = ch.size();
+        int n = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+        long[] bounds = new long[n + 1];
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < n; i++) {
+            long pos = Math.max(bounds[i - 1], (long) i * chunkSize);
+            search: while (pos < size) {
+                probe.clear();
+                int read = ch.read(probe, pos);
+                if (read <= 0)
+                    break;
+                for (int k = 0; k < read; k++) {
+                    if (probe.get(k) == '\n') {
+                        pos += k + 1;
+                        break search;
+                    }
+                }
+                pos += read;
+            }
+            bounds[i] = Math.min(pos, size);
+        }
+        bounds[n] = size;
+        return bounds;
+    }
+
+    private Result newResult() {
+        Result r = new Result(store.getSubtopicCount());
+        if (itemAnalysis)
+            r.items = new ItemAnalysis(store.getQuestionCount());
+        return r;
+    }
+
+    private Result gradeChunk(FileChannel ch, long from, long to) {
+        Result r = newResult();
+        if (to <= from)
+            return r;
+        MappedByteBuffer buf;
+        try {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int pos = 0, end = buf.limit();
+        byte[] key = new byte[64];
+        byte[] lastKey = new byte[0];
+        StudentTotals current = null;
+        String currentKey = null;
+        while (pos < end) {
+            int lineEnd = pos;
+            while (lineEnd < end && buf.get(lineEnd) != '\n')
+                lineEnd++;
+            int next = lineEnd + 1;
+            if (lineEnd > pos && buf.get(lineEnd - 1) == '\r')
+                lineEnd--;
+            if (lineEnd == pos || (from == 0 && pos == 0 && startsWith(buf, 0, "student"))) {
+                pos = next;
+                continue;
+            }
+            r.rows++;
+
+            // student key: bytes up to the first comma
+            int c1 = indexOf(buf, pos, lineEnd, (byte) ',');
+            int keyLen = c1 - pos;
+            if (c1 < 0 || keyLen == 0) {
+                r.rejected++;
+                pos = next;
+                continue;
+            }
+            if (keyLen > key.length)
+                key = new byte[keyLen * 2];
+            buf.get(pos, key, 0, keyLen);
+
+            // question and confidence as plain digits, the option by the question's type
+            int q = 0, p = c1 + 1, digits = 0;
+            while (p < lineEnd && buf.get(p) != ',') {
+                int d = buf.get(p++) - '0';
+                if (d < 0 || d > 9 || ++digits > 9) {
+                    q = -1;
+                    break;
+                }
+                q = q * 10 + d;
+            }
+            int c3 = lineEnd - 2;
+            if (q < 0 || digits == 0 || q >= store.getQuestionCount() || c3 <= p + 1 || buf.get(p) != ','
+                    || buf.get(c3) != ',') {
+                r.rejected++;
+                pos = next;
+                continue;
+            }
+            int selected = parseAnswer(buf, p + 1, c3, store.getType(q)), confidence = buf.get(c3 + 1) - '0';
+            if (selected == NO_ANSWER || confidence < 1 || confidence > 3) {
+                r.rejected++;
+                pos = next;
+                continue;
+            }
+
+            // sheets are usually grouped by student, so reuse the last lookup
+            if (current == null || !sameKey(lastKey, key, keyLen)) {
+                lastKey = Arrays.copyOf(key, keyLen);
+                currentKey = new String(lastKey, StandardCharsets.UTF_8);
+                current = r.students.computeIfAbsent(currentKey, k -> new StudentTotals());
+            }
+            mark(r, current, currentKey, q, selected, confidence);
+            pos = next;
+        }
+        return r;
+    }
+
+    private static final int NO_ANSWER = Integer.MIN_VALUE;
+
+    // the answer in buf[from, to) to a question of the given type, as written
+    // for QuestionBankLoader.parseAnswer but read from bytes; NO_ANSWER when
+    // it is malformed
+
+    private static int parseAnswer(ByteBuffer buf, int from, int to, int type) {
+        if (type == ScoringRules.NUMERIC) {
+            boolean negative = buf.get(from) == '-';
+            int v = 0, p = negative ? from + 1 : from;
+            if (p == to || to - p > 9)
+                return NO_ANSWER;
+            for (; p < to; p++) {
+                int d = buf.get(p) - '0';
+                if (d < 0 || d > 9)
+                    return NO_ANSWER;
+                v = v * 10 + d;
+            }
+            return negative ? -v : v;
+        }
+        int mask = 0;
+        for (int p = from; p < to; p += 2) {
+            int d = buf.get(p) - '0';
+            if (d < 0 || d > 3 || (mask >> d & 1) != 0 || p + 1 < to && buf.get(p + 1) != '+')
+                return NO_ANSWER;
+            mask |= 1 << d;
+        }
+        if (type == ScoringRules.SINGLE)
+            return to - from == 1 ? Integer.numberOfTrailingZeros(mask) : NO_ANSWER;
+        return mask;
+    }
+
+    private void mark(Result r, StudentTotals t, String key, int q, int selected, int confidence) {
+        int st = store.getSubtopicOf(q), type = store.getType(q);
+        ScoringRules.Rule rule = rules[st];
+        int outcome = rule.outcome(type, store.getCorrectAnswer(q), selected);
+        boolean correct = ScoringRules.isCorrect(outcome);
+        int marks = rule.section(outcome);
+        t.totalScore += rule.total(outcome, confidence);
+        t.subtopicScore += marks;
+        t.confidence += correct ? confidence : 0;
+        t.answers++;
+        r.subtopicScore[st] += marks;
+        r.subtopicConfidence[st] += correct ? confidence : 0;
+        r.subtopicAnswers[st]++;
+        if (r.items != null)
+            r.items.record(key, q, ScoringRules.optionMask(type, selected), confidence, correct);
+    }
+
+    // JournalSession : the answers of one journal session, as logged, and
+    // their confidence, 0 for a position closed by a timeout
+
+    private static final class JournalSession {
+        final String id, email;
+        int[] answers = new int[16];
+        byte[] confidence = new byte[16];
+        int size;
+
+        JournalSession(String id, String email) {
+            this.id = id;
+            this.email = email;
+        }
+
+        void add(int selected, int confidenceValue) {
+            grow(size + 1);
+            answers[size] = selected;
+            confidence[size++] = (byte) confidenceValue;
+        }
+
+        void timeOut(int end) {
+            grow(end);
+            while (size < end) {
+                answers[size] = 0;
+                confidence[size++] = 0;
+            }
+        }
+
+        private void grow(int length) {
+            if (length > answers.length) {
+                answers = Arrays.copyOf(answers, Math.max(length, size * 2));
+                confidence = Arrays.copyOf(confidence, answers.length);
+            }
+        }
+    }
+
+    // grades every session of a QuizEngine journal, by email, with this
+    // grader's key and rules. The journal is read once into per-session answer
+    // lists, then the sessions are graded in parallel. The engine answers in
+    // plan order, so the i-th answer of a session is for plan position i
+    // (mapped through the student's Shuffle when -Djeequiz.shuffle is set as
+    // it was for the engine); positions closed by a timed exam's clock score
+    // nothing. Sessions resumed from a snapshot lack their earlier answers and
+    // are skipped: their answers count as rejected rows.
+
+    public Result gradeJournal(Path journal) throws IOException {
+        Map<Long, JournalSession> open = new HashMap<>();
+        List<JournalSession> sessions = new ArrayList<>();
+        long[] orphans = new long[1];
+        AnswerJournal.replay(journal, new AnswerJournal.Replay() {
+            @Override
+            public void start(long session, String name, String email, int age) {
+                JournalSession s = new JournalSession(Long.toString(session, 36), email);
+                open.put(session, s);
+                sessions.add(s);
+            }
+
+            @Override
+            public void answer(long session, int selected, int confidenceValue, int spentMillis) {
+                JournalSession s = open.get(session);
+                if (s != null)
+                    s.add(selected, confidenceValue);
+                else
+                    orphans[0]++;
+            }
+
+            @Override
+            public void timeout(long session, int end, int spentMillis) {
+                JournalSession s = open.get(session);
+                if (s != null)
+                    s.timeOut(end);
+            }
+
+            @Override
+            public void end(long session) {
+                open.remove(session);
+            }
+
+            @Override
+            public void resume(long session, byte[] snapshot) {
+            }
+        });
+        int[] order = store.planOrder();
+        int[] start = new int[order.length]; // plan position where the subtopic starts
+        for (int p = 1; p < order.length; p++)
+            start[p] = store.getSubtopicOf(order[p]) == store.getSubtopicOf(order[p - 1]) ? start[p - 1] : p;
+        int tasks = Math.max(1, Math.min(sessions.size(), 64 * Runtime.getRuntime().availableProcessors()));
+        Result result = IntStream.range(0, tasks).parallel()
+                .mapToObj(i -> gradeSessions(sessions, (int) ((long) sessions.size() * i / tasks),
+                        (int) ((long) sessions.size() * (i + 1) / tasks), order, start))
+                .reduce(Result::merge)
+                .orElseGet(this::newResult);
+        result.rows += orphans[0];
+        result.rejected += orphans[0];
+        if (result.items != null)
+            result.items.finish();
+        return result;
+    }
+
+    private Result gradeSessions(List<JournalSession> sessions, int from, int to, int[] order, int[] start) {
+        Result r = newResult();
+        for (int i = from; i < to; i++) {
+            JournalSession s = sessions.get(i);
+            Shuffle shuffle = Shuffle.configured(s.email);
+            StudentTotals t = r.students.computeIfAbsent(s.email, k -> new StudentTotals());
+            for (int p = 0; p < s.size; p++) {
+                if (s.confidence[p] == 0)
+                    continue;
+                r.rows++;
+                if (p >= order.length) {
+                    r.rejected++;
+                    continue;
+                }
+                int position = p, selected = s.answers[p], confidence = s.confidence[p];
+                if (shuffle != null) {
+                    int size = store.getSubtopicSize(store.getSubtopicOf(order[p]));
+                    position = start[p] + shuffle.question(start[p], size, p - start[p]);
+                }
+                int q = order[position], type = store.getType(q);
+                if (!ScoringRules.isValid(type, selected)) {
+                    r.rejected++;
+                    continue;
+                }
+                if (shuffle != null)
+                    selected = shuffle.answer(position, 4, type, selected);
+                mark(r, t, s.id, q, selected, confidence);
+            }
+        }
+        return r;
+    }
+
+    private static int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++)
+            if (buf.get(i) == b)
+                return i;
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int pos, String prefix) {
+        if (buf.limit() - pos < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (buf.get(pos + i) != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static boolean sameKey(byte[] last, byte[] key, int len) {
+        if (last.length != len)
+            return false;
+        for (int i = 0; i < len; i++)
+            if (last[i] != key[i])
+                return false;
+        return true;
+    }
+
+    // writes one line per student: student,totalScore,subtopicScore,confidence%,answers
+
+    public static void writeStudents(Result result, Writer out) throws IOException {
+        out.write("student,totalScore,subtopicScore,confidence,answers\n");
+        for (Map.Entry<String, StudentTotals> e : result.students.entrySet()) {
+            StudentTotals t = e.getValue();
+            out.write(e.getKey() + "," + t.totalScore + "," + t.subtopicScore + ","
+                    + String.format("%.2f", t.getConfidencePercentage()) + "," + t.answers + "\n");
+        }
+    }
+
+    // Main method: java jeequiz.BulkGrader questions.bank answers.csv|journal.log [students.csv]
+    //   [scoring=<ScoringRules spec>] [key=corrections.csv]
+    // corrections.csv has lines question,answer (the answer as in answers.csv);
+    // a journal (see AnswerJournal)
+    // is recognised by its magic number
+    public static void main(String[] args) throws IOException {
+        List<String> files = new ArrayList<>();
+        ScoringRules scoring = ScoringRules.configured();
+        Path correctionsFile = null;
+        for (String arg : args) {
+            if (arg.startsWith("scoring="))
+                scoring = ScoringRules.parse(arg.substring(8));
+            else if (arg.startsWith("key="))
+                correctionsFile = Paths.get(arg.substring(4));
+            else
+                files.add(arg);
+        }
+        if (files.size() < 2) {
+            System.out.println("Usage: java jeequiz.BulkGrader <questions.bank> <answers.csv|journal.log>"
+                    + " [students.csv] [scoring=<rules>] [key=corrections.csv]");
+            return;
+        }
+        QuestionStore store = QuestionStore.fromBank(BinaryBank.open(Paths.get(files.get(0))));
+        Map<Integer, Integer> corrections = correctionsFile == null ? Map.of()
+                : readCorrections(correctionsFile, store);
+        if (!corrections.isEmpty())
+            store = store.withCorrections(corrections);
+        BulkGrader grader = new BulkGrader(store, DEFAULT_CHUNK, false, scoring);
+        Path answers = Paths.get(files.get(1));
+        long t0 = System.nanoTime();
+        Result result = isJournal(answers) ? grader.gradeJournal(answers) : grader.grade(answers);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.println("Graded " + result.rows + " rows (" + result.rejected + " rejected) for "
+                + result.students.size() + " students in " + String.format("%.2f", secs) + " s ("
+                + String.format("%.0f", result.rows / secs) + " rows/s), scoring " + scoring + ", "
+                + corrections.size() + " key corrections");
+        for (int st = 0; st < store.getSubtopicCount(); st++)
+            System.out.println("  " + store.getSubjectName(store.getSubjectOf(st)) + " / " + store.getSubtopicName(st)
+                    + " Score:" + result.subtopicScore[st] + " Conf:"
+                    + String.format("%.2f", result.getSubtopicConfidencePercentage(st)) + "%");
+        if (files.size() > 2) {
+            try (BufferedWriter out = Files.newBufferedWriter(Paths.get(files.get(2)), StandardCharsets.UTF_8)) {
+                writeStudents(result, out);
+            }
+        }
+    }
+
+    private static boolean isJournal(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            return ch.read(magic, 0) == 4 && magic.getInt(0) == AnswerJournal.MAGIC;
+        }
+    }
+
+    private static Map<Integer, Integer> readCorrections(Path file, QuestionStore store) throws IOException {
+        Map<Integer, Integer> corrections = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] f = line.trim().split(",");
+            if (f.length != 2 || f[0].startsWith("question"))
+                continue;
+            try {
+                int q = Integer.parseInt(f[0].trim());
+                if (q < 0 || q >= store.getQuestionCount())
+                    throw new IOException("Bad key correction line: " + line);
+                corrections.put(q, QuestionBankLoader.parseAnswer(f[1], store.getType(q)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Bad key correction line: " + line);
+            }
+        }
+        return corrections;
+    }
+}
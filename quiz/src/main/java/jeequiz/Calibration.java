@@ -0,0 +1,127 @@
+package jeequiz;
+
+// Calibration : this class tracks whether a student's confidence matches how
+// often they are actually right. Low, Medium and High (1, 2, 3 in the quiz)
+// are read as a stated chance of being right of 1/3, 2/3 and 3/3, the same
+// scale Subtopic uses for its confidence percentage.
+//
+// For every answer only a few counters change, so recording is O(1) and can
+// run inside Quiz.submitAnswer. From the counters it gives
+// - accuracy per confidence level
+// - the Brier score: mean of (stated chance - outcome)^2, 0 is perfect
+// - the confidence gap: mean stated chance minus accuracy; above 0 means
+//   overconfident, below 0 underconfident
+
+class Calibration {
+
+    static final int MIN_ANSWERS = 3; // fewer answers give no verdict
+    static final double GAP = 0.15; // gap that counts as over/under confident
+
+    private static final String[] LEVELS = { "", "Low", "Medium", "High" };
+
+    private final int[] answers = new int[4], correct = new int[4]; // by confidence value
+    private int total, right, confidenceSum;
+    private long brierNinths; // sum of (confidence - 3 * outcome)^2, i.e. 9x the Brier sum
+
+    public void record(int confidenceValue, boolean isCorrect) {
+        int o = isCorrect ? 1 : 0;
+        answers[confidenceValue]++;
+        correct[confidenceValue] += o;
+        total++;
+        right += o;
+        confidenceSum += confidenceValue;
+        int d = confidenceValue - 3 * o;
+        brierNinths += d * d;
+    }
+
+    public void add(Calibration o) {
+        for (int c = 1; c <= 3; c++) {
+            answers[c] += o.answers[c];
+            correct[c] += o.correct[c];
+        }
+        total += o.total;
+        right += o.right;
+        confidenceSum += o.confidenceSum;
+        brierNinths += o.brierNinths;
+    }
+
+    // sets the counts of one confidence level on an empty calibration (the
+    // other totals follow from them), e.g. from a SessionSnapshot
+
+    void restore(int confidenceValue, int answerCount, int correctCount) {
+        int wrong = answerCount - correctCount, d = confidenceValue - 3;
+        answers[confidenceValue] = answerCount;
+        correct[confidenceValue] = correctCount;
+        total += answerCount;
+        right += correctCount;
+        confidenceSum += confidenceValue * answerCount;
+        brierNinths += (long) correctCount * d * d + (long) wrong * confidenceValue * confidenceValue;
+    }
+
+    public int getAnswers() {
+        return total;
+    }
+
+    public int getAnswers(int confidenceValue) {
+        return answers[confidenceValue];
+    }
+
+    public int getCorrect(int confidenceValue) {
+        return correct[confidenceValue];
+    }
+
+    // share of correct answers given with this confidence, NaN if none
+
+    public double getAccuracy(int confidenceValue) {
+        int a = answers[confidenceValue];
+        return a == 0 ? Double.NaN : (double) correct[confidenceValue] / a;
+    }
+
+    public double getAccuracy() {
+        return total == 0 ? Double.NaN : (double) right / total;
+    }
+
+    public double getStatedConfidence() {
+        return total == 0 ? Double.NaN : confidenceSum / (3.0 * total);
+    }
+
+    public double getBrierScore() {
+        return total == 0 ? Double.NaN : brierNinths / (9.0 * total);
+    }
+
+    public double getConfidenceGap() {
+        return total == 0 ? Double.NaN : getStatedConfidence() - getAccuracy();
+    }
+
+    public boolean isOverconfident() {
+        return total >= MIN_ANSWERS && getConfidenceGap() > GAP;
+    }
+
+    public boolean isUnderconfident() {
+        return total >= MIN_ANSWERS && getConfidenceGap() < -GAP;
+    }
+
+    // one line such as "High 2/3, Medium 1/1, Low 0/0, Brier 0.30"
+
+    public String toSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 3; c >= 1; c--)
+            sb.append(LEVELS[c]).append(' ').append(correct[c]).append('/').append(answers[c]).append(", ");
+        sb.append("Brier ").append(total == 0 ? "-" : String.format("%.2f", getBrierScore()));
+        return sb.toString();
+    }
+
+    // feedback on the calibration, or null while it is well calibrated or
+    // there are too few answers to tell
+
+    public String getFeedback() {
+        if (isOverconfident())
+            return String.format("Overconfident: right %.0f%% of the time but claimed %.0f%%. "
+                    + "Double-check answers before marking them High.", getAccuracy() * 100,
+                    getStatedConfidence() * 100);
+        if (isUnderconfident())
+            return String.format("Underconfident: right %.0f%% of the time but claimed only %.0f%%. "
+                    + "Trust your preparation more.", getAccuracy() * 100, getStatedConfidence() * 100);
+        return null;
+    }
+}
@@ -0,0 +1,398 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// CohortExport : this class writes the results of every student in a
+// ResultStore as CSV or JSON Lines: total, subject and subtopic scores,
+// confidence percentage and feedback band (as in ResultReport).
+//
+// The export streams: records are read one at a time into one reusable
+// ResultStore.Record and encoded straight into a byte buffer that is written
+// to a FileChannel, so memory stays the same for any number of students and
+// nothing is allocated per student.
+//
+// The store's slots are cut into partitions, one output file each
+// (cohort-part-00000.csv, ...), which can be exported on several threads or
+// machines. Every 8 MB a partition is forced to disk and a small checkpoint
+// (store capacity, partition count, next slot, file length) is saved next to
+// it; an interrupted export picks up from there, truncating any half-written
+// tail, and a finished partition is skipped. A checkpoint of another capacity
+// or partition count is refused, as its slot ranges do not match.
+//
+// The store is not locked for the whole export. A record put in a slot the
+// partition has not reached yet is in it, one put in a slot already passed is
+// not (or with its old values). A put that grows the store moves every record
+// to a new slot, which would write some students twice and drop others, so
+// the partition checks the capacity seen by every read and fails once it
+// changed; the export then has to be started again without the checkpoints.
+
+class CohortExport {
+
+    static final int BUFFER_BYTES = 1 << 18;
+    static final long CHECKPOINT_BYTES = 8 << 20;
+
+    private final ResultStore store;
+    private final Path dir;
+    private final boolean json;
+    private final int partitions;
+    private final int[] subtopicsOf; // subtopic count per subject
+    private final byte[] header;
+    private final byte[][] subjectPart, subtopicPart; // pre-encoded names (JSON keys and names)
+    private final int maxRecordBytes;
+
+    public CohortExport(ResultStore store, List<Subject> shape, Path dir, boolean json, int partitions) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("Need at least one partition");
+        this.store = store;
+        this.dir = dir;
+        this.json = json;
+        this.partitions = partitions;
+        subtopicsOf = new int[shape.size()];
+        subjectPart = new byte[shape.size()][];
+        List<byte[]> subtopics = new ArrayList<>();
+        StringBuilder csvHeader = new StringBuilder("email,name,age,total_score,updated_ms");
+        int nameBytes = 0;
+        for (int s = 0; s < shape.size(); s++) {
+            Subject subj = shape.get(s);
+            subtopicsOf[s] = subj.getSubtopics().size();
+            String sn = subj.getName();
+            subjectPart[s] = bytes((s > 0 ? "," : "") + "{\"name\":" + jsonString(sn) + ",\"score\":");
+            csvHeader.append(',').append(csv(sn + " score"));
+            for (Subtopic st : subj.getSubtopics()) {
+                String tn = sn + "/" + st.getName();
+                subtopics.add(bytes((st != subj.getSubtopics().get(0) ? "," : "")
+                        + "{\"name\":" + jsonString(st.getName()) + ",\"score\":"));
+                csvHeader.append(',').append(csv(tn + " score")).append(',').append(csv(tn + " confidence"))
+                        .append(',').append(csv(tn + " band"));
+                nameBytes += subtopics.get(subtopics.size() - 1).length;
+            }
+            nameBytes += subjectPart[s].length;
+        }
+        if (subtopics.size() != store.getSubtopicCount())
+            throw new IllegalArgumentException("Store has " + store.getSubtopicCount() + " subtopics, bank "
+                    + subtopics.size());
+        subtopicPart = subtopics.toArray(new byte[0][]);
+        header = json ? new byte[0] : bytes(csvHeader.append('\n').toString());
+        // escaped email and name, numbers and fixed text of one record
+        maxRecordBytes = 6 * (ResultStore.EMAIL_BYTES + ResultStore.NAME_BYTES) + nameBytes + 256
+                + 96 * (subtopics.size() + shape.size());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public Path getFile(int partition) {
+        return dir.resolve(String.format("cohort-part-%05d.%s", partition, json ? "jsonl" : "csv"));
+    }
+
+    private Path checkpointFile(int partition) {
+        return dir.resolve(getFile(partition).getFileName() + ".ckpt");
+    }
+
+    // exports all partitions on the given number of threads and returns the
+    // number of students written by this run
+
+    public long exportAll(int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> parts = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                parts.add(pool.submit(() -> exportPartition(partition)));
+            }
+            long written = 0;
+            for (Future<Long> f : parts)
+                written += f.get();
+            return written;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // exports one partition, continuing from its checkpoint; returns the
+    // number of students written by this call (0 if it was already done)
+
+    public long exportPartition(int partition) throws IOException {
+        Files.createDirectories(dir);
+        int capacity = store.getCapacity();
+        int from = (int) ((long) capacity * partition / partitions);
+        int to = (int) ((long) capacity * (partition + 1) / partitions);
+        long length = 0;
+        Path ckpt = checkpointFile(partition);
+        if (Files.exists(ckpt)) {
+            String[] c = new String(Files.readAllBytes(ckpt), StandardCharsets.UTF_8).trim().split(" ");
+            if (c.length != 4)
+                throw new IOException("Unreadable checkpoint " + ckpt + "; delete the checkpoints to export again");
+            if (Integer.parseInt(c[0]) != capacity)
+                throw new IOException("Result store was resized since " + ckpt + " was written; delete the "
+                        + "checkpoints to export again");
+            if (Integer.parseInt(c[1]) != partitions)
+                throw new IOException(ckpt + " was written for " + c[1] + " partitions, not " + partitions
+                        + "; delete the checkpoints to export again");
+            if (c[3].equals("done"))
+                return 0;
+            from = Integer.parseInt(c[2]);
+            length = Long.parseLong(c[3]);
+        }
+
+        ResultStore.Record rec = store.newRecord();
+        ByteBuffer buf = ByteBuffer.allocate(Math.max(BUFFER_BYTES, 2 * maxRecordBytes));
+        byte[] digits = new byte[24];
+        long written = 0, sinceCheckpoint = 0;
+        try (FileChannel ch = FileChannel.open(getFile(partition), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            ch.truncate(length);
+            ch.position(length);
+            if (length == 0)
+                buf.put(header);
+            for (int slot = from; slot < to; slot++) {
+                boolean found = store.read(slot, rec);
+                if (rec.capacity != capacity)
+                    throw new IOException("Result store grew during the export of partition " + partition
+                            + "; delete the checkpoints to export again");
+                if (!found)
+                    continue;
+                if (json)
+                    writeJson(buf, rec, digits);
+                else
+                    writeCsv(buf, rec, digits);
+                written++;
+                if (buf.remaining() < maxRecordBytes) {
+                    sinceCheckpoint += flush(buf, ch);
+                    if (sinceCheckpoint >= CHECKPOINT_BYTES) {
+                        ch.force(false);
+                        checkpoint(ckpt, capacity + " " + partitions + " " + (slot + 1) + " " + ch.position());
+                        sinceCheckpoint = 0;
+                    }
+                }
+            }
+            flush(buf, ch);
+            ch.force(false);
+            checkpoint(ckpt, capacity + " " + partitions + " " + to + " done");
+        }
+        return written;
+    }
+
+    private static long flush(ByteBuffer buf, FileChannel ch) throws IOException {
+        buf.flip();
+        long n = buf.remaining();
+        while (buf.hasRemaining())
+            ch.write(buf);
+        buf.clear();
+        return n;
+    }
+
+    private static void checkpoint(Path file, String state) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, state.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeCsv(ByteBuffer buf, ResultStore.Record r, byte[] digits) {
+        csvBytes(buf, r.email, r.emailLength);
+        buf.put((byte) ',');
+        csvBytes(buf, r.name, r.nameLength);
+        buf.put((byte) ',');
+        putLong(buf, r.age, digits);
+        buf.put((byte) ',');
+        putLong(buf, r.totalScore, digits);
+        buf.put((byte) ',');
+        putLong(buf, r.updated, digits);
+        int t = 0;
+        for (int s = 0; s < subtopicsOf.length; s++) {
+            buf.put((byte) ',');
+            putLong(buf, subjectScore(r, t, subtopicsOf[s]), digits);
+            for (int end = t + subtopicsOf[s]; t < end; t++) {
+                buf.put((byte) ',');
+                putLong(buf, r.score[t], digits);
+                buf.put((byte) ',');
+                putPercentage(buf, r.totalConfidence[t], r.totalMaxConfidence[t], digits);
+                buf.put((byte) ',');
+                ascii(buf, ResultReport.BANDS[band(r, t)]);
+            }
+        }
+        buf.put((byte) '\n');
+    }
+
+    private void writeJson(ByteBuffer buf, ResultStore.Record r, byte[] digits) {
+        ascii(buf, "{\"email\":");
+        jsonBytes(buf, r.email, r.emailLength);
+        ascii(buf, ",\"name\":");
+        jsonBytes(buf, r.name, r.nameLength);
+        ascii(buf, ",\"age\":");
+        putLong(buf, r.age, digits);
+        ascii(buf, ",\"total_score\":");
+        putLong(buf, r.totalScore, digits);
+        ascii(buf, ",\"updated_ms\":");
+        putLong(buf, r.updated, digits);
+        ascii(buf, ",\"subjects\":[");
+        int t = 0;
+        for (int s = 0; s < subtopicsOf.length; s++) {
+            buf.put(subjectPart[s]);
+            putLong(buf, subjectScore(r, t, subtopicsOf[s]), digits);
+            ascii(buf, ",\"subtopics\":[");
+            for (int end = t + subtopicsOf[s]; t < end; t++) {
+                buf.put(subtopicPart[t]);
+                putLong(buf, r.score[t], digits);
+                ascii(buf, ",\"confidence\":");
+                putPercentage(buf, r.totalConfidence[t], r.totalMaxConfidence[t], digits);
+                ascii(buf, ",\"band\":\"");
+                ascii(buf, ResultReport.BANDS[band(r, t)]);
+                ascii(buf, "\"}");
+            }
+            ascii(buf, "]}");
+        }
+        ascii(buf, "]}\n");
+    }
+
+    private static int subjectScore(ResultStore.Record r, int first, int count) {
+        int sum = 0;
+        for (int t = first; t < first + count; t++)
+            sum += r.score[t];
+        return sum;
+    }
+
+    // same percentage as Subtopic.getConfidencePercentage
+    private static int band(ResultStore.Record r, int t) {
+        int max = r.totalMaxConfidence[t];
+        return ResultReport.band(max == 0 ? 0 : (double) r.totalConfidence[t] / max * 100);
+    }
+
+    private static void ascii(ByteBuffer buf, String s) {
+        for (int i = 0; i < s.length(); i++)
+            buf.put((byte) s.charAt(i));
+    }
+
+    private static void putLong(ByteBuffer buf, long v, byte[] digits) {
+        if (v < 0) {
+            buf.put((byte) '-');
+            v = -v;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        buf.put(digits, i, digits.length - i);
+    }
+
+    // part / whole as a percentage with two decimals, 0.00 when whole is 0
+    private static void putPercentage(ByteBuffer buf, int part, int whole, byte[] digits) {
+        long hundredths = whole == 0 ? 0 : Math.round(part * 10000.0 / whole);
+        putLong(buf, hundredths / 100, digits);
+        buf.put((byte) '.');
+        buf.put((byte) ('0' + hundredths / 10 % 10));
+        buf.put((byte) ('0' + hundredths % 10));
+    }
+
+    private static void csvBytes(ByteBuffer buf, byte[] b, int len) {
+        boolean quote = false;
+        for (int i = 0; i < len && !quote; i++)
+            quote = b[i] == ',' || b[i] == '"' || b[i] == '\n' || b[i] == '\r';
+        if (!quote) {
+            buf.put(b, 0, len);
+            return;
+        }
+        buf.put((byte) '"');
+        for (int i = 0; i < len; i++) {
+            if (b[i] == '"')
+                buf.put((byte) '"');
+            buf.put(b[i]);
+        }
+        buf.put((byte) '"');
+    }
+
+    // UTF-8 bytes pass through; quotes, backslashes and control characters are escaped
+    private static void jsonBytes(ByteBuffer buf, byte[] b, int len) {
+        buf.put((byte) '"');
+        for (int i = 0; i < len; i++) {
+            byte c = b[i];
+            if (c == '"' || c == '\\') {
+                buf.put((byte) '\\').put(c);
+            } else if (c >= 0 && c < 0x20) {
+                ascii(buf, "\\u00");
+                buf.put((byte) Character.forDigit(c >> 4, 16)).put((byte) Character.forDigit(c & 0xF, 16));
+            } else {
+                buf.put(c);
+            }
+        }
+        buf.put((byte) '"');
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String csv(String s) {
+        return s.indexOf(',') < 0 && s.indexOf('"') < 0 ? s : '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    // Main method: java jeequiz.CohortExport <results.store> <questions.bank | -> <out-dir>
+    //                  [csv | jsonl] [partitions] [threads]
+    // run it again after an interruption to finish the export
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java jeequiz.CohortExport <results.store> <questions.bank | -> <out-dir> "
+                    + "[csv | jsonl] [partitions] [threads]");
+            return;
+        }
+        Student shape = new Student("shape", "shape", 0);
+        if (args[1].equals("-"))
+            QuestionBank.loadDefault(shape);
+        else
+            BinaryBank.open(Paths.get(args[1])).loadSkeleton(shape);
+        int subtopicCount = 0;
+        for (Subject s : shape.getSubjects())
+            subtopicCount += s.getSubtopics().size();
+        boolean json = args.length > 3 && args[3].equals("jsonl");
+        int partitions = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        try (ResultStore store = ResultStore.open(Paths.get(args[0]), subtopicCount, false)) {
+            CohortExport export = new CohortExport(store, shape.getSubjects(), Paths.get(args[2]), json,
+                    partitions);
+            long t0 = System.nanoTime();
+            long n = export.exportAll(threads);
+            double secs = (System.nanoTime() - t0) / 1e9;
+            System.out.println("Exported " + n + " students in " + String.format("%.2f", secs) + " s ("
+                    + String.format("%.0f", n / Math.max(secs, 1e-9)) + "/s) into " + partitions + " partitions");
+        }
+    }
+}
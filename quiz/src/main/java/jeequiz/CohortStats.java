@@ -0,0 +1,192 @@
+package jeequiz;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// CohortStats : this class collects live statistics for the whole cohort of
+// students taking the same question bank: average score and confidence
+// percentage for every subject and subtopic, and how often every option of
+// every question was chosen (every option of a multiple answer counts, a
+// numeric answer chooses none).
+//
+// All counters are LongAdders, so thousands of sessions can record answers at
+// the same time without fighting over one lock or one memory location. Reading
+// (snapshot, getDistribution) only sums the adders and never blocks writers;
+// a snapshot taken during the test is therefore close to, not exactly, a
+// single point in time.
+
+class CohortStats {
+
+    private final String[] subjectNames;
+    private final SubtopicStats[][] subtopics;
+    private final LongAdder students = new LongAdder();
+
+    // the shape (subject, subtopic and question counts) is copied from a
+    // student that has the bank loaded; every session must use the same bank
+
+    public CohortStats(List<Subject> shape) {
+        subjectNames = new String[shape.size()];
+        subtopics = new SubtopicStats[shape.size()][];
+        for (int s = 0; s < shape.size(); s++) {
+            Subject subj = shape.get(s);
+            subjectNames[s] = subj.getName();
+            subtopics[s] = new SubtopicStats[subj.getSubtopics().size()];
+            for (int t = 0; t < subtopics[s].length; t++) {
+                Subtopic st = subj.getSubtopics().get(t);
+                subtopics[s][t] = new SubtopicStats(st.getName(), st.getQuestions().size());
+            }
+        }
+    }
+
+    public void recordStudent() {
+        students.increment();
+    }
+
+    // records one answer, marked as for Subtopic.processAnswer (marks is the
+    // section mark of its ScoringRules.Rule); options is the mask of the
+    // options it chose (see ScoringRules.optionMask)
+
+    public void recordAnswer(int subject, int subtopic, int question, int options, int confidenceValue, int marks,
+            boolean correct) {
+        SubtopicStats st = subtopics[subject][subtopic];
+        st.score.add(marks);
+        if (correct)
+            st.confidence.add(confidenceValue);
+        st.maxConfidence.add(3);
+        st.answers.increment();
+        for (int i = 0; i < 4; i++)
+            if ((options >> i & 1) != 0)
+                st.distribution[question * 4 + i].increment();
+    }
+
+    // how many times each of the four options of one question was chosen
+
+    public long[] getDistribution(int subject, int subtopic, int question) {
+        LongAdder[] d = subtopics[subject][subtopic].distribution;
+        long[] counts = new long[4];
+        for (int i = 0; i < 4; i++)
+            counts[i] = d[question * 4 + i].sum();
+        return counts;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    private static class SubtopicStats {
+        final String name;
+        final LongAdder score = new LongAdder();
+        final LongAdder confidence = new LongAdder();
+        final LongAdder maxConfidence = new LongAdder();
+        final LongAdder answers = new LongAdder();
+        final LongAdder[] distribution;
+
+        SubtopicStats(String name, int questions) {
+            this.name = name;
+            distribution = new LongAdder[questions * 4];
+            for (int i = 0; i < distribution.length; i++)
+                distribution[i] = new LongAdder();
+        }
+    }
+
+    // Snapshot : plain copy of the subject and subtopic sums at one moment
+
+    static class Snapshot {
+        private final long students;
+        private final String[] subjectNames;
+        private final String[][] subtopicNames;
+        private final long[][] score, confidence, maxConfidence, answers;
+
+        private Snapshot(CohortStats c) {
+            students = c.students.sum();
+            int n = c.subtopics.length;
+            subjectNames = c.subjectNames;
+            subtopicNames = new String[n][];
+            score = new long[n][];
+            confidence = new long[n][];
+            maxConfidence = new long[n][];
+            answers = new long[n][];
+            for (int s = 0; s < n; s++) {
+                int m = c.subtopics[s].length;
+                subtopicNames[s] = new String[m];
+                score[s] = new long[m];
+                confidence[s] = new long[m];
+                maxConfidence[s] = new long[m];
+                answers[s] = new long[m];
+                for (int t = 0; t < m; t++) {
+                    SubtopicStats st = c.subtopics[s][t];
+                    subtopicNames[s][t] = st.name;
+                    score[s][t] = st.score.sum();
+                    confidence[s][t] = st.confidence.sum();
+                    maxConfidence[s][t] = st.maxConfidence.sum();
+                    answers[s][t] = st.answers.sum();
+                }
+            }
+        }
+
+        public long getStudents() {
+            return students;
+        }
+
+        public int getSubjectCount() {
+            return subjectNames.length;
+        }
+
+        public String getSubjectName(int s) {
+            return subjectNames[s];
+        }
+
+        public int getSubtopicCount(int s) {
+            return subtopicNames[s].length;
+        }
+
+        public String getSubtopicName(int s, int t) {
+            return subtopicNames[s][t];
+        }
+
+        public long getAnswers(int s, int t) {
+            return answers[s][t];
+        }
+
+        public double getAverageScore(int s, int t) {
+            return students == 0 ? 0 : (double) score[s][t] / students;
+        }
+
+        public double getConfidencePercentage(int s, int t) {
+            return maxConfidence[s][t] == 0 ? 0 : ((double) confidence[s][t] / maxConfidence[s][t]) * 100;
+        }
+
+        public double getAverageScore(int s) {
+            long sum = 0;
+            for (long v : score[s])
+                sum += v;
+            return students == 0 ? 0 : (double) sum / students;
+        }
+
+        public double getConfidencePercentage(int s) {
+            long conf = 0, max = 0;
+            for (int t = 0; t < confidence[s].length; t++) {
+                conf += confidence[s][t];
+                max += maxConfidence[s][t];
+            }
+            return max == 0 ? 0 : ((double) conf / max) * 100;
+        }
+
+        public String toReport() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("******** COHORT ********\nStudents: ").append(students).append("\n\n");
+            for (int s = 0; s < subjectNames.length; s++) {
+                sb.append(subjectNames[s]).append(" Avg:").append(String.format("%.2f", getAverageScore(s)))
+                        .append(" Conf:").append(String.format("%.2f", getConfidencePercentage(s))).append("%\n");
+                for (int t = 0; t < subtopicNames[s].length; t++) {
+                    sb.append("  ").append(subtopicNames[s][t]).append(" Avg:")
+                            .append(String.format("%.2f", getAverageScore(s, t))).append(" Conf:")
+                            .append(String.format("%.2f", getConfidencePercentage(s, t))).append("% Answers:")
+                            .append(answers[s][t]).append('\n');
+                }
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
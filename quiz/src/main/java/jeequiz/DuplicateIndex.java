@@ -0,0 +1,336 @@
+package jeequiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// DuplicateIndex : this class finds duplicate and near-duplicate questions
+// while a bank is ingested, using MinHash signatures and locality sensitive
+// hashing (LSH).
+//
+// A question is normalized (lower case, single spaces, no trailing ? or .)
+// together with its options in sorted order, so reordered options still
+// match, and cut into overlapping 3 character shingles. Its signature is the
+// minimum of 32 different hashes over those shingles; two signatures agree in
+// a position with probability equal to the Jaccard similarity of the shingle
+// sets. The signature is split into 8 bands of 4, and questions sharing any
+// band land in the same bucket and become candidates. Only candidates are
+// compared, so adding a question costs about the same no matter how big the
+// index is. A pair with similarity s shares a band with probability
+// 1 - (1 - s^4)^8: about 89% at 0.7, 98.5% at 0.8 and all but certain from
+// 0.9, while pairs at 0.3 are candidates only 6% of the time. A bucket is
+// searched for at most MAX_CANDIDATES_PER_BAND earlier questions, so in very
+// large buckets (many questions sharing a template) the recall is lower
+// still; 16 bands of 2 would find more pairs near the threshold but made
+// such buckets far larger and ingestion about 3 times slower.
+//
+// add() returns the matches of the new question against everything added
+// before, so a bank can be checked while it streams in and new questions can
+// be added later. Memory per question: the signature (32 ints), a content hash
+// and one chain link per band, all in flat arrays.
+
+class DuplicateIndex implements QuestionBankLoader.RowHandler {
+
+    static final int HASHES = 32, BANDS = 8, ROWS = HASHES / BANDS;
+    static final double DEFAULT_THRESHOLD = 0.7;
+    static final int MAX_CANDIDATES_PER_BAND = 64; // bounds the work in huge buckets
+
+    // hash i of a shingle is (a[i] * x + b[i]) >>> 33 with x the mixed shingle
+    // (multiply-shift hashing, one multiply per hash)
+    private static final long[] A = new long[HASHES], B = new long[HASHES];
+
+    static {
+        long s = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            A[i] = (s = mix(s + 0x9E3779B97F4A7C15L)) | 1;
+            B[i] = s = mix(s + 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    // Match : a question that duplicates an earlier one
+
+    static class Match {
+        final int question, duplicateOf;
+        final double similarity;
+        final boolean exact;
+
+        Match(int question, int duplicateOf, double similarity, boolean exact) {
+            this.question = question;
+            this.duplicateOf = duplicateOf;
+            this.similarity = similarity;
+            this.exact = exact;
+        }
+    }
+
+    private final double threshold;
+    private int[] signatures = new int[HASHES * 1024];
+    private long[] contentHash = new long[1024];
+    private int[] next = new int[BANDS * 1024]; // previous question in the same bucket, or -1
+    private final BucketTable[] buckets = new BucketTable[BANDS];
+    private int size;
+
+    // labels of the questions added through row(), for reports
+    private final List<String> labels = new ArrayList<>();
+    private final List<Match> found = new ArrayList<>();
+
+    public DuplicateIndex() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public DuplicateIndex(double threshold) {
+        this.threshold = threshold;
+        for (int b = 0; b < BANDS; b++)
+            buckets[b] = new BucketTable();
+    }
+
+    // adds a question and returns the earlier questions it (nearly) duplicates
+    // the new question's number is size() before the call
+
+    public List<Match> add(String text, String[] options) {
+        String content = normalize(text, options);
+        int q = size;
+        ensureCapacity(q + 1);
+        long ch = hashString(content);
+        contentHash[q] = ch;
+        int base = q * HASHES;
+        int[] sig = minHashes(content);
+        System.arraycopy(sig, 0, signatures, base, HASHES);
+
+        List<Match> matches = new ArrayList<>(0);
+        for (int b = 0; b < BANDS; b++) {
+            long key = bandKey(base + b * ROWS, b);
+            int seen = 0;
+            for (int c = buckets[b].get(key); c >= 0 && seen < MAX_CANDIDATES_PER_BAND;
+                    c = next[c * BANDS + b], seen++) {
+                if (alreadyMatched(matches, c))
+                    continue;
+                double sim = similarity(q, c);
+                boolean exact = contentHash[c] == ch;
+                if (exact || sim >= threshold)
+                    matches.add(new Match(q, c, exact ? 1 : sim, exact));
+            }
+            next[q * BANDS + b] = buckets[b].put(key, q);
+        }
+        size++;
+        return matches;
+    }
+
+    private static int[] minHashes(String content) {
+        int[] sig = new int[HASHES];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        int shingles = Math.max(content.length() - 2, 1);
+        for (int i = 0; i < shingles; i++) {
+            long x = mix(shingle(content, i));
+            for (int h = 0; h < HASHES; h++) {
+                int v = (int) ((A[h] * x + B[h]) >>> 33);
+                if (v < sig[h])
+                    sig[h] = v;
+            }
+        }
+        return sig;
+    }
+
+    private static boolean alreadyMatched(List<Match> matches, int c) {
+        for (Match m : matches)
+            if (m.duplicateOf == c)
+                return true;
+        return false;
+    }
+
+    // estimated Jaccard similarity of two added questions
+
+    public double similarity(int a, int b) {
+        int same = 0;
+        for (int h = 0; h < HASHES; h++)
+            if (signatures[a * HASHES + h] == signatures[b * HASHES + h])
+                same++;
+        return (double) same / HASHES;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private long bandKey(int from, int band) {
+        long k = band;
+        for (int i = 0; i < ROWS; i++)
+            k = mix(k * 31 + signatures[from + i]);
+        return k;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= contentHash.length)
+            return;
+        int cap = contentHash.length * 2;
+        signatures = Arrays.copyOf(signatures, cap * HASHES);
+        contentHash = Arrays.copyOf(contentHash, cap);
+        next = Arrays.copyOf(next, cap * BANDS);
+    }
+
+    static String normalize(String text, String[] options) {
+        String[] opts = new String[options.length];
+        for (int i = 0; i < opts.length; i++)
+            opts[i] = clean(options[i]);
+        Arrays.sort(opts);
+        StringBuilder sb = new StringBuilder(clean(text));
+        for (String o : opts)
+            sb.append('|').append(o);
+        return sb.toString();
+    }
+
+    private static String clean(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ')
+                    sb.append(' ');
+            } else {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        int end = sb.length();
+        while (end > 0 && (sb.charAt(end - 1) == ' ' || sb.charAt(end - 1) == '?' || sb.charAt(end - 1) == '.'))
+            end--;
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    private static long shingle(String s, int i) {
+        long h = 0;
+        for (int k = i; k < i + 3; k++)
+            h = h << 21 | (k < s.length() ? s.charAt(k) : 0);
+        return h;
+    }
+
+    private static long hashString(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++)
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // BucketTable : open addressing map from a band key to the last question
+    // added with it; older ones are reached through next[]
+
+    private static class BucketTable {
+        private long[] keys = new long[1024];
+        private int[] heads = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private int count;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask; used[i]; i = (i + 1) & mask)
+                if (keys[i] == key)
+                    return heads[i];
+            return -1;
+        }
+
+        // stores q as the head for key and returns the previous head or -1
+
+        int put(long key, int q) {
+            if ((count + 1) * 4 > keys.length * 3)
+                resize();
+            int mask = keys.length - 1;
+            int i = (int) key & mask;
+            for (; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    int prev = heads[i];
+                    heads[i] = q;
+                    return prev;
+                }
+            }
+            used[i] = true;
+            keys[i] = key;
+            heads[i] = q;
+            count++;
+            return -1;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldHeads = heads;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            heads = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (!oldUsed[j])
+                    continue;
+                int i = (int) oldKeys[j] & mask;
+                while (used[i])
+                    i = (i + 1) & mask;
+                used[i] = true;
+                keys[i] = oldKeys[j];
+                heads[i] = oldHeads[j];
+            }
+        }
+    }
+
+    // RowHandler: checks every question of a streamed bank
+
+    @Override
+    public void row(String subject, String subtopic, String text, String[] options, int type, int correct) {
+        labels.add(subject + " / " + subtopic + ": " + text);
+        found.addAll(add(text, options));
+    }
+
+    public List<Match> getMatches() {
+        return found;
+    }
+
+    public String getLabel(int q) {
+        return q < labels.size() ? labels.get(q) : "#" + q;
+    }
+
+    // Main method: java jeequiz.DuplicateIndex [questions.csv | questions.bank | - [threshold]]
+    // without a file (or with -) the built-in demo questions are checked
+    public static void main(String[] args) throws IOException {
+        DuplicateIndex index = new DuplicateIndex(args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_THRESHOLD);
+        long t0 = System.nanoTime();
+        if (args.length == 0 || args[0].equals("-")) {
+            Student demo = new Student("demo", "demo", 0);
+            QuestionBank.loadDefault(demo);
+            for (Subject subj : demo.getSubjects())
+                for (Subtopic st : subj.getSubtopics())
+                    for (MCQQuestion q : st.getQuestions())
+                        index.row(subj.getName(), st.getName(), q.getText(), q.getOptions(), q.getType(),
+                                q.getCorrectAnswer());
+        } else if (args[0].endsWith(".csv")) {
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+                QuestionBankLoader.stream(in, index);
+            }
+        } else {
+            BinaryBank.open(Paths.get(args[0])).stream(index);
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+        int exact = 0;
+        for (Match m : index.getMatches())
+            if (m.exact)
+                exact++;
+        System.out.println(index.size() + " questions checked in " + String.format("%.2f", secs) + " s: " + exact
+                + " duplicates, " + (index.getMatches().size() - exact) + " near-duplicates");
+        int shown = 0;
+        for (Match m : index.getMatches()) {
+            if (shown++ == 50) {
+                System.out.println("  ...");
+                break;
+            }
+            System.out.println("  " + (m.exact ? "duplicate" : String.format("similar %.2f", m.similarity)) + "\n    "
+                    + index.getLabel(m.question) + "\n    " + index.getLabel(m.duplicateOf));
+        }
+    }
+}
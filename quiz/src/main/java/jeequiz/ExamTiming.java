@@ -0,0 +1,123 @@
+package jeequiz;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ExamTiming : this class runs the clocks of a timed exam for every session of
+// an engine: a limit per question and/or per section (subject). All clocks
+// live on one shared TimingWheel, so a session costs two wheel entries and
+// re-arming after an answer is an O(1) cancel and insert.
+//
+// The question clock starts when a question is shown and the section clock
+// when the first question of a section is shown. When a clock runs out the
+// Expiry callback is called on the wheel thread with the position the clock
+// was armed for and the end of the positions to close (see Quiz.timeOut);
+// the callback must check that the session has not moved on meanwhile.
+//
+// Limits come from -Djeequiz.timing=question:<seconds>,section:<seconds>
+// (either part may be left out).
+
+class ExamTiming implements Closeable {
+
+    // Expiry : a clock ran out; position is -1 for a section clock
+    interface Expiry {
+        void expired(String id, int position, int end);
+    }
+
+    // Clock : the two timers of one session
+    private static final class Clock {
+        TimingWheel.Timeout question, section;
+        int sectionEnd = -1;
+    }
+
+    private final long questionMillis, sectionMillis;
+    private final Expiry expiry;
+    private final TimingWheel wheel = new TimingWheel();
+    private final ConcurrentHashMap<String, Clock> clocks = new ConcurrentHashMap<>();
+
+    public ExamTiming(long questionMillis, long sectionMillis, Expiry expiry) {
+        this.questionMillis = questionMillis;
+        this.sectionMillis = sectionMillis;
+        this.expiry = expiry;
+    }
+
+    // the timing given by -Djeequiz.timing, or null for an untimed exam
+
+    public static ExamTiming configured(Expiry expiry) {
+        String spec = System.getProperty("jeequiz.timing");
+        if (spec == null)
+            return null;
+        long question = 0, section = 0;
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            long millis;
+            try {
+                millis = kv.length == 2 ? Math.round(Double.parseDouble(kv[1].trim()) * 1000) : -1;
+            } catch (NumberFormatException e) {
+                millis = -1;
+            }
+            if (millis <= 0 || !(kv[0].trim().equals("question") || kv[0].trim().equals("section")))
+                throw new IllegalArgumentException("Bad exam timing: " + part);
+            if (kv[0].trim().equals("question"))
+                question = millis;
+            else
+                section = millis;
+        }
+        return new ExamTiming(question, section, expiry);
+    }
+
+    public long getQuestionMillis() {
+        return questionMillis;
+    }
+
+    public long getSectionMillis() {
+        return sectionMillis;
+    }
+
+    // (re)arms the clocks of a session for its current position; call with
+    // the quiz lock held after every change of position
+
+    public void arm(String id, Quiz quiz) {
+        if (quiz.isQuizFinished()) {
+            stop(id);
+            return;
+        }
+        Clock c = clocks.computeIfAbsent(id, k -> new Clock());
+        synchronized (c) {
+            if (c.question != null)
+                c.question.cancel();
+            int position = quiz.getPosition();
+            if (questionMillis > 0)
+                c.question = wheel.schedule(() -> expiry.expired(id, position, position + 1), questionMillis);
+            int end = quiz.getSectionEnd();
+            if (sectionMillis > 0 && end != c.sectionEnd) {
+                if (c.section != null)
+                    c.section.cancel();
+                c.sectionEnd = end;
+                c.section = wheel.schedule(() -> expiry.expired(id, -1, end), sectionMillis);
+            }
+        }
+    }
+
+    public void stop(String id) {
+        Clock c = clocks.remove(id);
+        if (c == null)
+            return;
+        synchronized (c) {
+            if (c.question != null)
+                c.question.cancel();
+            if (c.section != null)
+                c.section.cancel();
+        }
+    }
+
+    // clocks still running
+    public int getPending() {
+        return wheel.getPending();
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+}
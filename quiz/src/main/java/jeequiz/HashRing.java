@@ -0,0 +1,85 @@
+package jeequiz;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// HashRing : this class maps keys (student emails) to workers by consistent
+// hashing. Every worker owns VNODES points on a 64 bit ring and a key belongs
+// to the first point at or after its own hash, so adding or removing one of n
+// workers only moves about 1/n of the keys, all to or from that worker.
+//
+// The points are kept as one sorted long[] with the owner of each point in a
+// parallel array; a lookup is a binary search. A ring is immutable: with()
+// and without() return a new ring, so readers never lock.
+
+class HashRing {
+
+    static final int VNODES = 128;
+
+    private final List<String> workers;
+    private final long[] points;
+    private final int[] owners; // index into workers
+
+    HashRing(List<String> workers) {
+        this.workers = List.copyOf(workers);
+        long[] p = new long[this.workers.size() * VNODES];
+        for (int w = 0; w < this.workers.size(); w++)
+            for (int v = 0; v < VNODES; v++)
+                p[w * VNODES + v] = (hash(this.workers.get(w) + "#" + v) & ~0xFFFFL) | w;
+        // the worker index in the low bits keeps equal hashes apart and sorts with them
+        Arrays.sort(p);
+        points = new long[p.length];
+        owners = new int[p.length];
+        for (int i = 0; i < p.length; i++) {
+            points[i] = p[i];
+            owners[i] = (int) (p[i] & 0xFFFF);
+        }
+    }
+
+    public HashRing with(String worker) {
+        if (workers.contains(worker))
+            return this;
+        if (workers.size() >= 0xFFFF)
+            throw new IllegalArgumentException("Too many workers");
+        List<String> w = new ArrayList<>(workers);
+        w.add(worker);
+        return new HashRing(w);
+    }
+
+    public HashRing without(String worker) {
+        List<String> w = new ArrayList<>(workers);
+        w.remove(worker);
+        return new HashRing(w);
+    }
+
+    public List<String> getWorkers() {
+        return workers;
+    }
+
+    // the worker of a key, or null on an empty ring; emails are compared
+    // without case
+
+    public String owner(String key) {
+        if (points.length == 0)
+            return null;
+        int i = Arrays.binarySearch(points, hash(key.toLowerCase(Locale.ROOT)));
+        if (i < 0)
+            i = -i - 1;
+        return workers.get(owners[i == points.length ? 0 : i]);
+    }
+
+    // 64 bit FNV-1a of the UTF-8 bytes, then mixed so nearby strings spread
+    static long hash(String s) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
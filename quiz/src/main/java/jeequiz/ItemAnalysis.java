@@ -0,0 +1,386 @@
+package jeequiz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+
+// ItemAnalysis : this class computes the classic item statistics of every
+// question of a bank from answer data:
+// - difficulty: share of answers that are correct
+// - discrimination: corrected point-biserial correlation between answering the
+//   question correctly and the student's score on the rest of the sheet
+// - distractors: how often each of the four options was picked (every option
+//   of a multiple answer counts; a numeric answer picks none)
+// - confidence: correct and wrong answers per confidence level 1-3
+//
+// Only sums are kept (15 longs per question), so the memory does not grow with
+// the number of answers, and two analyses of different parts of the data are
+// combined by adding them (merge). New answers can be added at any time, and a
+// saved analysis can be loaded and extended with the next batch.
+//
+// Discrimination needs a student's whole sheet, so answers are collected into
+// the open Sheet of their student and folded in when the sheet is closed.
+// Answer files are expected to be grouped by student (as scanned sheets are).
+// When a file is cut into chunks, the first and last sheet of a chunk stay
+// open and merge() joins them with the neighbouring chunk, so a student cut by
+// a chunk boundary still counts as one sheet. merge() must then be called in
+// file order (left.merge(right)).
+//
+// Not thread safe: every thread fills its own analysis and they are merged,
+// or callers synchronize on the analysis. A live service records the answers
+// into one shared Counts instead (no lock) and keeps only the rarer sheet
+// sums under a lock; addTo() puts the counts into an analysis for reports.
+
+class ItemAnalysis {
+
+    static final int MAGIC = 0x4A454549; // "JEEI"
+    static final int VERSION = 1;
+
+    private final int questions;
+    private final long[] options; // [q * 4 + option]
+    private final long[] correctAt, wrongAt; // [q * 3 + confidence - 1]
+
+    // per question sums over closed sheets: x = 1 if correct, y = rest score
+    private final long[] n, sx, sy, syy, sxy;
+
+    private Sheet head, tail;
+    private long sheets;
+
+    public ItemAnalysis(int questions) {
+        this.questions = questions;
+        options = new long[questions * 4];
+        correctAt = new long[questions * 3];
+        wrongAt = new long[questions * 3];
+        n = new long[questions];
+        sx = new long[questions];
+        sy = new long[questions];
+        syy = new long[questions];
+        sxy = new long[questions];
+    }
+
+    // Sheet : the answered questions of one student and whether each was correct
+
+    static class Sheet {
+        final String key;
+        private int[] items = new int[16]; // question << 1 | correct
+        private int size, correct;
+
+        Sheet(String key) {
+            this.key = key;
+        }
+
+        public void add(int question, boolean isCorrect) {
+            if (size == items.length)
+                items = Arrays.copyOf(items, size * 2);
+            items[size++] = question << 1 | (isCorrect ? 1 : 0);
+            if (isCorrect)
+                correct++;
+        }
+
+        void addAll(Sheet o) {
+            for (int i = 0; i < o.size; i++)
+                add(o.items[i] >>> 1, (o.items[i] & 1) != 0);
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    // Counts : the per-answer counts (options, correct and wrong by confidence)
+    // of every question in one array of atomic cells, for many threads at once
+
+    static class Counts {
+        private static final int STRIDE = 10; // 4 options, 3 correct, 3 wrong
+        private final int questions;
+        private final AtomicLongArray cells;
+
+        Counts(int questions) {
+            this.questions = questions;
+            cells = new AtomicLongArray(questions * STRIDE);
+        }
+
+        public void record(int question, int options, int confidenceValue, boolean correct) {
+            int at = question * STRIDE;
+            for (int i = 0; i < 4; i++)
+                if ((options >> i & 1) != 0)
+                    cells.incrementAndGet(at + i);
+            cells.incrementAndGet(at + (correct ? 4 : 7) + confidenceValue - 1);
+        }
+
+        // adds the counts to the analysis (of the same bank); answers recorded
+        // meanwhile may be counted in part
+        public void addTo(ItemAnalysis a) {
+            if (a.questions != questions)
+                throw new IllegalArgumentException("Analyses of different banks");
+            for (int q = 0; q < questions; q++) {
+                int at = q * STRIDE;
+                for (int i = 0; i < 4; i++)
+                    a.options[q * 4 + i] += cells.get(at + i);
+                for (int c = 0; c < 3; c++) {
+                    a.correctAt[q * 3 + c] += cells.get(at + 4 + c);
+                    a.wrongAt[q * 3 + c] += cells.get(at + 7 + c);
+                }
+            }
+        }
+    }
+
+    // counts one answer; options is the mask of the options it picked (see
+    // ScoringRules.optionMask), correct is passed in so the caller's marking
+    // is used
+
+    public void record(int question, int options, int confidenceValue, boolean correct) {
+        for (int i = 0; i < 4; i++)
+            if ((options >> i & 1) != 0)
+                this.options[question * 4 + i]++;
+        if (correct)
+            correctAt[question * 3 + confidenceValue - 1]++;
+        else
+            wrongAt[question * 3 + confidenceValue - 1]++;
+    }
+
+    // counts one answer of the given student in file order: a new key closes
+    // the open sheet and opens the next one
+
+    public void record(String student, int question, int options, int confidenceValue, boolean correct) {
+        if (tail == null || !tail.key.equals(student)) {
+            if (tail != null && tail != head)
+                addSheet(tail);
+            tail = new Sheet(student);
+            if (head == null)
+                head = tail;
+        }
+        record(question, options, confidenceValue, correct);
+        tail.add(question, correct);
+    }
+
+    // folds a complete sheet into the discrimination sums
+
+    public void addSheet(Sheet sheet) {
+        for (int i = 0; i < sheet.size; i++) {
+            int q = sheet.items[i] >>> 1, x = sheet.items[i] & 1;
+            long rest = sheet.correct - x;
+            n[q]++;
+            sx[q] += x;
+            sy[q] += rest;
+            syy[q] += rest * rest;
+            sxy[q] += x * rest;
+        }
+        sheets++;
+    }
+
+    // closes the sheets still open at the ends (call once all data is in)
+
+    public ItemAnalysis finish() {
+        if (head != null)
+            addSheet(head);
+        if (tail != null && tail != head)
+            addSheet(tail);
+        head = tail = null;
+        return this;
+    }
+
+    // adds the right neighbour's data to this one and returns this; an open
+    // sheet at the end of this one and at the start of o are joined when they
+    // belong to the same student
+
+    public ItemAnalysis merge(ItemAnalysis o) {
+        if (o.questions != questions)
+            throw new IllegalArgumentException("Analyses of different banks");
+        for (int i = 0; i < options.length; i++)
+            options[i] += o.options[i];
+        for (int i = 0; i < correctAt.length; i++) {
+            correctAt[i] += o.correctAt[i];
+            wrongAt[i] += o.wrongAt[i];
+        }
+        for (int q = 0; q < questions; q++) {
+            n[q] += o.n[q];
+            sx[q] += o.sx[q];
+            sy[q] += o.sy[q];
+            syy[q] += o.syy[q];
+            sxy[q] += o.sxy[q];
+        }
+        sheets += o.sheets;
+
+        Sheet newHead = head != null ? head : o.head;
+        Sheet newTail = o.tail != null ? o.tail : tail;
+        if (tail != null && o.head != null) {
+            if (tail.key.equals(o.head.key)) {
+                tail.addAll(o.head);
+                if (o.tail == o.head)
+                    newTail = tail;
+                else if (tail != head)
+                    addSheet(tail);
+            } else {
+                if (tail != head)
+                    addSheet(tail);
+                if (o.head != o.tail)
+                    addSheet(o.head);
+            }
+        }
+        head = newHead;
+        tail = newTail;
+        return this;
+    }
+
+    public int getQuestionCount() {
+        return questions;
+    }
+
+    // an independent copy of the sums, e.g. to report while answers keep coming
+
+    public ItemAnalysis copy() {
+        ItemAnalysis c = new ItemAnalysis(questions);
+        c.merge(this);
+        return c;
+    }
+
+    public long getSheets() {
+        return sheets;
+    }
+
+    public long getAnswers(int q) {
+        long a = 0;
+        for (int c = 1; c <= 3; c++)
+            a += getCorrect(q, c) + getWrong(q, c);
+        return a;
+    }
+
+    public long getOptionCount(int q, int option) {
+        return options[q * 4 + option];
+    }
+
+    public long getCorrect(int q, int confidenceValue) {
+        return correctAt[q * 3 + confidenceValue - 1];
+    }
+
+    public long getWrong(int q, int confidenceValue) {
+        return wrongAt[q * 3 + confidenceValue - 1];
+    }
+
+    // share of answers that are correct, NaN without answers
+
+    public double getDifficulty(int q) {
+        long c = getCorrect(q, 1) + getCorrect(q, 2) + getCorrect(q, 3);
+        long a = getAnswers(q);
+        return a == 0 ? Double.NaN : (double) c / a;
+    }
+
+    // corrected point-biserial correlation in -1..1, NaN when undefined (no
+    // sheets, everyone right or wrong, or all rest scores equal)
+
+    public double getDiscrimination(int q) {
+        double cov = (double) n[q] * sxy[q] - (double) sx[q] * sy[q];
+        double vx = (double) n[q] * sx[q] - (double) sx[q] * sx[q];
+        double vy = (double) n[q] * syy[q] - (double) sy[q] * sy[q];
+        return vx <= 0 || vy <= 0 ? Double.NaN : cov / Math.sqrt(vx * vy);
+    }
+
+    // one CSV line per question of the store
+
+    public void writeCsv(Writer out, QuestionStore store) throws IOException {
+        writeCsv(out, q -> store.getSubjectName(store.getSubjectOf(store.getSubtopicOf(q))),
+                q -> store.getSubtopicName(store.getSubtopicOf(q)));
+    }
+
+    // one CSV line per position of the plan (questions numbered in quiz order)
+
+    public void writeCsv(Writer out, List<Subject> subjects, QuizPlan plan) throws IOException {
+        writeCsv(out, q -> subjects.get(plan.getSubjectIndex(q)).getName(),
+                q -> subjects.get(plan.getSubjectIndex(q)).getSubtopics().get(plan.getSubtopicIndex(q)).getName());
+    }
+
+    private void writeCsv(Writer out, IntFunction<String> subject, IntFunction<String> subtopic) throws IOException {
+        out.write("question,subject,subtopic,answers,difficulty,discrimination,option0,option1,option2,option3,"
+                + "correct_c1,correct_c2,correct_c3,wrong_c1,wrong_c2,wrong_c3\n");
+        StringBuilder sb = new StringBuilder(160);
+        for (int q = 0; q < questions; q++) {
+            sb.setLength(0);
+            sb.append(q).append(',').append(csv(subject.apply(q))).append(',').append(csv(subtopic.apply(q)))
+                    .append(',').append(getAnswers(q)).append(',')
+                    .append(fmt(getDifficulty(q))).append(',').append(fmt(getDiscrimination(q)));
+            for (int i = 0; i < 4; i++)
+                sb.append(',').append(options[q * 4 + i]);
+            for (int c = 1; c <= 3; c++)
+                sb.append(',').append(getCorrect(q, c));
+            for (int c = 1; c <= 3; c++)
+                sb.append(',').append(getWrong(q, c));
+            out.write(sb.append('\n').toString());
+        }
+    }
+
+    private static String fmt(double d) {
+        return Double.isNaN(d) ? "" : String.format("%.4f", d);
+    }
+
+    private static String csv(String s) {
+        return s.indexOf(',') < 0 && s.indexOf('"') < 0 ? s : '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    // saves the sums (open sheets must be finished first)
+
+    public void save(Path file) throws IOException {
+        if (head != null || tail != null)
+            throw new IllegalStateException("Open sheets; call finish() first");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(questions);
+            out.writeLong(sheets);
+            for (long[] a : new long[][] { options, correctAt, wrongAt, n, sx, sy, syy, sxy })
+                for (long v : a)
+                    out.writeLong(v);
+        }
+    }
+
+    public static ItemAnalysis load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an item analysis file: " + file);
+            if (in.readInt() != VERSION)
+                throw new IOException("Unsupported item analysis version");
+            ItemAnalysis a = new ItemAnalysis(in.readInt());
+            a.sheets = in.readLong();
+            for (long[] arr : new long[][] { a.options, a.correctAt, a.wrongAt, a.n, a.sx, a.sy, a.syy, a.sxy })
+                for (int i = 0; i < arr.length; i++)
+                    arr[i] = in.readLong();
+            return a;
+        }
+    }
+
+    // Main method: java jeequiz.ItemAnalysis questions.bank answers.csv report.csv [state]
+    // with a state file the saved analysis is extended by the new answers and saved again
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java jeequiz.ItemAnalysis <questions.bank> <answers.csv> <report.csv> [state]");
+            return;
+        }
+        QuestionStore store = QuestionStore.fromBank(BinaryBank.open(Paths.get(args[0])));
+        long t0 = System.nanoTime();
+        BulkGrader.Result result = new BulkGrader(store, BulkGrader.DEFAULT_CHUNK, true).grade(Paths.get(args[1]));
+        ItemAnalysis items = result.items;
+        Path state = args.length > 3 ? Paths.get(args[3]) : null;
+        if (state != null && Files.exists(state))
+            items = load(state).merge(items);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+            items.writeCsv(out, store);
+        }
+        if (state != null)
+            items.save(state);
+        System.out.println("Analysed " + result.rows + " answers (" + result.rejected + " rejected) on "
+                + items.getSheets() + " sheets in " + String.format("%.2f", secs) + " s");
+    }
+}
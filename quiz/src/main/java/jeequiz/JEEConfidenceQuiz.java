@@ -0,0 +1,1185 @@
+package jeequiz;
+
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import javax.swing.*;
+
+// Base User class : this class stores basic user information required for registration
+
+class User {
+    private String name, email;
+
+    public User(String name, String email) {
+        this.name = name;
+        this.email = email;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
+
+// Student
+class Student extends User {
+
+    private int age, totalScore;
+
+    private List<Subject> subjects;
+    private final Calibration calibration = new Calibration();
+
+    public Student(String name, String email, int age) {
+
+        super(name, email);
+        this.age = age;
+        totalScore = 0;
+        subjects = new ArrayList<>();
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public int getTotalScore() {
+        return totalScore;
+    }
+
+    public void addScore(int s) {
+        totalScore += s;
+    }
+
+    public void addSubject(Subject s) {
+        subjects.add(s);
+    }
+
+    public List<Subject> getSubjects() {
+        return subjects;
+    }
+
+    // calibration over all answers of the student
+
+    public Calibration getCalibration() {
+        return calibration;
+    }
+}
+
+// Abstract Question: this class define the basic structure of a question
+
+abstract class Question {
+
+    protected String text;
+    protected String[] options;
+    protected int type; // ScoringRules.SINGLE, NUMERIC or MULTIPLE
+    protected int correctAnswer;
+    protected int subtopicIndex;
+
+    public Question(String text, String[] options, int correctAnswer, int subtopicIndex) {
+        this(text, options, ScoringRules.SINGLE, correctAnswer, subtopicIndex);
+    }
+
+    public Question(String text, String[] options, int type, int correctAnswer, int subtopicIndex) {
+
+        this.text = text;
+        this.options = options;
+        this.type = type;
+        this.correctAnswer = correctAnswer;
+        this.subtopicIndex = subtopicIndex;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String[] getOptions() {
+        return options;
+    }
+
+    // one option without the whole array, for questions that keep their
+    // options elsewhere (see QuestionStore.View)
+
+    public int getOptionCount() {
+        return options.length;
+    }
+
+    public String getOption(int i) {
+        return options[i];
+    }
+
+    public int getSubtopicIndex() {
+        return subtopicIndex;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    // the key: the correct option for single answer questions, the mask of
+    // the correct options for multiple answer ones, the value for numeric ones
+    // (an answer is given in the same form)
+
+    public int getCorrectAnswer() {
+        return correctAnswer;
+    }
+
+    // whether option i is one of the correct options (never for numeric)
+
+    public boolean isCorrectOption(int i) {
+        int key = getCorrectAnswer();
+        switch (getType()) {
+            case ScoringRules.SINGLE:
+                return i == key;
+            case ScoringRules.MULTIPLE:
+                return (key >> i & 1) != 0;
+            default:
+                return false;
+        }
+    }
+
+    public abstract int checkAnswer(int selected, int confidenceValue);
+}
+
+// MCQ Question: this class extends Question to implement MCQ specific Logic
+
+class MCQQuestion extends Question {
+
+    public MCQQuestion(String text, String[] options, int correctAnswer, int subtopicIndex) {
+        super(text, options, correctAnswer, subtopicIndex);
+    }
+
+    public MCQQuestion(String text, String[] options, int type, int correctAnswer, int subtopicIndex) {
+        super(text, options, type, correctAnswer, subtopicIndex);
+    }
+
+    // marked with ScoringRules.MCQ; a quiz applies the rules of its paper
+
+    @Override
+    public int checkAnswer(int selected, int confidenceValue) {
+        return ScoringRules.MCQ.total(ScoringRules.MCQ.outcome(type, correctAnswer, selected), confidenceValue);
+    }
+
+    public boolean isCorrect(int selected) {
+        return selected == correctAnswer;
+    }
+}
+
+// Subtopic : this class represents a subtopic containing multiple questions as
+// well as score and confidence tracking
+
+class Subtopic {
+    private String name;
+    private List<MCQQuestion> questions;
+    private int score, totalConfidence, totalMaxConfidence;
+    private final Calibration calibration = new Calibration();
+    private long timeMillis; // time spent on the questions closed so far
+    private int timedQuestions, timedOut;
+
+    public Subtopic(String name) {
+        this.name = name;
+        questions = new
+
+        // arraylist is used to store questions of each subtopic
+
+        ArrayList<>();
+        score = 0;
+        totalConfidence = 0;
+        totalMaxConfidence = 0;
+    }
+
+    // creates a subtopic over a question list shared with other students
+    // (see BankCache); the list is not copied and cannot be added to
+
+    public Subtopic(String name, List<MCQQuestion> questions) {
+        this.name = name;
+        this.questions = questions;
+    }
+
+    public void addQuestion(MCQQuestion q) {
+        questions.add(q);
+    }
+
+    public List<MCQQuestion> getQuestions() {
+        return questions;
+    }
+
+    // swaps the question list of a subtopic that is loaded or released lazily
+    // (see LazyBank); score and confidence are kept
+
+    public void setQuestions(List<MCQQuestion> questions) {
+        this.questions = questions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void processAnswer(MCQQuestion q, int selected, int confidenceValue) {
+        int outcome = ScoringRules.MCQ.outcome(q.getType(), q.getCorrectAnswer(), selected);
+        processAnswer(ScoringRules.MCQ.section(outcome), ScoringRules.isCorrect(outcome), confidenceValue);
+    }
+
+    // records an answer already marked by a ScoringRules.Rule
+
+    public void processAnswer(int marks, boolean correct, int confidenceValue) {
+
+        // conditional operator is used to check if the selected answer is correct or
+        // not. marks are updated accordingly.
+
+        score += marks;
+        totalConfidence += correct ? confidenceValue : 0;
+        totalMaxConfidence += 3; // max confidence per question = 3
+        calibration.record(confidenceValue, correct);
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public double getConfidencePercentage() {
+        return totalMaxConfidence == 0 ? 0 : ((double) totalConfidence / totalMaxConfidence) * 100;
+    }
+
+    public int getTotalConfidence() {
+        return totalConfidence;
+    }
+
+    public int getTotalMaxConfidence() {
+        return totalMaxConfidence;
+    }
+
+    // sets the totals saved in a ResultStore (calibration is not stored)
+
+    public void restore(int score, int totalConfidence, int totalMaxConfidence) {
+        this.score = score;
+        this.totalConfidence = totalConfidence;
+        this.totalMaxConfidence = totalMaxConfidence;
+    }
+
+    // time spent on one question, answered or timed out
+
+    public void addTime(int millis, boolean expired) {
+        timeMillis += millis;
+        timedQuestions++;
+        if (expired)
+            timedOut++;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public int getTimedQuestions() {
+        return timedQuestions;
+    }
+
+    // questions closed by a timed exam's clock without an answer
+
+    public int getTimedOut() {
+        return timedOut;
+    }
+
+    public void restoreTime(long timeMillis, int timedQuestions, int timedOut) {
+        this.timeMillis = timeMillis;
+        this.timedQuestions = timedQuestions;
+        this.timedOut = timedOut;
+    }
+
+    // how well the confidence of the answers matched their correctness
+
+    public Calibration getCalibration() {
+        return calibration;
+    }
+}
+
+// Subject : this class represents a subject containing multiple subtopics.
+// Object of this class is used to group subtopics under a subject.
+
+class Subject {
+    private String name;
+    private List<Subtopic> subtopics;
+
+    public Subject(String name) {
+        this.name = name;
+        subtopics = new ArrayList<>();
+    }
+
+    public void addSubtopic(Subtopic s) {
+        subtopics.add(s);
+    }
+
+    public List<Subtopic> getSubtopics() {
+        return subtopics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getTotalScore() {
+        int s = 0;
+        for (Subtopic st : subtopics)
+            s += st.getScore();
+        return s;
+    }
+}
+
+// Quiz : this class manages the quiz flow, current question, and tracks
+// progress through subjects and subtopics
+// the flow methods are synchronized so that one session can be driven safely
+// from several server threads at once
+
+class Quiz {
+    public int subjectIndex = 0, subtopicIndex = 0, questionIndex = 0;
+    public Subject currentSubject;
+    public Subtopic currentSubtopic;
+    public List<MCQQuestion> currentQuestions;
+    private Student student;
+    private boolean finished = false;
+
+    // the quiz is walked through a compiled plan with one cursor; answered
+    // marks the positions already answered so skipped questions come back
+
+    private QuizPlan plan;
+    private boolean sharedPlan;
+    private LazyBank lazy;
+    private int cursor, answeredCount;
+    private BitSet answered;
+    private long shownAt; // System.nanoTime() when the current question was shown
+
+    // with a Shuffle the cursor walks places: the question at a place is
+    // picked by the student's question order within the subtopic, and the
+    // option indexes given to and taken from the quiz are the student's
+    // displayed order; questionIndex is always the shared question's index
+    private Shuffle shuffle;
+
+    // marking rule of every subject, by subject index (see ScoringRules)
+    private ScoringRules.Rule[] rules;
+
+    public Quiz(Student student) {
+        this.student = student;
+    }
+
+    // uses a plan compiled once for a shared bank (see BankCache) instead of
+    // compiling one per student; the student must hold that same bank
+
+    public Quiz(Student student, QuizPlan sharedPlan) {
+        this.student = student;
+        this.plan = sharedPlan;
+        this.sharedPlan = sharedPlan != null;
+    }
+
+    // loads the subjects lazily as the cursor reaches them; the student must
+    // be the one the LazyBank was created for
+
+    public Quiz(Student student, LazyBank lazy) {
+        this(student, lazy.getPlan());
+        this.lazy = lazy;
+    }
+
+    public Student getStudent() {
+        return student;
+    }
+
+    // shuffles questions and options for this student; call before start()
+
+    public synchronized void setShuffle(Shuffle shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    public synchronized Shuffle getShuffle() {
+        return shuffle;
+    }
+
+    // marks answers with the given rules instead of ScoringRules.DEFAULT;
+    // call before the first answer
+
+    public synchronized void setScoring(ScoringRules scoring) {
+        rules = scoring.forSubjects(student.getSubjects());
+    }
+
+    // the rule that marks the current question
+    public synchronized ScoringRules.Rule getRule() {
+        return rules == null ? ScoringRules.MCQ : rules[subjectIndex];
+    }
+
+    public synchronized void start() {
+        if (!sharedPlan)
+            plan = QuizPlan.compile(student.getSubjects());
+        answered = new BitSet(plan.size());
+        answeredCount = 0;
+        subjectIndex = 0;
+        subtopicIndex = 0;
+        questionIndex = 0;
+        finished = plan.size() == 0;
+        if (!finished)
+            moveTo(0);
+    }
+
+    public synchronized MCQQuestion getCurrentQuestion() {
+        if (finished || answered == null)
+            return null;
+        return lazy == null ? plan.getQuestion(questionPosition(cursor)) : currentQuestions.get(questionIndex);
+    }
+
+    // the question at any position if it is already in memory, else null;
+    // never waits for a lazy subject load (used for pre-rendering)
+
+    public synchronized MCQQuestion peekQuestion(int position) {
+        if (answered == null)
+            return null;
+        int p = questionPosition(position);
+        return lazy == null ? plan.getQuestion(p) : lazy.peek(p);
+    }
+
+    // plan position of the question shown at a place of the quiz (the same
+    // unless the quiz is shuffled)
+
+    public synchronized int questionPosition(int place) {
+        if (shuffle == null)
+            return place;
+        int start = plan.getSubtopicStart(place);
+        return start + shuffle.question(start, plan.getSubtopicSize(place), place - start);
+    }
+
+    // plan position of the current question, e.g. for item statistics
+
+    public synchronized int getQuestionPosition() {
+        return questionPosition(cursor);
+    }
+
+    // 1-based number of the current question within its subtopic, as shown
+
+    public synchronized int getNumberInSubtopic() {
+        return cursor - plan.getSubtopicStart(cursor) + 1;
+    }
+
+    // the answer as the bank keys it (see Question.getCorrectAnswer) for a
+    // selection in the displayed order of the question at a place (the
+    // selection itself unless shuffled, see Shuffle.answer)
+
+    public synchronized int toOriginalSelection(int place, int selected) {
+        if (shuffle == null)
+            return selected;
+        int p = questionPosition(place);
+        MCQQuestion q = lazy == null ? plan.getQuestion(p) : lazy.peek(p);
+        return shuffle.answer(p, q.getOptionCount(), q.getType(), selected);
+    }
+
+    public synchronized int toOriginalSelection(int selected) {
+        return toOriginalSelection(cursor, selected);
+    }
+
+    // text of the option displayed at place d for the question at a place
+    // (the question must be in memory, see peekQuestion)
+
+    public synchronized String getOption(int place, int d) {
+        int p = questionPosition(place);
+        MCQQuestion q = lazy == null ? plan.getQuestion(p) : lazy.peek(p);
+        return q.getOption(shuffle == null ? d : shuffle.option(p, q.getOptionCount(), d));
+    }
+
+    public synchronized void submitAnswer(int selected, int confidenceValue) {
+        submitAnswer(selected, confidenceValue, elapsedMillis());
+    }
+
+    // as above with the time spent on the question given, e.g. when an answer
+    // is replayed from a journal. selected is an option, a mask of options or
+    // a value, as the current question's type needs (ScoringRules.isValid)
+
+    public synchronized void submitAnswer(int selected, int confidenceValue, int spentMillis) {
+        MCQQuestion q = getCurrentQuestion();
+        if (q == null || answered.get(cursor))
+            return;
+        if (!ScoringRules.isValid(q.getType(), selected))
+            throw new IllegalArgumentException("Bad answer " + selected + " to a "
+                    + ScoringRules.typeName(q.getType()) + " question");
+        long start = System.nanoTime();
+        selected = toOriginalSelection(cursor, selected);
+        QuizEvents.SubmitAnswer event = null;
+        if (QuizEvents.SUBMIT_ANSWER.isEnabled()) {
+            event = new QuizEvents.SubmitAnswer();
+            event.begin();
+            event.subject = subjectIndex;
+            event.subtopic = subtopicIndex;
+            event.question = questionIndex;
+            event.selected = selected;
+            event.confidence = confidenceValue;
+        }
+        ScoringRules.Rule rule = getRule();
+        int outcome = rule.outcome(q.getType(), q.getCorrectAnswer(), selected);
+        int gained = rule.total(outcome, confidenceValue);
+        boolean correct = ScoringRules.isCorrect(outcome);
+
+        // Update subtopic and student's total score
+
+        currentSubtopic.processAnswer(rule.section(outcome), correct, confidenceValue);
+        currentSubtopic.addTime(spentMillis, false);
+        student.addScore(gained);
+        student.getCalibration().record(confidenceValue, correct);
+        answered.set(cursor);
+        answeredCount++;
+        if (lazy != null)
+            lazy.answered(cursor);
+
+        // move to the next unanswered question; without skips this is simply
+        // the next position of the plan
+
+        int next = nextUnanswered(cursor + 1);
+        if (next < 0)
+            finished = true;
+        else
+            moveTo(next);
+
+        if (event != null)
+            event.commit();
+        Metrics.ANSWERS.increment();
+        Metrics.SUBMIT_ANSWER.recordSince(start);
+    }
+
+    // milliseconds since the current question was shown
+
+    public synchronized int elapsedMillis() {
+        return (int) Math.min(Integer.MAX_VALUE, (System.nanoTime() - shownAt) / 1_000_000);
+    }
+
+    // closes every unanswered position from the current one up to end
+    // (exclusive) without an answer, as when a timed exam's clock runs out:
+    // they score nothing and are not asked again. spentMillis is the time of
+    // the current question; returns how many positions were closed
+
+    public synchronized int timeOut(int end, int spentMillis) {
+        if (finished || answered == null || end <= cursor)
+            return 0;
+        end = Math.min(end, plan.size());
+        int closed = 0;
+        for (int p = answered.nextClearBit(cursor); p < end; p = answered.nextClearBit(p + 1)) {
+            Subtopic st = student.getSubjects().get(plan.getSubjectIndex(p)).getSubtopics()
+                    .get(plan.getSubtopicIndex(p));
+            st.addTime(p == cursor ? spentMillis : 0, true);
+            answered.set(p);
+            answeredCount++;
+            if (lazy != null)
+                lazy.answered(p);
+            closed++;
+        }
+        int next = nextUnanswered(end);
+        if (next < 0)
+            finished = true;
+        else
+            moveTo(next);
+        return closed;
+    }
+
+    // end (exclusive) of the section, i.e. the subject, of the current position
+
+    public synchronized int getSectionEnd() {
+        return plan.getSubjectEnd(cursor);
+    }
+
+    // leaves the current question unanswered and moves to the next unanswered one
+
+    public synchronized void skip() {
+        if (finished || answered == null)
+            return;
+        int next = nextUnanswered(cursor + 1);
+        if (next >= 0)
+            moveTo(next);
+    }
+
+    // moves to the previous position, answered or not (for review)
+
+    public synchronized void back() {
+        if (!finished && answered != null && cursor > 0)
+            moveTo(cursor - 1);
+    }
+
+    // jumps to any position of the plan; answered questions can be reviewed but
+    // submitting them again has no effect
+
+    public synchronized void goTo(int position) {
+        if (answered == null || position < 0 || position >= plan.size())
+            throw new IndexOutOfBoundsException("Position " + position);
+        if (!finished)
+            moveTo(position);
+    }
+
+    // position the quiz will move to after the current question is answered,
+    // or -1 if the current question is the last unanswered one
+
+    public synchronized int getNextPosition() {
+        if (finished || answered == null)
+            return -1;
+        int next = nextUnanswered(cursor + 1);
+        return next == cursor ? -1 : next;
+    }
+
+    private int nextUnanswered(int from) {
+        int n = plan.size();
+        int p = answered.nextClearBit(from);
+        if (p < n)
+            return p;
+        p = answered.nextClearBit(0);
+        return p < n ? p : -1;
+    }
+
+    private void moveTo(int position) {
+        shownAt = System.nanoTime();
+        cursor = position;
+        subjectIndex = plan.getSubjectIndex(position);
+        subtopicIndex = plan.getSubtopicIndex(position);
+        questionIndex = plan.getQuestionIndex(questionPosition(position));
+        if (lazy != null)
+            lazy.reach(position);
+        currentSubject = student.getSubjects().get(subjectIndex);
+        currentSubtopic = currentSubject.getSubtopics().get(subtopicIndex);
+        currentQuestions = currentSubtopic.getQuestions();
+    }
+
+    public synchronized int getPosition() {
+        return cursor;
+    }
+
+    // answered positions; the live set, read under the quiz lock (SessionSnapshot)
+
+    BitSet getAnswered() {
+        return answered;
+    }
+
+    // puts the quiz at a saved point instead of start(): the quiz must be
+    // built for the same student and bank; scores are restored by the caller
+
+    synchronized void resume(BitSet saved, int position, boolean done) {
+        if (!sharedPlan)
+            plan = QuizPlan.compile(student.getSubjects());
+        if (saved.length() > plan.size() || (plan.size() > 0 && (position < 0 || position >= plan.size())))
+            throw new IllegalArgumentException("Saved quiz does not fit the bank");
+        answered = saved;
+        answeredCount = saved.cardinality();
+        if (lazy != null)
+            for (int p = saved.nextSetBit(0); p >= 0; p = saved.nextSetBit(p + 1))
+                lazy.answered(p);
+        subjectIndex = 0;
+        subtopicIndex = 0;
+        questionIndex = 0;
+        cursor = position;
+        finished = done || plan.size() == 0;
+        if (!finished)
+            moveTo(position);
+    }
+
+    public synchronized boolean isAnswered(int position) {
+        return answered != null && answered.get(position);
+    }
+
+    public synchronized int getAnsweredCount() {
+        return answeredCount;
+    }
+
+    public synchronized int getTotalQuestions() {
+        return answered == null ? 0 : plan.size();
+    }
+
+    public synchronized QuizPlan getPlan() {
+        return plan;
+    }
+
+    public synchronized boolean isQuizFinished() {
+        return finished;
+    }
+}
+
+// GUI : This class implements the Java Swing GUI for registration and quiz
+// interface
+// java swing is used to create the GUI for the quiz application.
+// It includes registration panel, quiz panel, question display, options
+// selection, confidence level selection, and progress tracking. also shows
+// final results.
+// It handles user interactions and updates the interface accordingly.
+// The radio buttons are added by using ButtonGroup to ensure only one option
+// can be selected at a time.
+// the progress bar is added by
+// the final results are displayed in a JTextArea within a JScrollPane for
+// better readability.
+// We are not experienced
+
+public class JEEConfidenceQuiz extends JFrame implements ActionListener {
+
+    private Student student;
+    private Quiz quiz;
+    private JPanel regPanel, quizPanel;
+    private JTextField nameField, ageField, emailField;
+    private JButton regButton, nextButton;
+    private JLabel subjectLabel, questionLabel, progressLabel, calibrationLabel;
+    private JProgressBar loadingBar;
+    private Path bankFile;
+
+    // two question labels in a CardLayout: the hidden one already holds the
+    // parsed HTML of the next question, so "Next" only flips the cards
+
+    private JPanel questionCards;
+    private JLabel[] questionLabels;
+    private int shownLabel;
+    private int prefetchedPosition = -1;
+    private String[] prefetchedOptions;
+    private JRadioButton[] options;
+    private ButtonGroup optionGroup;
+    private boolean optionsGrouped = true; // false while a multiple answer question shows
+    private JTextField valueField; // answer of a numeric question, in place of the options
+    private JRadioButton highConf, mediumConf, lowConf;
+    private ButtonGroup confGroup;
+    private JProgressBar progressBar;
+
+    public JEEConfidenceQuiz() {
+        this(null);
+    }
+
+    // bankFile is a compiled .bank or a .csv question bank; null uses the
+    // built-in demo questions
+
+    public JEEConfidenceQuiz(Path bankFile) {
+        this.bankFile = bankFile;
+        createRegistrationGUI();
+        setTitle("JEE Confidence Quiz");
+        setSize(820, 520);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    private void createRegistrationGUI() {
+        regPanel = new JPanel(new GridBagLayout());
+        regPanel.setBackground(new Color(230, 240, 255));
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(8, 12, 8, 12);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+
+        JLabel title = new JLabel("JEE Confidence Quiz");
+        title.setFont(new Font("SansSerif", Font.BOLD, 60));
+        title.setHorizontalAlignment(SwingConstants.CENTER);
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.gridwidth = 2;
+        regPanel.add(title, gbc);
+        gbc.gridwidth = 1;
+        gbc.gridy = 1;
+        gbc.gridx = 0;
+        regPanel.add(new JLabel("Name:"), gbc);
+        nameField = new JTextField();
+        gbc.gridx = 1;
+        regPanel.add(nameField, gbc);
+
+        gbc.gridy = 2;
+        gbc.gridx = 0;
+        regPanel.add(new JLabel("Age:"), gbc);
+        ageField = new JTextField();
+        gbc.gridx = 1;
+        regPanel.add(ageField, gbc);
+
+        gbc.gridy = 3;
+        gbc.gridx = 0;
+        regPanel.add(new JLabel("Email:"), gbc);
+        emailField = new JTextField();
+        gbc.gridx = 1;
+        regPanel.add(emailField, gbc);
+
+        regButton = new JButton("Register & Start Quiz");
+        regButton.addActionListener(e -> registerStudent());
+        gbc.gridy = 4;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        regPanel.add(regButton, gbc);
+
+        // shown while the question bank is loaded in the background
+
+        loadingBar = new JProgressBar();
+        loadingBar.setIndeterminate(true);
+        loadingBar.setStringPainted(true);
+        loadingBar.setString("Loading question bank...");
+        loadingBar.setVisible(false);
+        gbc.gridy = 5;
+        regPanel.add(loadingBar, gbc);
+
+        add(regPanel);
+    }
+
+    // method to register student and initialize quiz data
+    // catches exceptions for invalid inputs using try catch block
+    // the question bank is loaded by a SwingWorker so the window keeps painting
+    // (with a progress bar) while a large bank is read from disk
+
+    private void registerStudent() {
+        String name = nameField.getText().trim();
+        String email = emailField.getText().trim();
+        int age;
+        try {
+            age = Integer.parseInt(ageField.getText().trim());
+            if (name.isEmpty() || email.isEmpty())
+                throw new Exception("Empty fields");
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, "Invalid input: provide valid name, age (integer) and email.");
+            return;
+        }
+        regButton.setEnabled(false);
+        loadingBar.setVisible(true);
+        regPanel.revalidate();
+
+        new SwingWorker<Quiz, Void>() {
+            @Override
+            protected Quiz doInBackground() throws Exception {
+                Student s = new Student(name, email, age);
+                Quiz q = newQuiz(s);
+                q.setShuffle(Shuffle.configured(s.getEmail()));
+                q.start();
+                return q;
+            }
+
+            @Override
+            protected void done() {
+                loadingBar.setVisible(false);
+                regButton.setEnabled(true);
+                try {
+                    quiz = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(JEEConfidenceQuiz.this,
+                            "Could not load the question bank: " + cause.getMessage());
+                    return;
+                }
+                student = quiz.getStudent();
+                Metrics.SESSIONS_STARTED.increment();
+                remove(regPanel);
+                setupQuizGUI();
+                displayQuestion();
+            }
+        }.execute();
+    }
+
+    // a compiled .bank is loaded one subject at a time as the quiz advances
+    // (see LazyBank); the demo bank and CSV banks are loaded whole and shared
+
+    private Quiz newQuiz(Student s) throws IOException {
+        if (bankFile != null && !bankFile.toString().endsWith(".csv"))
+            return new Quiz(s, new LazyBank(BinaryBank.open(bankFile), s));
+        BankCache.SharedBank bank;
+        if (bankFile == null) {
+            bank = BankCache.shared().get("default", QuestionBank::loadDefault);
+        } else {
+            Path file = bankFile.toAbsolutePath();
+            bank = BankCache.shared().get(file.toString(), st -> QuestionBankLoader.loadCsv(file, st));
+        }
+        bank.addTo(s);
+        return new Quiz(s, bank.getPlan());
+    }
+
+    // method to setup the quiz GUI components
+    // uses BorderLayout and GridBagLayout for arranging components
+    // adds action listener to next button to handle answer submission
+
+    private void setupQuizGUI() {
+        quizPanel = new JPanel(new BorderLayout(10, 10));
+        quizPanel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        quizPanel.setBackground(new Color(250, 250, 255));
+
+        // Header: Indicates current subject and progress bar
+
+        JPanel header = new JPanel(new BorderLayout());
+        header.setOpaque(false);
+        subjectLabel = new JLabel();
+        subjectLabel.setFont(new Font("SansSerif", Font.BOLD, 30));
+        subjectLabel.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+        header.add(subjectLabel, BorderLayout.WEST);
+
+        // Progress Bar: shows quiz progress
+        // progress bar maximum is the exact number of questions in the quiz plan
+
+        progressBar = new JProgressBar(0, quiz.getTotalQuestions());
+
+        progressBar.setStringPainted(true);
+        header.add(progressBar, BorderLayout.EAST);
+        quizPanel.add(header, BorderLayout.NORTH);
+
+        // Center: Question display, options, confidence selection
+        // uses GridBagLayout for flexible arrangement
+        // We are not experienced in GUI so we used online resources to learn about
+        // GridBagLayout and other Swing components and may not have complete knowledge
+        // of all best practices.
+
+        JPanel center = new JPanel(new GridBagLayout());
+        center.setOpaque(false);
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(6, 6, 6, 6);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.gridwidth = 2;
+
+        questionCards = new JPanel(new CardLayout());
+        questionCards.setOpaque(false);
+        questionLabels = new JLabel[2];
+        for (int i = 0; i < 2; i++) {
+            questionLabels[i] = new JLabel();
+            questionLabels[i].setFont(new Font("SansSerif", Font.BOLD, 25));
+            questionLabels[i].setVerticalAlignment(SwingConstants.TOP);
+            questionCards.add(questionLabels[i], Integer.toString(i));
+        }
+        shownLabel = 0;
+        questionLabel = questionLabels[0];
+        center.add(questionCards, gbc);
+
+        // Options: Radio buttons for answer choices (just liKe in HTML)
+
+        options = new JRadioButton[4];
+        optionGroup = new ButtonGroup();
+        gbc.gridwidth = 1;
+        for (int i = 0; i < 4; i++) {
+            gbc.gridy = i + 1;
+            gbc.gridx = 0;
+            options[i] = new JRadioButton();
+            options[i].setFont(new Font("SansSerif", Font.PLAIN, 14));
+            optionGroup.add(options[i]);
+            center.add(options[i], gbc);
+        }
+
+        // numeric answers are typed in place of the options
+
+        valueField = new JTextField(12);
+        valueField.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        valueField.setVisible(false);
+        gbc.gridy = 1;
+        center.add(valueField, gbc);
+
+        // JPanel for confidence level selection
+
+        JPanel confPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        confPanel.setOpaque(false);
+        confPanel.add(new JLabel("Confidence: "));
+        highConf = new JRadioButton("High");
+        mediumConf = new JRadioButton("Medium");
+        lowConf = new JRadioButton("Low");
+        highConf.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        mediumConf.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        lowConf.setFont(new Font("SansSerif", Font.PLAIN, 20));
+        confGroup = new ButtonGroup();
+        confGroup.add(highConf);
+        confGroup.add(mediumConf);
+        confGroup.add(lowConf);
+        confPanel.add(highConf);
+        confPanel.add(mediumConf);
+        confPanel.add(lowConf);
+        gbc.gridy = 5;
+        gbc.gridx = 0;
+        gbc.gridwidth = 2;
+        center.add(confPanel, gbc);
+
+        progressLabel = new JLabel();
+        progressLabel.setFont(new Font("SansSerif", Font.BOLD, 14));
+        gbc.gridy = 6;
+        center.add(progressLabel, gbc);
+
+        // live calibration of the current subtopic, shown once it has answers
+
+        calibrationLabel = new JLabel();
+        calibrationLabel.setFont(new Font("SansSerif", Font.PLAIN, 13));
+        gbc.gridy = 7;
+        center.add(calibrationLabel, gbc);
+
+        quizPanel.add(center, BorderLayout.CENTER);
+
+        nextButton = new JButton("Next");
+        nextButton.addActionListener(this);
+        JPanel south = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        south.setOpaque(false);
+        south.add(nextButton);
+        quizPanel.add(south, BorderLayout.SOUTH);
+
+        add(quizPanel);
+        revalidate();
+        repaint();
+    }
+
+    private void updateProgressBar() {
+        int totalQuestions = quiz.getTotalQuestions();
+        int answered = quiz.getAnsweredCount();
+        progressBar.setMaximum(totalQuestions);
+        progressBar.setValue(answered);
+        progressBar.setString("Progress: " + answered + " / " + totalQuestions + " questions");
+    }
+
+    private void displayQuestion() {
+        MCQQuestion q = quiz.getCurrentQuestion();
+        if (q == null) {
+            if (quiz.isQuizFinished()) {
+                showResults();
+                return;
+            } else {
+
+                // no current question but not finished — try to advance
+                showResults();
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        QuizEvents.DisplayQuestion event = null;
+        if (QuizEvents.DISPLAY_QUESTION.isEnabled()) {
+            event = new QuizEvents.DisplayQuestion();
+            event.begin();
+            event.position = quiz.getPosition();
+        }
+        subjectLabel.setText("Subject: " + student.getSubjects().get(quiz.subjectIndex).getName());
+        String[] opts;
+        if (prefetchedPosition == quiz.getPosition()) {
+            shownLabel = 1 - shownLabel;
+            ((CardLayout) questionCards.getLayout()).show(questionCards, Integer.toString(shownLabel));
+            questionLabel = questionLabels[shownLabel];
+            opts = prefetchedOptions;
+        } else {
+            questionLabel.setText(questionHtml(q));
+            opts = optionTexts(quiz.getPosition());
+        }
+        prefetchedPosition = -1;
+        showAnswerInput(q.getType());
+        for (int i = 0; i < 4; i++) {
+            options[i].setText(opts[i]);
+            options[i].setSelected(false);
+        }
+        optionGroup.clearSelection();
+        valueField.setText("");
+        confGroup.clearSelection();
+        progressLabel.setText("Question " + quiz.getNumberInSubtopic() + " of " + quiz.currentQuestions.size()
+                + " (Subtopic: " + quiz.currentSubtopic.getName() + ")");
+        updateProgressBar();
+        updateCalibrationLabel();
+        if (event != null)
+            event.commit();
+        Metrics.DISPLAY_QUESTION.recordSince(start);
+
+        // render the next question into the hidden label once this one is painted
+        SwingUtilities.invokeLater(this::prefetchNextQuestion);
+    }
+
+    private void prefetchNextQuestion() {
+        int next = quiz.getNextPosition();
+        if (next < 0)
+            return;
+        MCQQuestion q = quiz.peekQuestion(next);
+        if (q == null)
+            return;
+        questionLabels[1 - shownLabel].setText(questionHtml(q));
+        prefetchedOptions = optionTexts(next);
+        prefetchedPosition = next;
+    }
+
+    // one option (radio buttons in a group), any options (the same buttons
+    // out of the group) or a value (a text field) by question type
+
+    private void showAnswerInput(int type) {
+        boolean grouped = type == ScoringRules.SINGLE;
+        if (grouped != optionsGrouped) {
+            for (JRadioButton o : options) {
+                if (grouped)
+                    optionGroup.add(o);
+                else
+                    optionGroup.remove(o);
+            }
+            optionsGrouped = grouped;
+        }
+        for (JRadioButton o : options)
+            o.setVisible(type != ScoringRules.NUMERIC);
+        valueField.setVisible(type == ScoringRules.NUMERIC);
+    }
+
+    // options of the question at a place in the order this student sees them
+
+    private String[] optionTexts(int place) {
+        String[] texts = new String[4];
+        for (int i = 0; i < 4; i++)
+            texts[i] = quiz.getOption(place, i);
+        return texts;
+    }
+
+    private void updateCalibrationLabel() {
+        Calibration c = quiz.currentSubtopic.getCalibration();
+        if (c.getAnswers() == 0) {
+            calibrationLabel.setText(" ");
+            return;
+        }
+        String feedback = c.getFeedback();
+        calibrationLabel.setText("<html>Calibration: " + c.toSummary()
+                + (feedback != null ? "<br>" + feedback : "") + "</html>");
+        calibrationLabel.setForeground(feedback != null ? new Color(170, 60, 0) : new Color(0, 110, 0));
+    }
+
+    private static String questionHtml(MCQQuestion q) {
+        String hint = q.getType() == ScoringRules.MULTIPLE ? " <i>(one or more options)</i>"
+                : q.getType() == ScoringRules.NUMERIC ? " <i>(enter a whole number)</i>" : "";
+        return "<html><body style='width:600px'>Q: " + q.getText() + hint + "</body></html>";
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        MCQQuestion q = quiz.getCurrentQuestion();
+        if (q == null)
+            return;
+        int selected = -1;
+        if (q.getType() == ScoringRules.NUMERIC) {
+            try {
+                selected = Integer.parseInt(valueField.getText().trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Enter a whole number!");
+                return;
+            }
+        } else {
+            int mask = 0;
+            for (int i = 0; i < 4; i++)
+                if (options[i].isSelected())
+                    mask |= 1 << i;
+            if (mask == 0) {
+                JOptionPane.showMessageDialog(this, "Select an answer!");
+                return;
+            }
+            selected = q.getType() == ScoringRules.MULTIPLE ? mask : Integer.numberOfTrailingZeros(mask);
+        }
+        int confVal = highConf.isSelected() ? 3 : (mediumConf.isSelected() ? 2 : (lowConf.isSelected() ? 1 : 0));
+        if (confVal == 0) {
+            JOptionPane.showMessageDialog(this, "Select your confidence level!");
+            return;
+        }
+        quiz.submitAnswer(selected, confVal);
+        displayQuestion();
+    }
+
+    private void showResults() {
+        JTextArea ta = new JTextArea(ResultReport.build(student));
+        ta.setEditable(false);
+        ta.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JScrollPane sp = new JScrollPane(ta);
+        sp.setPreferredSize(new Dimension(600, 400));
+        JOptionPane.showMessageDialog(this, sp, "Result", JOptionPane.INFORMATION_MESSAGE);
+        String metricsFile = System.getProperty("jeequiz.metrics");
+        if (metricsFile != null && !metricsFile.isEmpty()) {
+            try {
+                Metrics.writeTo(Paths.get(metricsFile));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics: " + e.getMessage());
+            }
+        }
+        System.exit(0);
+    }
+
+    // Main method to launch the application
+    // an optional argument is a question bank file (.bank or .csv)
+    public static void main(String[] args) {
+        Path bank = args.length > 0 ? Paths.get(args[0]) : null;
+        SwingUtilities.invokeLater(() -> new JEEConfidenceQuiz(bank));
+    }
+}
@@ -0,0 +1,128 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// LatencyHistogram : this class records latencies in nanoseconds into
+// log-linear buckets: every power of two is split into 16 equal buckets, so
+// any value is counted with at most about 6% error from 1 ns up to centuries.
+// Recording is a few array and adder updates and allocates nothing, so it can
+// sit on the hot path of every answer.
+
+class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    // bucket bounds (in seconds) written to the Prometheus export
+    private static final double[] EXPORT_BOUNDS = { 1e-6, 5e-6, 1e-5, 5e-5, 1e-4, 5e-4, 1e-3, 5e-3, 1e-2, 5e-2,
+            0.1, 0.5, 1, 5 };
+
+    private final String name, help;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        count.increment();
+        sum.add(nanos);
+        long m = max.get();
+        while (nanos > m && !max.compareAndSet(m, nanos))
+            m = max.get();
+    }
+
+    // records the time since a System.nanoTime() taken at the start
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int index(long v) {
+        if (v < SUB)
+            return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    // smallest value that no longer falls into the bucket
+
+    static long upperBound(int index) {
+        if (index < SUB)
+            return index + 1;
+        int exp = index / SUB + SUB_BITS - 1;
+        int sub = index % SUB;
+        return (1L << exp) + ((long) (sub + 1) << (exp - SUB_BITS));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // value (ns) below which the given fraction of recorded values lie
+
+    public long getPercentile(double fraction) {
+        long total = 0;
+        long[] snap = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            total += snap[i] = counts.get(i);
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snap[i];
+            if (seen >= rank)
+                return Math.min(upperBound(i) - 1, max.get());
+        }
+        return max.get();
+    }
+
+    // Prometheus text format: a histogram in seconds plus p50/p99/p999 gauges
+
+    public void writePrometheus(Appendable out) throws IOException {
+        long[] snap = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            snap[i] = counts.get(i);
+        out.append("# HELP ").append(name).append("_seconds ").append(help).append('\n');
+        out.append("# TYPE ").append(name).append("_seconds histogram\n");
+        long cumulative = 0;
+        int i = 0;
+        for (double bound : EXPORT_BOUNDS) {
+            long limit = (long) (bound * 1e9);
+            while (i < BUCKETS && upperBound(i) <= limit)
+                cumulative += snap[i++];
+            out.append(name).append("_seconds_bucket{le=\"").append(Double.toString(bound)).append("\"} ")
+                    .append(Long.toString(cumulative)).append('\n');
+        }
+        while (i < BUCKETS)
+            cumulative += snap[i++];
+        out.append(name).append("_seconds_bucket{le=\"+Inf\"} ").append(Long.toString(cumulative)).append('\n');
+        out.append(name).append("_seconds_sum ").append(Double.toString(sum.sum() / 1e9)).append('\n');
+        out.append(name).append("_seconds_count ").append(Long.toString(cumulative)).append('\n');
+        out.append("# TYPE ").append(name).append("_quantile_seconds gauge\n");
+        for (double q : new double[] { 0.5, 0.99, 0.999 })
+            out.append(name).append("_quantile_seconds{quantile=\"").append(Double.toString(q)).append("\"} ")
+                    .append(Double.toString(getPercentile(q) / 1e9)).append('\n');
+    }
+}
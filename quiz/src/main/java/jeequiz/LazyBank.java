@@ -0,0 +1,222 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// LazyBank : this class loads the subjects of a BinaryBank into one student
+// only while the quiz needs them, for full length mock tests whose banks are
+// too big to build up front.
+//
+// At the start the student only gets the subject and subtopic names and the
+// quiz gets a plan compiled from the question counts of the bank tables. The
+// questions of a subject are built when the cursor first reaches it. When the
+// cursor comes within prefetchDistance questions of the end of a subject, the
+// next subject is built on a background thread so it is normally ready when
+// the quiz crosses over. Once every question of a subject is answered and the
+// quiz has left it, its question lists are dropped again; the Subtopic objects
+// and so the scores and confidence totals stay. A dropped subject is simply
+// built again if the student goes back to review it.
+//
+// Only Quiz calls this class, always while holding the quiz lock, so the
+// subtopic lists of the student are only swapped by the quiz thread; the
+// background threads just build the lists.
+
+class LazyBank {
+
+    static final int DEFAULT_PREFETCH_DISTANCE = 10;
+
+    private static final ExecutorService PREFETCH = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "bank-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final BinaryBank bank;
+    private final Student student;
+    private final QuizPlan plan;
+    private final int prefetchDistance;
+    private final int[] subjectEnd; // first position after each subject
+    private final int[] unanswered;
+    private final List<CompletableFuture<List<List<MCQQuestion>>>> loads; // by subject, null when not loading
+    private final boolean[] installed;
+    private int currentSubject = -1;
+    private int loadedSubjects, peakLoadedSubjects, builds;
+
+    public LazyBank(BinaryBank bank, Student student) {
+        this(bank, student, DEFAULT_PREFETCH_DISTANCE);
+    }
+
+    public LazyBank(BinaryBank bank, Student student, int prefetchDistance) {
+        this.bank = bank;
+        this.student = student;
+        this.prefetchDistance = prefetchDistance;
+        bank.loadSkeleton(student);
+        int[][] sizes = bank.getSubtopicSizes();
+        plan = QuizPlan.compileShape(sizes);
+        int n = sizes.length;
+        subjectEnd = new int[n];
+        unanswered = new int[n];
+        int pos = 0;
+        for (int s = 0; s < n; s++) {
+            for (int size : sizes[s])
+                unanswered[s] += size;
+            pos += unanswered[s];
+            subjectEnd[s] = pos;
+        }
+        loads = new ArrayList<>(Collections.nCopies(n, null));
+        installed = new boolean[n];
+    }
+
+    public QuizPlan getPlan() {
+        return plan;
+    }
+
+    // the cursor moved to this position: the subject is made available (waiting
+    // for a running prefetch if needed), the next one is prefetched when close
+    // and a finished subject that was left is released
+
+    void reach(int position) {
+        int s = plan.getSubjectIndex(position);
+        if (s != currentSubject) {
+            if (currentSubject >= 0 && unanswered[currentSubject] == 0)
+                release(currentSubject);
+            currentSubject = s;
+        }
+        install(s);
+        if (s + 1 < subjectEnd.length && position >= subjectEnd[s] - prefetchDistance)
+            prefetch(s + 1);
+    }
+
+    // the question at this position was answered
+
+    void answered(int position) {
+        unanswered[plan.getSubjectIndex(position)]--;
+    }
+
+    // the question if its subject is installed, without waiting
+
+    MCQQuestion peek(int position) {
+        int s = plan.getSubjectIndex(position);
+        if (!installed[s]) {
+            CompletableFuture<List<List<MCQQuestion>>> f = loads.get(s);
+            if (f == null || !f.isDone() || f.isCompletedExceptionally())
+                return null;
+            install(s);
+        }
+        return student.getSubjects().get(s).getSubtopics().get(plan.getSubtopicIndex(position)).getQuestions()
+                .get(plan.getQuestionIndex(position));
+    }
+
+    private void prefetch(int s) {
+        if (loads.get(s) == null)
+            loads.set(s, CompletableFuture.supplyAsync(() -> build(s), PREFETCH));
+    }
+
+    private void install(int s) {
+        if (installed[s])
+            return;
+        List<List<MCQQuestion>> lists = null;
+        if (loads.get(s) != null) {
+            try {
+                lists = loads.get(s).join();
+            } catch (CompletionException e) {
+                // a failed prefetch is retried on this thread
+            }
+        }
+        if (lists == null)
+            lists = build(s);
+        List<Subtopic> subtopics = student.getSubjects().get(s).getSubtopics();
+        for (int t = 0; t < subtopics.size(); t++)
+            subtopics.get(t).setQuestions(lists.get(t));
+        installed[s] = true;
+        loads.set(s, CompletableFuture.completedFuture(lists));
+        peakLoadedSubjects = Math.max(peakLoadedSubjects, ++loadedSubjects);
+    }
+
+    private void release(int s) {
+        loads.set(s, null);
+        if (!installed[s])
+            return;
+        for (Subtopic st : student.getSubjects().get(s).getSubtopics())
+            st.setQuestions(Collections.emptyList());
+        installed[s] = false;
+        loadedSubjects--;
+    }
+
+    private List<List<MCQQuestion>> build(int s) {
+        synchronized (this) {
+            builds++;
+        }
+        return bank.buildQuestions(s);
+    }
+
+    public boolean isLoaded(int subject) {
+        return installed[subject];
+    }
+
+    public int getLoadedSubjects() {
+        return loadedSubjects;
+    }
+
+    public int getPeakLoadedSubjects() {
+        return peakLoadedSubjects;
+    }
+
+    public synchronized int getBuilds() {
+        return builds;
+    }
+
+    // Main method to compare eager and lazy loading of a bank:
+    // java jeequiz.LazyBank questions.bank
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java jeequiz.LazyBank <questions.bank>");
+            return;
+        }
+        BinaryBank bank = BinaryBank.open(Paths.get(args[0]));
+        for (int run = 0; run < 2; run++) {
+            boolean lazyRun = run == 1;
+            Student student = new Student("demo", "demo@example.com", 17);
+            long t0 = System.nanoTime();
+            LazyBank lazy = null;
+            Quiz quiz;
+            if (lazyRun) {
+                lazy = new LazyBank(bank, student);
+                quiz = new Quiz(student, lazy);
+            } else {
+                bank.loadInto(student);
+                quiz = new Quiz(student);
+            }
+            quiz.start();
+            quiz.getCurrentQuestion();
+            double startMs = (System.nanoTime() - t0) / 1e6;
+
+            // retained heap sampled (after a GC) at every eighth of the quiz
+            long peak = 0;
+            int n = 0, total = quiz.getTotalQuestions();
+            Runtime rt = Runtime.getRuntime();
+            while (!quiz.isQuizFinished()) {
+                if (n % Math.max(1, total / 8) == 0) {
+                    System.gc();
+                    peak = Math.max(peak, rt.totalMemory() - rt.freeMemory());
+                }
+                quiz.submitAnswer(n++ & 3, 2);
+            }
+            System.out.println((lazyRun ? "lazy " : "eager") + ": first question after "
+                    + String.format("%.1f", startMs) + " ms, " + n + " answers, score " + student.getTotalScore()
+                    + ", peak retained heap " + (peak >> 20) + " MB"
+                    + (lazyRun ? ", subjects in memory at most " + lazy.getPeakLoadedSubjects() + " of "
+                            + bank.getSubjectCount() : ""));
+            student = null;
+            quiz = null;
+            System.gc();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package jeequiz;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Leaderboard : this class ranks every student of a cohort live, by total
+// score (Student.getTotalScore) and by the score of each subject
+// (Subject.getTotalScore). Students stay on the board after their session ends.
+//
+// Every Board keeps two structures that are updated together:
+// - a concurrent skip list ordered by score (highest first) for top-K, which
+//   costs O(log n + K) and never blocks writers
+// - a Fenwick tree of student counts per score value for rank and percentile
+//   in O(log range); scores are bounded by the number of questions, so the
+//   range is known when the board is created
+// Updates for the same student are serialized by the ConcurrentHashMap entry;
+// updates for different students run in parallel. A query that races with
+// updates can be off by the students being updated at that moment.
+
+class Leaderboard {
+
+    // Entry : one student's score on one board
+
+    static final class Entry {
+        final String key, name;
+        final int score;
+
+        Entry(String key, String name, int score) {
+            this.key = key;
+            this.name = name;
+            this.score = score;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> a.score != b.score ? Integer.compare(b.score, a.score)
+            : a.key.compareTo(b.key);
+
+    // Board : ranking of all students on one score
+
+    static class Board {
+        private final String name;
+        private final int min, max;
+        private final AtomicIntegerArray tree; // Fenwick tree, index score - min + 1
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+        private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+        Board(String name, int min, int max) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+            tree = new AtomicIntegerArray(max - min + 2);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void update(String key, String studentName, int score) {
+            int s = Math.max(min, Math.min(max, score));
+            entries.compute(key, (k, prev) -> {
+                if (prev != null && prev.score == s)
+                    return prev;
+                Entry next = new Entry(key, studentName, s);
+                ranking.add(next);
+                add(s, 1);
+                if (prev != null) {
+                    add(prev.score, -1);
+                    ranking.remove(prev);
+                }
+                return next;
+            });
+        }
+
+        private void add(int score, int delta) {
+            for (int i = score - min + 1; i < tree.length(); i += i & -i)
+                tree.addAndGet(i, delta);
+        }
+
+        // number of students with a score below the given one
+
+        private int countBelow(int score) {
+            int n = 0;
+            for (int i = Math.min(score - min, tree.length() - 1); i > 0; i -= i & -i)
+                n += tree.get(i);
+            return n;
+        }
+
+        public int size() {
+            return countBelow(max + 1);
+        }
+
+        // the first k students, highest score first
+
+        public List<Entry> topK(int k) {
+            List<Entry> top = new ArrayList<>(Math.min(k, 64));
+            Iterator<Entry> it = ranking.iterator();
+            while (top.size() < k && it.hasNext())
+                top.add(it.next());
+            return top;
+        }
+
+        public Entry get(String key) {
+            return entries.get(key);
+        }
+
+        // 1 + the number of students with a higher score (ties share a rank),
+        // or -1 for a student that is not on the board
+
+        public int getRank(String key) {
+            Entry e = entries.get(key);
+            return e == null ? -1 : size() - countBelow(e.score + 1) + 1;
+        }
+
+        // percentile rank: share of students below, counting ties as half,
+        // or -1 for a student that is not on the board
+
+        public double getPercentile(String key) {
+            Entry e = entries.get(key);
+            if (e == null)
+                return -1;
+            int below = countBelow(e.score), upTo = countBelow(e.score + 1), n = size();
+            return n == 0 ? 0 : (below + (upTo - below) / 2.0) / n * 100;
+        }
+
+        public String toReport(int k) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(name).append(" (").append(size()).append(" students)\n");
+            int rank = 0, shown = 0, prevScore = Integer.MIN_VALUE;
+            for (Entry e : topK(k)) {
+                shown++;
+                if (e.score != prevScore)
+                    rank = shown;
+                prevScore = e.score;
+                sb.append(rank).append(". ").append(e.name).append(" (").append(e.key).append(") ")
+                        .append(e.score).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    private final Board overall;
+    private final Board[] subjects;
+
+    // the boards and their score ranges follow the subjects of the bank:
+    // a question is worth -3..+12 in the total and -1..+4 in its subject
+
+    public Leaderboard(List<Subject> bank) {
+        this(bank, ScoringRules.DEFAULT);
+    }
+
+    // with other marking, the ranges follow the rule of each subject and the
+    // type of each question (the total is the subject mark times a confidence
+    // of up to 3)
+
+    public Leaderboard(List<Subject> bank, ScoringRules scoring) {
+        subjects = new Board[bank.size()];
+        int low = 0, high = 0;
+        for (int s = 0; s < subjects.length; s++) {
+            ScoringRules.Rule rule = scoring.forSubject(bank.get(s).getName());
+            int min = 0, max = 0;
+            for (Subtopic st : bank.get(s).getSubtopics()) {
+                for (MCQQuestion q : st.getQuestions()) {
+                    min += rule.min(q.getType());
+                    max += rule.max(q.getType());
+                }
+            }
+            subjects[s] = new Board(bank.get(s).getName(), min, max);
+            low += 3 * min;
+            high += 3 * max;
+        }
+        overall = new Board("Overall", low, high);
+    }
+
+    // puts a new student on every board with a score of 0
+
+    public void add(String key, String name) {
+        overall.update(key, name, 0);
+        for (Board b : subjects)
+            b.update(key, name, 0);
+    }
+
+    // records the scores after an answer in the given subject
+
+    public void update(String key, String name, int totalScore, int subject, int subjectScore) {
+        overall.update(key, name, totalScore);
+        subjects[subject].update(key, name, subjectScore);
+    }
+
+    public Board getOverall() {
+        return overall;
+    }
+
+    public Board getSubject(int s) {
+        return subjects[s];
+    }
+
+    public int getSubjectCount() {
+        return subjects.length;
+    }
+
+    // board by name: "overall" or a subject name (case ignored), else null
+
+    public Board getBoard(String name) {
+        if (name == null || name.equalsIgnoreCase("overall"))
+            return overall;
+        for (Board b : subjects)
+            if (b.getName().equalsIgnoreCase(name))
+                return b;
+        return null;
+    }
+}
@@ -0,0 +1,100 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Metrics : this class holds the built-in metrics of the quiz: latency
+// histograms for the hot paths and counters for answers, sessions and banks.
+// Everything is static so any class can record without wiring; recording
+// never allocates. The values are exported in the Prometheus text format,
+// either from QuizServer's /metrics endpoint or into a file with writeTo()
+// (or periodically with -Djeequiz.metrics=<file>).
+
+class Metrics {
+
+    static final LatencyHistogram SUBMIT_ANSWER = new LatencyHistogram("jeequiz_submit_answer",
+            "Time spent in Quiz.submitAnswer");
+    static final LatencyHistogram DISPLAY_QUESTION = new LatencyHistogram("jeequiz_display_question",
+            "Time to render one question in the Swing GUI");
+    static final LatencyHistogram BANK_LOAD = new LatencyHistogram("jeequiz_bank_load",
+            "Time to load a question bank into the bank cache");
+    static final LatencyHistogram RESULT_REPORT = new LatencyHistogram("jeequiz_result_report",
+            "Time to build a student's result report");
+
+    static final LongAdder ANSWERS = new LongAdder();
+    static final LongAdder SESSIONS_STARTED = new LongAdder();
+    static final LongAdder BANKS_LOADED = new LongAdder();
+
+    private static final LatencyHistogram[] HISTOGRAMS = { SUBMIT_ANSWER, DISPLAY_QUESTION, BANK_LOAD,
+            RESULT_REPORT };
+    private static final long START = System.nanoTime();
+
+    // the export has no state of its own, so any number of scrapers and the
+    // file exporter can read it; rates are left to the scraper (e.g.
+    // rate(jeequiz_answers_total[1m]))
+
+    public static void writePrometheus(Appendable out) throws IOException {
+        long answers = ANSWERS.sum();
+        double uptime = (System.nanoTime() - START) / 1e9;
+
+        counter(out, "jeequiz_answers_total", "Answers submitted", answers);
+        counter(out, "jeequiz_sessions_started_total", "Quiz sessions started", SESSIONS_STARTED.sum());
+        counter(out, "jeequiz_banks_loaded_total", "Question banks loaded", BANKS_LOADED.sum());
+        gauge(out, "jeequiz_uptime_seconds", "Seconds since the metrics were initialised", uptime);
+        for (LatencyHistogram h : HISTOGRAMS)
+            h.writePrometheus(out);
+    }
+
+    // writes the export to a file, replacing it atomically
+
+    public static void writeTo(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writePrometheus(w);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // if the system property jeequiz.metrics names a file, rewrites that file
+    // with the current export every few seconds from a daemon thread
+
+    public static void startFileExport() {
+        String file = System.getProperty("jeequiz.metrics");
+        if (file == null || file.isEmpty())
+            return;
+        Path path = Paths.get(file);
+        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-export");
+            t.setDaemon(true);
+            return t;
+        });
+        ses.scheduleWithFixedDelay(() -> {
+            try {
+                writeTo(path);
+            } catch (IOException e) {
+                System.err.println("Could not write metrics to " + path + ": " + e.getMessage());
+            }
+        }, 5, 5, TimeUnit.SECONDS);
+    }
+
+    private static void counter(Appendable out, String name, String help, long value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(Long.toString(value)).append('\n');
+    }
+
+    private static void gauge(Appendable out, String name, String help, double value) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(Double.toString(value)).append('\n');
+    }
+}
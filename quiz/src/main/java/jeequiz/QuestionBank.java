@@ -0,0 +1,134 @@
+package jeequiz;
+
+// QuestionBank : this class holds the built-in demo question bank and loads it
+// into a student object. It is kept separate from the GUI so that the headless
+// quiz engine can build sessions without creating any Swing components.
+
+class QuestionBank {
+
+    public static void loadDefault(Student student) {
+        String[] subjects = { "Physics", "Chemistry", "Maths" };
+        String[][] subtopics = { { "Mechanics", "Fluids", "Electromagnetism" }, { "Physical", "Organic", "Inorganic" },
+                { "Algebra", "Calculus", "Geometry" } };
+
+        // questions[subject][subtopic][question][fields] : We Hardcoded questions for
+        // demo purposes and easy initialization rather than loading from external files
+        // or DB.
+
+        String[][][][] questions = new String[3][3][4][6];
+
+        // Physics - Mechanics
+        questions[0][0] = new String[][] {
+                { "A 2kg block is pushed with 10N. Acceleration?", "2", "5", "10", "20", "0" },
+
+                { "Free fall from 20m. Velocity after 2s?", "10", "15", "20", "25", "0" },
+
+                { "Force on 5kg at 2m/s²?", "5", "10", "15", "20", "0" },
+
+                { "Mass 3kg, F=12N. Acceleration?", "2", "3", "4", "6", "1" }
+        };
+        // Physics - Fluids
+        questions[0][1] = new String[][] {
+                { "Fluid density effect on pressure?", "Direct", "Inverse", "None", "Cannot say", "0" },
+
+                { "Pascal principle example?", "Hydraulic lift", "Boiling", "Magnet", "Spring", "0" },
+
+                { "Archimedes principle?", "Upthrust", "Friction", "Pressure", "Velocity", "0" },
+
+                { "Viscosity increases?", "Speed decreases", "Speed increases", "No effect", "Cannot say", "0" }
+        };
+        // Physics - Electromagnetism
+        questions[0][2] = new String[][] {
+                { "EMF across 5Ω resistor with 10A?", "50V", "10V", "5V", "20V", "0" },
+
+                { "Magnetic force direction?", "Perpendicular", "Parallel", "Opposite", "Along field", "0" },
+
+                { "Lenz law example?", "Induced current", "Resistance", "Velocity", "Acceleration", "0" },
+
+                { "Faraday law unit?", "Volt", "Ampere", "Newton", "Joule", "0" }
+        };
+
+        // Chemistry - Physical
+        questions[1][0] = new String[][] {
+                { "HCl + NaOH reaction?", "Salt", "Water", "Acid", "Base", "0" },
+
+                { "Organic compound CH4?", "Methane", "Ethanol", "Ethane",
+                        "Propane", "0" },
+
+                { "Atomic number of O?", "6", "8", "16", "12", "1" },
+
+                { "Periodic table group of Na?", "Alkali", "Halogen", "Noble", "Transition", "0" }
+        };
+        // Chemistry - Organic
+        questions[1][1] = new String[][] {
+                { "Alkane formula C2H6?", "Ethane", "Methane", "Propane", "Butane", "0" },
+
+                { "pH of neutral solution?", "7", "0", "14", "1", "0" },
+
+                { "Redox example?", "Zn+CuSO4", "H2O", "CO2", "NaCl", "0" },
+
+                { "Balancing H2+O2?", "H2O", "H2O2", "OH", "H2", "0" }
+        };
+        // Chemistry - Inorganic
+        questions[1][2] = new String[][] {
+                { "Which is amphoteric?", "Aluminium", "Sodium", "Chlorine", "Helium", "0" },
+
+                { "Most electronegative element?", "Fluorine", "Oxygen", "Chlorine", "Nitrogen", "0" },
+
+                { "Ionic bond formed by?", "Transfer of electrons", "Sharing of electrons", "No electrons", "Both",
+                        "0" },
+
+                { "Common salt name?", "Sodium Chloride", "Sodium Oxide", "Potassium Chloride", "Calcium Carbonate",
+                        "0" }
+        };
+
+        // Maths - Algebra
+        questions[2][0] = new String[][] {
+                { "Solve x+2=5", "2", "3", "5", "4", "1" },
+
+                { "Derivative of x²?", "2x", "x²", "x", "1", "0" },
+
+                { "Integral of 2x?", "x²", "2x²", "x", "0", "0" },
+
+                { "Sum of 1+2+3?", "3", "6", "10", "1", "1" }
+        };
+        // Maths - Calculus
+        questions[2][1] = new String[][] {
+                { "Determinant of [[1,2],[3,4]]?", "-2", "2", "0", "1", "0" },
+
+                { "Solve y=2x+3, y when x=2?", "7", "5", "6", "8", "0" },
+
+                { "Area of circle r=1?", "3.14", "6.28", "1", "0", "0" },
+
+                { "Slope of line through (0,0) and (2,4)?", "2", "0", "1", "4", "0" }
+        };
+        // Maths - Geometry
+        questions[2][2] = new String[][] {
+                { "Angle sum of triangle?", "180", "90", "360", "270", "0" },
+
+                { "Right triangle Pythagoras?", "a^2+b^2=c^2", "a+b=c", "ab=c", "None", "0" },
+
+                { "Area of square side 2?", "4", "8", "2", "16", "0" },
+
+                { "Perimeter of circle?", "2πr", "πr^2", "πd", "πr", "0" }
+        };
+
+        // Load questions into student object
+
+        for (int s = 0; s < subjects.length; s++) {
+            Subject subj = new Subject(subjects[s]);
+            for (int t = 0; t < 3; t++) {
+                Subtopic st = new Subtopic(subtopics[s][t]);
+                for (int q = 0; q < 4; q++) {
+                    String[] qdata = questions[s][t][q];
+                    String[] opts = { qdata[1], qdata[2], qdata[3], qdata[4] };
+                    int correct = Integer.parseInt(qdata[5]);
+                    MCQQuestion mcq = new MCQQuestion(qdata[0], opts, correct, t);
+                    st.addQuestion(mcq);
+                }
+                subj.addSubtopic(st);
+            }
+            student.addSubject(subj);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package jeequiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// QuestionBankLoader : this class reads a question bank from a CSV file one line
+// at a time, so even very large banks are never held in memory as raw text.
+//
+// Each line is: subject,subtopic,question,option1,option2,option3,option4,correct
+// where correct gives the question type and its key (see ScoringRules):
+//   2       single answer, the index (0-3) of the right option
+//   0+2     multiple answer, the right options joined by '+' (one right
+//           option is written with a trailing '+', e.g. 3+)
+//   =-12    numeric answer, the right integer value; the options are unused
+// Fields may be wrapped in
+// double quotes ("" inside quotes is a literal quote). Empty lines, lines
+// starting with # and a header line starting with "subject" are skipped.
+// Questions of one subtopic must be on consecutive lines.
+
+class QuestionBankLoader {
+
+    // callback used while streaming, called once for every question row
+
+    interface RowHandler {
+        void row(String subject, String subtopic, String text, String[] options, int type, int correct)
+                throws IOException;
+    }
+
+    // streams every row of the reader into the handler and returns the number of
+    // questions read
+
+    public static int stream(BufferedReader in, RowHandler handler) throws IOException {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder cell = new StringBuilder();
+        String line;
+        int lineNo = 0, rows = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+            if (rows == 0 && line.regionMatches(true, 0, "subject,", 0, 8))
+                continue;
+            parseLine(line, lineNo, fields, cell);
+            if (fields.size() != 8)
+                throw new IOException("Line " + lineNo + ": expected 8 fields but found " + fields.size());
+            String key = fields.get(7).trim();
+            int type = key.startsWith("=") ? ScoringRules.NUMERIC
+                    : key.indexOf('+') >= 0 ? ScoringRules.MULTIPLE : ScoringRules.SINGLE;
+            int correct;
+            try {
+                correct = parseAnswer(type == ScoringRules.NUMERIC ? key.substring(1) : key, type);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNo + ": " + e.getMessage());
+            }
+            String[] opts = { fields.get(3), fields.get(4), fields.get(5), fields.get(6) };
+            handler.row(fields.get(0), fields.get(1), fields.get(2), opts, type, correct);
+            rows++;
+        }
+        return rows;
+    }
+
+    // loads a CSV bank straight into the Subject/Subtopic/MCQQuestion model
+
+    public static void loadCsv(Path file, Student student) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            stream(in, new RowHandler() {
+                private Subject subject;
+                private Subtopic subtopic;
+
+                @Override
+                public void row(String subj, String topic, String text, String[] options, int type, int correct) {
+                    if (subject == null || !subject.getName().equals(subj)) {
+                        subject = new Subject(subj);
+                        subtopic = null;
+                        student.addSubject(subject);
+                    }
+                    if (subtopic == null || !subtopic.getName().equals(topic)) {
+                        subtopic = new Subtopic(topic);
+                        subject.addSubtopic(subtopic);
+                    }
+                    int t = subject.getSubtopics().size() - 1;
+                    subtopic.addQuestion(new MCQQuestion(text, options, type, correct, t));
+                }
+            });
+        }
+    }
+
+    // splits one CSV line into fields, reusing the given list and builder
+
+    static void parseLine(String line, int lineNo, List<String> fields, StringBuilder cell) throws IOException {
+        fields.clear();
+        cell.setLength(0);
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cell.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted)
+            throw new IOException("Line " + lineNo + ": unclosed quote");
+        fields.add(cell.toString());
+    }
+
+    // an answer (or key) to a question of the given type, as written in a
+    // bank, a correction or a request: an option 0-3, options 0-3 joined by
+    // '+' (a trailing '+' is allowed), or an integer value
+
+    static int parseAnswer(String s, int type) {
+        String t = s.trim();
+        if (type == ScoringRules.NUMERIC) {
+            try {
+                return Integer.parseInt(t);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("numeric answer must be an integer but was '" + s + "'");
+            }
+        }
+        int mask = 0;
+        boolean option = false, ok = !t.isEmpty();
+        for (int i = 0; i < t.length() && ok; i++) {
+            char c = t.charAt(i);
+            int bit = c >= '0' && c <= '3' ? 1 << (c - '0') : 0;
+            ok = option ? c == '+' : bit != 0 && (mask & bit) == 0;
+            mask |= bit;
+            option = !option;
+        }
+        if (!ok || type == ScoringRules.SINGLE && t.length() != 1)
+            throw new IllegalArgumentException("answer must be "
+                    + (type == ScoringRules.SINGLE ? "0-3" : "options 0-3 joined by '+'") + " but was '" + s + "'");
+        return type == ScoringRules.SINGLE ? Integer.numberOfTrailingZeros(mask) : mask;
+    }
+}
@@ -0,0 +1,407 @@
+package jeequiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// QuestionStore : this class keeps a whole question bank in a few primitive
+// arrays instead of one MCQQuestion object (plus String[] and five Strings) per
+// question. All question texts and options are UTF-8 bytes in one byte[]; every
+// question owns five consecutive entries in the offsets array (text, option 0-3).
+//
+// The usual Question API is available through View objects, which are tiny
+// MCQQuestion subclasses holding only the store and a question number. Views
+// are created on demand and decode strings only when asked for them, so the
+// store can back a normal Subject/Subtopic/Quiz without materialising the bank.
+
+class QuestionStore {
+
+    private static final int STRINGS_PER_QUESTION = 5, OPTIONS = 4; // text and four options
+
+    private final byte[] strings;
+    private final int[] offsets; // 5 * questions + 1 entries, last one is the end
+    private final byte[] types; // ScoringRules question type
+    private final int[] keys; // correct option, mask or value (see Question.getCorrectAnswer)
+    private final int[] subtopicOf; // global subtopic id of every question
+
+    private final String[] subjectNames;
+    private final int[] subjectFirstSubtopic, subjectSubtopicCount;
+    private final String[] subtopicNames;
+    private final int[] subtopicSubject, subtopicLocalIndex, subtopicFirstQuestion, subtopicQuestionCount;
+
+    private QuestionStore(Builder b) {
+        strings = Arrays.copyOf(b.strings, b.stringsSize);
+        b.offsets.add(b.stringsSize);
+        offsets = b.offsets.toArray();
+        types = Arrays.copyOf(b.types, b.questions);
+        keys = Arrays.copyOf(b.keys, b.questions);
+        subtopicOf = b.subtopicOf.toArray();
+        subjectNames = b.subjectNames.toArray(new String[0]);
+        subjectFirstSubtopic = b.subjectFirstSubtopic.toArray();
+        subjectSubtopicCount = b.subjectSubtopicCount.toArray();
+        subtopicNames = b.subtopicNames.toArray(new String[0]);
+        subtopicSubject = b.subtopicSubject.toArray();
+        subtopicLocalIndex = b.subtopicLocalIndex.toArray();
+        subtopicFirstQuestion = b.subtopicFirstQuestion.toArray();
+        subtopicQuestionCount = b.subtopicQuestionCount.toArray();
+    }
+
+    // same bank with another answer key, e.g. after an answer was found to be
+    // wrong; the strings and subtopics are shared, not copied
+
+    private QuestionStore(QuestionStore o, int[] keys) {
+        strings = o.strings;
+        offsets = o.offsets;
+        types = o.types;
+        this.keys = keys;
+        subtopicOf = o.subtopicOf;
+        subjectNames = o.subjectNames;
+        subjectFirstSubtopic = o.subjectFirstSubtopic;
+        subjectSubtopicCount = o.subjectSubtopicCount;
+        subtopicNames = o.subtopicNames;
+        subtopicSubject = o.subtopicSubject;
+        subtopicLocalIndex = o.subtopicLocalIndex;
+        subtopicFirstQuestion = o.subtopicFirstQuestion;
+        subtopicQuestionCount = o.subtopicQuestionCount;
+    }
+
+    // a copy whose key has the given corrections: question number -> correct
+    // option, mask or value, as the question's type needs
+
+    public QuestionStore withCorrections(Map<Integer, Integer> corrections) {
+        int[] key = keys.clone();
+        for (Map.Entry<Integer, Integer> e : corrections.entrySet()) {
+            int q = e.getKey(), answer = e.getValue();
+            if (q < 0 || q >= key.length || !ScoringRules.isValid(types[q], answer))
+                throw new IllegalArgumentException("Bad key correction: question " + q + ", answer " + answer);
+            key[q] = answer;
+        }
+        return new QuestionStore(this, key);
+    }
+
+    public static QuestionStore fromCsv(Path csv) throws IOException {
+        Builder b = new Builder();
+        try (BufferedReader in = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            QuestionBankLoader.stream(in, b);
+        }
+        return b.build();
+    }
+
+    public static QuestionStore fromBank(BinaryBank bank) throws IOException {
+        Builder b = new Builder();
+        bank.stream(b);
+        return b.build();
+    }
+
+    public int getQuestionCount() {
+        return keys.length;
+    }
+
+    public int getSubjectCount() {
+        return subjectNames.length;
+    }
+
+    public int getSubtopicCount() {
+        return subtopicNames.length;
+    }
+
+    public String getSubjectName(int s) {
+        return subjectNames[s];
+    }
+
+    public String getSubtopicName(int st) {
+        return subtopicNames[st];
+    }
+
+    public int getSubjectOf(int st) {
+        return subtopicSubject[st];
+    }
+
+    public int getSubtopicOf(int q) {
+        return subtopicOf[q];
+    }
+
+    public int getSubtopicSize(int st) {
+        return subtopicQuestionCount[st];
+    }
+
+    // question number at every plan position, i.e. in the order loadInto
+    // gives the questions to a student
+
+    public int[] planOrder() {
+        int[] order = new int[keys.length];
+        int p = 0;
+        for (int s = 0; s < subjectNames.length; s++) {
+            for (int t = 0; t < subjectSubtopicCount[s]; t++) {
+                int st = subjectFirstSubtopic[s] + t;
+                for (int q = 0; q < subtopicQuestionCount[st]; q++)
+                    order[p++] = subtopicFirstQuestion[st] + q;
+            }
+        }
+        return order;
+    }
+
+    public String getText(int q) {
+        return string(q * STRINGS_PER_QUESTION);
+    }
+
+    public String getOption(int q, int i) {
+        return string(q * STRINGS_PER_QUESTION + 1 + i);
+    }
+
+    public int getType(int q) {
+        return types[q];
+    }
+
+    public int getCorrectAnswer(int q) {
+        return keys[q];
+    }
+
+    // same marking as MCQQuestion.checkAnswer, without touching any object
+
+    public int checkAnswer(int q, int selected, int confidenceValue) {
+        return ScoringRules.MCQ.total(ScoringRules.MCQ.outcome(types[q], keys[q], selected), confidenceValue);
+    }
+
+    public View view(int q) {
+        return new View(this, q);
+    }
+
+    private String string(int k) {
+        return new String(strings, offsets[k], offsets[k + 1] - offsets[k], StandardCharsets.UTF_8);
+    }
+
+    // builds a Subject whose subtopics hold views into this store
+    // only the per-student score state is allocated here
+
+    public Subject buildSubject(int s) {
+        Subject subject = new Subject(subjectNames[s]);
+        for (int t = 0; t < subjectSubtopicCount[s]; t++) {
+            int st = subjectFirstSubtopic[s] + t;
+            Subtopic subtopic = new Subtopic(subtopicNames[st]);
+            int first = subtopicFirstQuestion[st];
+            for (int q = 0; q < subtopicQuestionCount[st]; q++)
+                subtopic.addQuestion(view(first + q));
+            subject.addSubtopic(subtopic);
+        }
+        return subject;
+    }
+
+    public void loadInto(Student student) {
+        for (int s = 0; s < subjectNames.length; s++)
+            student.addSubject(buildSubject(s));
+    }
+
+    // read-only list of views over one subtopic, for callers that only need to
+    // walk questions and do not want Subtopic score state
+
+    public List<MCQQuestion> questionsOf(int st) {
+        int first = subtopicFirstQuestion[st], count = subtopicQuestionCount[st];
+        return new AbstractList<MCQQuestion>() {
+            @Override
+            public MCQQuestion get(int i) {
+                if (i < 0 || i >= count)
+                    throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+                return view(first + i);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    // approximate heap used by the store's arrays
+
+    public long getMemoryBytes() {
+        return strings.length + 4L * offsets.length + types.length + 4L * keys.length + 4L * subtopicOf.length
+                + 4L * 6 * subtopicNames.length + 4L * 3 * subjectNames.length;
+    }
+
+    // View : a Question backed by one row of the store. It passes nothing to the
+    // Question fields and answers every getter from the store's arrays.
+
+    static class View extends MCQQuestion {
+        private final QuestionStore store;
+        private final int index;
+
+        View(QuestionStore store, int index) {
+            super(null, null, 0, 0);
+            this.store = store;
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public String getText() {
+            return store.getText(index);
+        }
+
+        // a new array of four decoded strings on every call; getOption and
+        // getOptionCount decode one or none
+        @Override
+        public String[] getOptions() {
+            String[] opts = new String[OPTIONS];
+            for (int i = 0; i < OPTIONS; i++)
+                opts[i] = store.getOption(index, i);
+            return opts;
+        }
+
+        @Override
+        public int getOptionCount() {
+            return OPTIONS;
+        }
+
+        @Override
+        public String getOption(int i) {
+            if (i < 0 || i >= OPTIONS)
+                throw new IndexOutOfBoundsException("Option " + i);
+            return store.getOption(index, i);
+        }
+
+        @Override
+        public int getType() {
+            return store.types[index];
+        }
+
+        @Override
+        public int getCorrectAnswer() {
+            return store.keys[index];
+        }
+
+        @Override
+        public int getSubtopicIndex() {
+            return store.subtopicLocalIndex[store.subtopicOf[index]];
+        }
+
+        @Override
+        public int checkAnswer(int selected, int confidenceValue) {
+            return store.checkAnswer(index, selected, confidenceValue);
+        }
+
+        @Override
+        public boolean isCorrect(int selected) {
+            return selected == store.keys[index];
+        }
+    }
+
+    // Builder : collects rows into growable primitive arrays; rows of one
+    // subtopic must arrive together, as with the CSV and binary loaders
+
+    static class Builder implements QuestionBankLoader.RowHandler {
+        private byte[] strings = new byte[1 << 16];
+        private int stringsSize;
+        private byte[] types = new byte[1024];
+        private int[] keys = new int[1024];
+        private int questions;
+        private final BinaryBank.IntList offsets = new BinaryBank.IntList();
+        private final BinaryBank.IntList subtopicOf = new BinaryBank.IntList();
+        private final List<String> subjectNames = new ArrayList<>();
+        private final BinaryBank.IntList subjectFirstSubtopic = new BinaryBank.IntList();
+        private final BinaryBank.IntList subjectSubtopicCount = new BinaryBank.IntList();
+        private final List<String> subtopicNames = new ArrayList<>();
+        private final BinaryBank.IntList subtopicSubject = new BinaryBank.IntList();
+        private final BinaryBank.IntList subtopicLocalIndex = new BinaryBank.IntList();
+        private final BinaryBank.IntList subtopicFirstQuestion = new BinaryBank.IntList();
+        private final BinaryBank.IntList subtopicQuestionCount = new BinaryBank.IntList();
+        private String lastSubject, lastSubtopic;
+
+        @Override
+        public void row(String subject, String subtopic, String text, String[] options, int type, int answer) {
+            add(subject, subtopic, text, options, type, answer);
+        }
+
+        public Builder add(String subject, String subtopic, String text, String[] options, int type, int answer) {
+            if (options.length != 4 || type < 0 || type > ScoringRules.MULTIPLE || !ScoringRules.isValid(type, answer))
+                throw new IllegalArgumentException("A question needs 4 options and a correct answer of its type");
+            if (!subject.equals(lastSubject)) {
+                lastSubject = subject;
+                lastSubtopic = null;
+                subjectNames.add(subject);
+                subjectFirstSubtopic.add(subtopicNames.size());
+                subjectSubtopicCount.add(0);
+            }
+            if (!subtopic.equals(lastSubtopic)) {
+                lastSubtopic = subtopic;
+                int s = subjectNames.size() - 1;
+                subtopicNames.add(subtopic);
+                subtopicSubject.add(s);
+                subtopicLocalIndex.add(subjectSubtopicCount.get(s));
+                subtopicFirstQuestion.add(questions);
+                subtopicQuestionCount.add(0);
+                subjectSubtopicCount.increment(s);
+            }
+            appendString(text);
+            for (String o : options)
+                appendString(o);
+            if (questions == keys.length) {
+                types = Arrays.copyOf(types, questions * 2);
+                keys = Arrays.copyOf(keys, questions * 2);
+            }
+            types[questions] = (byte) type;
+            keys[questions++] = answer;
+            subtopicOf.add(subtopicNames.size() - 1);
+            subtopicQuestionCount.increment(subtopicQuestionCount.size() - 1);
+            return this;
+        }
+
+        private void appendString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if (stringsSize + bytes.length > strings.length)
+                strings = Arrays.copyOf(strings, Math.max(strings.length * 2, stringsSize + bytes.length));
+            offsets.add(stringsSize);
+            System.arraycopy(bytes, 0, strings, stringsSize, bytes.length);
+            stringsSize += bytes.length;
+        }
+
+        public QuestionStore build() {
+            return new QuestionStore(this);
+        }
+    }
+
+    // Main method to compare heap per question of the object model and the store
+    // java jeequiz.QuestionStore questions.bank
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java jeequiz.QuestionStore <questions.bank>");
+            return;
+        }
+        BinaryBank bank = BinaryBank.open(Paths.get(args[0]));
+        int n = bank.getQuestionCount();
+
+        long before = usedHeap();
+        Student student = new Student("heap", "heap@test", 0);
+        bank.loadInto(student);
+        long objects = usedHeap() - before;
+
+        before = usedHeap();
+        QuestionStore store = fromBank(bank);
+        long primitive = usedHeap() - before;
+
+        System.out.println("Questions        : " + n);
+        System.out.println("Object model     : " + objects / n + " bytes/question");
+        System.out.println("QuestionStore    : " + primitive / n + " bytes/question (arrays "
+                + store.getMemoryBytes() / n + ")");
+        Reference.reachabilityFence(student);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,501 @@
+package jeequiz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// QuizEngine : this class hosts many quiz sessions at once without any GUI.
+// Every session is a normal Quiz object for one Student, stored in a
+// ConcurrentHashMap under a generated session id so that lookups from many
+// threads never block each other.
+// With an AnswerJournal every start, answer and end is logged before it is
+// acknowledged, and the sessions are rebuilt from the journal on restart.
+// With -Djeequiz.shuffle=<seed> every student gets their own question and
+// option order (see Shuffle); the journal keeps the options as shown, so it
+// must be replayed with the same seed.
+// Answers are marked with the ScoringRules of -Djeequiz.scoring; the journal
+// keeps the answers, not the marks, so a replay under other rules re-scores
+// every session (BulkGrader.gradeJournal does the same in parallel offline).
+// With -Djeequiz.timing every session runs against per-question and/or
+// per-section clocks (see ExamTiming); a clock that runs out closes the
+// question or the rest of the section unanswered. The time spent on every
+// question is logged with the answer and shows in the results.
+
+class QuizEngine implements Closeable {
+
+    private final ConcurrentHashMap<String, Quiz> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final BinaryBank bank;
+    private final CohortStats cohort;
+    private final Leaderboard leaderboard;
+    private final List<Subject> shape;
+    private final QuizPlan plan;
+    private final ScoringRules scoring = ScoringRules.configured();
+
+    // live item analysis by plan position. Every answer goes into the atomic
+    // counts without a lock; the session's answers also form one sheet that
+    // is folded into the discrimination sums of items (under its lock) when
+    // the quiz finishes or the session ends, once per session
+    private final ItemAnalysis.Counts answerCounts;
+    private final ItemAnalysis items;
+    private final ConcurrentHashMap<String, ItemAnalysis.Sheet> sheets = new ConcurrentHashMap<>();
+    private AnswerJournal journal;
+    private ResultStore results;
+    private volatile SearchIndex search; // built on the first search, then never changed
+    private final Object searchBuild = new Object();
+    private final ExamTiming timing = ExamTiming.configured(this::expired);
+    private boolean replaying; // clocks are armed once the journal is replayed
+
+    // uses the built-in demo questions
+
+    public QuizEngine() {
+        this(null);
+    }
+
+    // uses a compiled question bank; the questions are loaded once into the
+    // shared BankCache and every session only gets its own score state
+
+    public QuizEngine(BinaryBank bank) {
+        this.bank = bank;
+        Student cohortShape = new Student("cohort", "cohort", 0);
+        plan = loadBank(cohortShape);
+        shape = cohortShape.getSubjects();
+        cohort = new CohortStats(shape);
+        leaderboard = new Leaderboard(shape, scoring);
+        answerCounts = new ItemAnalysis.Counts(plan.size());
+        items = new ItemAnalysis(plan.size());
+    }
+
+    // uses a compiled question bank (or the demo questions when bank is null)
+    // and a journal file; sessions already in the journal are replayed first
+
+    public QuizEngine(BinaryBank bank, Path journalFile) throws IOException {
+        this(bank, journalFile, null);
+    }
+
+    // as above, and the final scores of every finished quiz are kept in a
+    // ResultStore file; either file may be null
+
+    public QuizEngine(BinaryBank bank, Path journalFile, Path resultFile) throws IOException {
+        this(bank);
+        if (resultFile != null) {
+            int subtopicCount = 0;
+            for (Subject subj : shape)
+                subtopicCount += subj.getSubtopics().size();
+            results = ResultStore.open(resultFile, subtopicCount, true);
+        }
+        if (journalFile != null)
+            replay(journalFile);
+    }
+
+    private void replay(Path journalFile) throws IOException {
+        replaying = true;
+        long valid = AnswerJournal.replay(journalFile, new AnswerJournal.Replay() {
+            @Override
+            public void start(long session, String name, String email, int age) {
+                createSession(session, name, email, age);
+                if (session > nextId.get())
+                    nextId.set(session);
+            }
+
+            @Override
+            public void answer(long session, int selected, int confidenceValue, int spentMillis) {
+                Quiz quiz = sessions.get(Long.toString(session, 36));
+                if (quiz != null)
+                    applyAnswer(Long.toString(session, 36), quiz, selected, confidenceValue, spentMillis);
+            }
+
+            @Override
+            public void timeout(long session, int end, int spentMillis) {
+                Quiz quiz = sessions.get(Long.toString(session, 36));
+                if (quiz != null)
+                    applyTimeout(Long.toString(session, 36), quiz, end, spentMillis);
+            }
+
+            @Override
+            public void end(long session) {
+                String id = Long.toString(session, 36);
+                sessions.remove(id);
+                closeSheet(id);
+            }
+
+            @Override
+            public void resume(long session, byte[] snapshot) {
+                try {
+                    register(session, resumeQuiz(SessionSnapshot.read(snapshot)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (session > nextId.get())
+                    nextId.set(session);
+            }
+        });
+        journal = new AnswerJournal(journalFile, valid);
+        replaying = false;
+        // the clocks of replayed sessions start again from the full limit
+        for (Map.Entry<String, Quiz> e : sessions.entrySet()) {
+            synchronized (e.getValue()) {
+                arm(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    // adds the bank to the student and returns the plan shared by all its sessions
+
+    private QuizPlan loadBank(Student student) {
+        try {
+            BankCache.SharedBank shared;
+            if (bank != null)
+                shared = BankCache.shared().get(bank.getFile().toAbsolutePath().toString(), bank::loadInto);
+            else
+                shared = BankCache.shared().get("default", QuestionBank::loadDefault);
+            shared.addTo(student);
+            return shared.getPlan();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // creates a student, loads the question bank and starts the quiz
+    // returns the id that the client must send with every later call
+
+    public String startSession(String name, String email, int age) {
+        if (name == null || name.trim().isEmpty() || email == null || email.trim().isEmpty())
+            throw new IllegalArgumentException("Empty fields");
+        long session = nextId.incrementAndGet();
+        if (journal != null)
+            awaitDurable(appendStart(session, name.trim(), email.trim(), age));
+        return createSession(session, name.trim(), email.trim(), age);
+    }
+
+    private String createSession(long session, String name, String email, int age) {
+        Student student = new Student(name, email, age);
+        Quiz quiz = new Quiz(student, loadBank(student));
+        quiz.setShuffle(Shuffle.configured(email));
+        quiz.setScoring(scoring);
+        quiz.start();
+        String id = Long.toString(session, 36);
+        sessions.put(id, quiz);
+        synchronized (quiz) {
+            arm(id, quiz);
+        }
+        cohort.recordStudent();
+        leaderboard.add(id, name);
+        Metrics.SESSIONS_STARTED.increment();
+        return id;
+    }
+
+    // the session's state as a SessionSnapshot, e.g. to pause it or move it
+    // to another engine on the same bank
+
+    public byte[] snapshot(String id) {
+        return SessionSnapshot.write(getSession(id));
+    }
+
+    // continues a session from a snapshot under a new id; the snapshot's
+    // answers count towards the leaderboard but not the item analysis, whose
+    // sheets need the individual answers
+
+    public String resumeSession(byte[] snapshot) throws IOException {
+        // built first so a snapshot of another bank is refused before it is logged
+        Quiz quiz = resumeQuiz(SessionSnapshot.read(snapshot));
+        long session = nextId.incrementAndGet();
+        if (journal != null)
+            awaitDurable(journal.appendResume(session, snapshot));
+        return register(session, quiz);
+    }
+
+    private Quiz resumeQuiz(SessionSnapshot s) {
+        Student student = s.newStudent();
+        Quiz quiz = new Quiz(student, loadBank(student));
+        s.applyTo(quiz);
+        quiz.setScoring(scoring);
+        return quiz;
+    }
+
+    private String register(long session, Quiz quiz) {
+        Student student = quiz.getStudent();
+        String id = Long.toString(session, 36);
+        sessions.put(id, quiz);
+        synchronized (quiz) {
+            arm(id, quiz);
+        }
+        cohort.recordStudent();
+        leaderboard.add(id, student.getName());
+        for (int subj = 0; subj < student.getSubjects().size(); subj++)
+            leaderboard.update(id, student.getName(), student.getTotalScore(), subj,
+                    student.getSubjects().get(subj).getTotalScore());
+        Metrics.SESSIONS_STARTED.increment();
+        return id;
+    }
+
+    public Quiz getSession(String id) {
+        Quiz quiz = id == null ? null : sessions.get(id);
+        if (quiz == null)
+            throw new IllegalArgumentException("Unknown session: " + id);
+        return quiz;
+    }
+
+    public MCQQuestion getCurrentQuestion(String id) {
+        return getSession(id).getCurrentQuestion();
+    }
+
+    // submits one answer for the session's current question: an option 0-3,
+    // a mask of options or a value, as the question's type needs
+    // returns false when the quiz is already finished
+    // the quiz lock is held for the check and the submit so two requests for
+    // the same session can never both answer the same question, and an answer
+    // racing endSession is either logged before END or refused
+
+    public boolean submitAnswer(String id, int selected, int confidenceValue) {
+        if (confidenceValue < 1 || confidenceValue > 3)
+            throw new IllegalArgumentException("Confidence must be between 1 and 3");
+        Quiz quiz = getSession(id);
+        long ticket = 0;
+        synchronized (quiz) {
+            if (sessions.get(id) != quiz)
+                throw new IllegalArgumentException("Unknown session: " + id);
+            MCQQuestion q = quiz.getCurrentQuestion();
+            if (q == null)
+                return false;
+            if (!ScoringRules.isValid(q.getType(), selected))
+                throw new IllegalArgumentException("Bad answer " + selected + " to a "
+                        + ScoringRules.typeName(q.getType()) + " question");
+            int spent = quiz.elapsedMillis();
+            if (journal != null)
+                ticket = appendAnswer(Long.parseLong(id, 36), selected, confidenceValue, spent);
+            applyAnswer(id, quiz, selected, confidenceValue, spent);
+        }
+        // wait for the fsync outside the quiz lock so other requests for this
+        // session are not held up by the disk
+        if (journal != null)
+            awaitDurable(ticket);
+        return true;
+    }
+
+    private void applyAnswer(String id, Quiz quiz, int selected, int confidenceValue, int spentMillis) {
+        MCQQuestion q = quiz.getCurrentQuestion();
+        // a replayed answer that does not fit the question (the bank changed)
+        // is dropped
+        if (q == null || !ScoringRules.isValid(q.getType(), selected))
+            return;
+        // statistics use the shared question and options, the quiz takes the
+        // answer as the student saw it
+        int subject = quiz.subjectIndex, position = quiz.getQuestionPosition();
+        int answer = quiz.toOriginalSelection(selected);
+        ScoringRules.Rule rule = quiz.getRule();
+        int outcome = rule.outcome(q.getType(), q.getCorrectAnswer(), answer);
+        boolean correct = ScoringRules.isCorrect(outcome);
+        int options = ScoringRules.optionMask(q.getType(), answer);
+        cohort.recordAnswer(subject, quiz.subtopicIndex, quiz.questionIndex, options, confidenceValue,
+                rule.section(outcome), correct);
+        answerCounts.record(position, options, confidenceValue, correct);
+        sheets.computeIfAbsent(id, ItemAnalysis.Sheet::new).add(position, correct);
+        quiz.submitAnswer(selected, confidenceValue, spentMillis);
+        Student student = quiz.getStudent();
+        arm(id, quiz);
+        if (quiz.isQuizFinished()) {
+            closeSheet(id);
+            if (results != null)
+                saveResult(student);
+        }
+        leaderboard.update(id, student.getName(), student.getTotalScore(), subject,
+                student.getSubjects().get(subject).getTotalScore());
+    }
+
+    // a clock of a timed session ran out (on the wheel thread); nothing
+    // happens if the session answered or moved on meanwhile. The timeout is
+    // logged but not waited for: the wheel thread must not block on the disk,
+    // and a timeout lost in a crash only gives the student the full time again
+
+    private void expired(String id, int position, int end) {
+        Quiz quiz = sessions.get(id);
+        if (quiz == null)
+            return;
+        synchronized (quiz) {
+            if (sessions.get(id) != quiz)
+                return;
+            boolean moved = position >= 0 ? quiz.getPosition() != position : quiz.getSectionEnd() != end;
+            if (quiz.isQuizFinished() || moved)
+                return;
+            int spent = quiz.elapsedMillis();
+            if (journal != null)
+                appendTimeout(Long.parseLong(id, 36), end, spent);
+            applyTimeout(id, quiz, end, spent);
+        }
+    }
+
+    private void applyTimeout(String id, Quiz quiz, int end, int spentMillis) {
+        if (quiz.timeOut(end, spentMillis) == 0)
+            return;
+        arm(id, quiz);
+        if (quiz.isQuizFinished()) {
+            closeSheet(id);
+            if (results != null)
+                saveResult(quiz.getStudent());
+        }
+    }
+
+    // call with the quiz lock held
+    private void arm(String id, Quiz quiz) {
+        if (timing != null && !replaying)
+            timing.arm(id, quiz);
+    }
+
+    public String getResults(String id) {
+        Quiz quiz = getSession(id);
+        synchronized (quiz) {
+            return ResultReport.build(quiz.getStudent());
+        }
+    }
+
+    public CohortStats getCohortStats() {
+        return cohort;
+    }
+
+    // live ranking of every session started, including ended ones
+
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    private void closeSheet(String id) {
+        ItemAnalysis.Sheet sheet = sheets.remove(id);
+        if (sheet != null) {
+            synchronized (items) {
+                items.addSheet(sheet);
+            }
+        }
+    }
+
+    // copy of the live item analysis; discrimination only covers the sheets of
+    // finished or ended sessions
+
+    public ItemAnalysis getItemAnalysis() {
+        ItemAnalysis all;
+        synchronized (items) {
+            all = items.copy();
+        }
+        answerCounts.addTo(all);
+        return all;
+    }
+
+    public void writeItemReport(Writer out) throws IOException {
+        getItemAnalysis().writeCsv(out, shape, plan);
+    }
+
+    // keyword search over the bank (see SearchIndex for the query syntax).
+    // Only the first search builds the index; after that queries take no lock
+    // and run side by side, as nothing changes the index once it is published
+
+    public String search(String query, int limit) {
+        SearchIndex index = search;
+        if (index == null) {
+            synchronized (searchBuild) {
+                index = search;
+                if (index == null)
+                    search = index = SearchIndex.of(shape);
+            }
+        }
+        return index.toReport(index.search(query, limit));
+    }
+
+    private void saveResult(Student student) {
+        try {
+            results.put(student);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // result text of a finished quiz kept in the ResultStore, also after a
+    // restart; throws IllegalArgumentException when there is none
+
+    public String getStoredResults(String email) {
+        Student student = results == null || email == null ? null : results.load(email, shape);
+        if (student == null)
+            throw new IllegalArgumentException("No stored result for: " + email);
+        return ResultReport.build(student);
+    }
+
+    // the session leaves the map first, then the quiz lock is taken: an answer
+    // already holding it is finished (and logged) before the sheet is closed
+    // and END is written, one still waiting finds the session gone
+
+    public Quiz endSession(String id) {
+        Quiz quiz = sessions.remove(id);
+        if (quiz == null)
+            return null;
+        long ticket = 0;
+        synchronized (quiz) {
+            closeSheet(id);
+            if (timing != null)
+                timing.stop(id);
+            if (journal != null) {
+                try {
+                    ticket = journal.appendEnd(Long.parseLong(id, 36));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        if (journal != null)
+            awaitDurable(ticket);
+        return quiz;
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    // journal errors are unchecked so the session API keeps its simple shape;
+    // the caller must not treat the call as done when one is thrown
+
+    private long appendStart(long session, String name, String email, int age) {
+        try {
+            return journal.appendStart(session, name, email, age);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long appendAnswer(long session, int selected, int confidenceValue, int spentMillis) {
+        try {
+            return journal.appendAnswer(session, selected, confidenceValue, spentMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long appendTimeout(long session, int end, int spentMillis) {
+        try {
+            return journal.appendTimeout(session, end, spentMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitDurable(long ticket) {
+        try {
+            journal.awaitDurable(ticket);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (timing != null)
+            timing.close();
+        if (results != null)
+            results.close();
+        if (journal != null)
+            journal.close();
+    }
+}
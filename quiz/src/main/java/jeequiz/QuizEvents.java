@@ -0,0 +1,71 @@
+package jeequiz;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// QuizEvents : custom Java Flight Recorder events for the hot paths.
+// In a recording they sit on the same timeline as GC pauses, safepoints and
+// thread states, so a slow answer or a slow repaint on the event-dispatch
+// thread can be matched with what the JVM was doing at that moment.
+// Start a recording with: java -XX:StartFlightRecording=filename=quiz.jfr ...
+//
+// Callers check isEnabled() on the static EventType first, so no event object
+// is created while no recording is running.
+
+class QuizEvents {
+
+    static final EventType SUBMIT_ANSWER = EventType.getEventType(SubmitAnswer.class);
+    static final EventType DISPLAY_QUESTION = EventType.getEventType(DisplayQuestion.class);
+    static final EventType BANK_LOAD = EventType.getEventType(BankLoad.class);
+    static final EventType RESULT_REPORT = EventType.getEventType(BuildReport.class);
+
+    @Name("jeequiz.SubmitAnswer")
+    @Label("Submit Answer")
+    @Category("JEE Quiz")
+    @Description("Quiz.submitAnswer for one answer")
+    static class SubmitAnswer extends Event {
+        @Label("Subject")
+        int subject;
+        @Label("Subtopic")
+        int subtopic;
+        @Label("Question")
+        int question;
+        @Label("Selected")
+        int selected;
+        @Label("Confidence")
+        int confidence;
+    }
+
+    @Name("jeequiz.DisplayQuestion")
+    @Label("Display Question")
+    @Category("JEE Quiz")
+    @Description("Rendering of one question in the Swing GUI (runs on the event-dispatch thread)")
+    static class DisplayQuestion extends Event {
+        @Label("Position")
+        int position;
+    }
+
+    @Name("jeequiz.BankLoad")
+    @Label("Bank Load")
+    @Category("JEE Quiz")
+    @Description("Loading a question bank into the shared bank cache")
+    static class BankLoad extends Event {
+        @Label("Bank")
+        String bank;
+        @Label("Questions")
+        int questions;
+    }
+
+    @Name("jeequiz.ResultReport")
+    @Label("Result Report")
+    @Category("JEE Quiz")
+    @Description("Building the final result report of one student")
+    static class BuildReport extends Event {
+        @Label("Subjects")
+        int subjects;
+    }
+}
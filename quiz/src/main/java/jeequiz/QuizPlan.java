@@ -0,0 +1,127 @@
+package jeequiz;
+
+import java.util.List;
+
+// QuizPlan : this class is the quiz structure compiled into flat arrays.
+// Every question of every subtopic of every subject gets one position
+// 0..size()-1 in quiz order, and for each position the plan stores the subject,
+// subtopic and question index and the question itself. A quiz then only needs
+// one int cursor: moving to the next question, jumping anywhere or counting
+// progress are plain array reads with no walking of nested lists.
+//
+// A plan is immutable; it reflects the subjects at the time compile() ran.
+
+class QuizPlan {
+
+    private final MCQQuestion[] questions;
+    private final int[] subjectOf, subtopicOf, questionOf;
+    private final int[] subtopicStart; // first position of the subtopic at each position
+    private final int[] subtopicSize;
+
+    private QuizPlan(int n) {
+        questions = new MCQQuestion[n];
+        subjectOf = new int[n];
+        subtopicOf = new int[n];
+        questionOf = new int[n];
+        subtopicStart = new int[n];
+        subtopicSize = new int[n];
+    }
+
+    public static QuizPlan compile(List<Subject> subjects) {
+        int[][] sizes = new int[subjects.size()][];
+        for (int s = 0; s < sizes.length; s++) {
+            List<Subtopic> subtopics = subjects.get(s).getSubtopics();
+            sizes[s] = new int[subtopics.size()];
+            for (int t = 0; t < sizes[s].length; t++)
+                sizes[s][t] = subtopics.get(t).getQuestions().size();
+        }
+        QuizPlan plan = compileShape(sizes);
+        int pos = 0;
+        for (Subject subj : subjects)
+            for (Subtopic st : subj.getSubtopics())
+                for (MCQQuestion q : st.getQuestions())
+                    plan.questions[pos++] = q;
+        return plan;
+    }
+
+    // compiles the positions from the subtopic sizes alone (sizes[s][t] is the
+    // number of questions of subtopic t of subject s); getQuestion() returns
+    // null on such a plan, the questions come from the subtopics once their
+    // subject is loaded (see LazyBank)
+
+    public static QuizPlan compileShape(int[][] sizes) {
+        int n = 0;
+        for (int[] subject : sizes)
+            for (int size : subject)
+                n += size;
+        QuizPlan plan = new QuizPlan(n);
+        int pos = 0;
+        for (int s = 0; s < sizes.length; s++) {
+            for (int t = 0; t < sizes[s].length; t++) {
+                int start = pos;
+                for (int q = 0; q < sizes[s][t]; q++, pos++) {
+                    plan.subjectOf[pos] = s;
+                    plan.subtopicOf[pos] = t;
+                    plan.questionOf[pos] = q;
+                    plan.subtopicStart[pos] = start;
+                    plan.subtopicSize[pos] = sizes[s][t];
+                }
+            }
+        }
+        return plan;
+    }
+
+    public int size() {
+        return questions.length;
+    }
+
+    public MCQQuestion getQuestion(int pos) {
+        return questions[pos];
+    }
+
+    public int getSubjectIndex(int pos) {
+        return subjectOf[pos];
+    }
+
+    public int getSubtopicIndex(int pos) {
+        return subtopicOf[pos];
+    }
+
+    public int getQuestionIndex(int pos) {
+        return questionOf[pos];
+    }
+
+    // number of questions in the subtopic that holds this position
+
+    public int getSubtopicSize(int pos) {
+        return subtopicSize[pos];
+    }
+
+    // hash of the shape (subjects and subtopic sizes), to check that saved
+    // positions belong to the same bank
+
+    public long getShapeHash() {
+        long h = size();
+        for (int pos = 0; pos < size(); pos += subtopicSize[pos]) {
+            h = h * 0x9E3779B97F4A7C15L + subjectOf[pos];
+            h = h * 0x9E3779B97F4A7C15L + subtopicSize[pos];
+        }
+        return h ^ (h >>> 29);
+    }
+
+    // first position after the subject that holds this position
+
+    public int getSubjectEnd(int pos) {
+        int subject = subjectOf[pos];
+        int end = subtopicStart[pos];
+        while (end < size() && subjectOf[end] == subject)
+            end += subtopicSize[end];
+        return end;
+    }
+
+    // first position of the subtopic that holds this position
+
+    public int getSubtopicStart(int pos) {
+        return subtopicStart[pos];
+    }
+}
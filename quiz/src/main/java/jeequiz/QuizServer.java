@@ -0,0 +1,329 @@
+package jeequiz;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// QuizServer : this class exposes a QuizEngine over a small local HTTP API so
+// that many students can take the quiz at the same time without the Swing GUI.
+//
+// GET  /start?name=..&email=..&age=..       -> session id
+// GET  /question?session=..                 -> current question (key=value lines)
+// POST /answer?session=..&option=..&confidence=1..3
+//      option is 0..3, displayed options joined by '+' for a multiple answer
+//      question (e.g. 0+2) or an integer for a numeric one (see /question type=)
+// GET  /results?session=..                  -> final result text
+// GET  /end?session=..                      -> ends the session (it stays on the boards)
+// GET  /cohort                              -> live averages for the whole cohort
+// GET  /leaderboard?board=overall|subject&k=10 -> top k students of a board
+// GET  /rank?session=..                     -> rank and percentile on every board
+// GET  /student?email=..                    -> stored result of a finished quiz
+// GET  /items                               -> item analysis of every question (CSV)
+// GET  /search?q=..&limit=20                -> questions whose text matches q
+// GET  /snapshot?session=..                 -> the session as a SessionSnapshot
+// POST /resume  (body: a snapshot)          -> id of the session continued here
+// GET  /metrics                             -> latency histograms and counters (Prometheus)
+//
+// Requests are handled on virtual threads when the JVM supports them (Java 21+)
+// and on a cached thread pool otherwise.
+
+public class QuizServer {
+
+    private final QuizEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public QuizServer(QuizEngine engine, int port) throws IOException {
+        this.engine = engine;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/start", this::handleStart);
+        server.createContext("/question", this::handleQuestion);
+        server.createContext("/answer", this::handleAnswer);
+        server.createContext("/results", this::handleResults);
+        server.createContext("/end", this::handleEnd);
+        server.createContext("/cohort", this::handleCohort);
+        server.createContext("/leaderboard", this::handleLeaderboard);
+        server.createContext("/rank", this::handleRank);
+        server.createContext("/items", this::handleItems);
+        server.createContext("/student", this::handleStudent);
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/snapshot", this::handleSnapshot);
+        server.createContext("/resume", this::handleResume);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor only exists from Java 21, so it
+    // is looked up by reflection to keep the code compiling on older JDKs
+
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleStart(HttpExchange ex) throws IOException {
+        Map<String, String> p = params(ex);
+        try {
+            int age = Integer.parseInt(p.getOrDefault("age", "").trim());
+            send(ex, 200, engine.startSession(p.get("name"), p.get("email"), age) + "\n");
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, "Invalid input: provide valid name, age (integer) and email.\n");
+        } catch (UncheckedIOException e) {
+            send(ex, 500, "Session could not be saved\n");
+        }
+    }
+
+    private void handleQuestion(HttpExchange ex) throws IOException {
+        Map<String, String> p = params(ex);
+        try {
+            Quiz quiz = engine.getSession(p.get("session"));
+            StringBuilder sb = new StringBuilder();
+            synchronized (quiz) {
+                MCQQuestion q = quiz.getCurrentQuestion();
+                if (q == null) {
+                    send(ex, 200, "finished=true\n");
+                    return;
+                }
+                sb.append("subject=").append(quiz.currentSubject.getName()).append('\n');
+                sb.append("subtopic=").append(quiz.currentSubtopic.getName()).append('\n');
+                sb.append("number=").append(quiz.getNumberInSubtopic()).append('/')
+                        .append(quiz.currentQuestions.size()).append('\n');
+                sb.append("type=").append(ScoringRules.typeName(q.getType())).append('\n');
+                sb.append("text=").append(q.getText()).append('\n');
+                int place = quiz.getPosition();
+                for (int i = 0; q.getType() != ScoringRules.NUMERIC && i < q.getOptionCount(); i++)
+                    sb.append("option").append(i).append('=').append(quiz.getOption(place, i)).append('\n');
+            }
+            send(ex, 200, sb.toString());
+        } catch (IllegalArgumentException e) {
+            send(ex, 404, e.getMessage() + "\n");
+        }
+    }
+
+    private void handleAnswer(HttpExchange ex) throws IOException {
+        if (!"POST".equals(ex.getRequestMethod())) {
+            send(ex, 405, "Use POST\n");
+            return;
+        }
+        Map<String, String> p = params(ex);
+        try {
+            MCQQuestion q = engine.getCurrentQuestion(p.get("session"));
+            if (q == null) {
+                send(ex, 409, "finished\n");
+                return;
+            }
+            // an unescaped '+' of the query arrives as a space
+            String answer = p.getOrDefault("option", "").replace(' ', '+');
+            int option = QuestionBankLoader.parseAnswer(answer, q.getType());
+            int confidence = Integer.parseInt(p.getOrDefault("confidence", ""));
+            boolean accepted = engine.submitAnswer(p.get("session"), option, confidence);
+            send(ex, accepted ? 200 : 409, accepted ? "ok\n" : "finished\n");
+        } catch (IllegalArgumentException e) {
+            send(ex, 400, e.getMessage() + "\n");
+        } catch (UncheckedIOException e) {
+            send(ex, 500, "Answer could not be saved\n");
+        }
+    }
+
+    private void handleResults(HttpExchange ex) throws IOException {
+        try {
+            send(ex, 200, engine.getResults(params(ex).get("session")));
+        } catch (IllegalArgumentException e) {
+            send(ex, 404, e.getMessage() + "\n");
+        }
+    }
+
+    private void handleEnd(HttpExchange ex) throws IOException {
+        String id = params(ex).get("session");
+        try {
+            if (id == null || engine.endSession(id) == null) {
+                send(ex, 404, "Unknown session: " + id + "\n");
+                return;
+            }
+            send(ex, 200, "ended\n");
+        } catch (UncheckedIOException e) {
+            send(ex, 500, "End could not be saved\n");
+        }
+    }
+
+    private void handleCohort(HttpExchange ex) throws IOException {
+        send(ex, 200, engine.getCohortStats().snapshot().toReport());
+    }
+
+    private void handleLeaderboard(HttpExchange ex) throws IOException {
+        Map<String, String> p = params(ex);
+        Leaderboard.Board board = engine.getLeaderboard().getBoard(p.get("board"));
+        if (board == null) {
+            send(ex, 404, "Unknown board: " + p.get("board") + "\n");
+            return;
+        }
+        try {
+            int k = Integer.parseInt(p.getOrDefault("k", "10"));
+            if (k < 1 || k > 1000)
+                throw new NumberFormatException();
+            send(ex, 200, board.toReport(k));
+        } catch (NumberFormatException e) {
+            send(ex, 400, "k must be between 1 and 1000\n");
+        }
+    }
+
+    private void handleRank(HttpExchange ex) throws IOException {
+        String id = params(ex).get("session");
+        Leaderboard lb = engine.getLeaderboard();
+        if (id == null || lb.getOverall().get(id) == null) {
+            send(ex, 404, "Unknown session: " + id + "\n");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int s = -1; s < lb.getSubjectCount(); s++) {
+            Leaderboard.Board b = s < 0 ? lb.getOverall() : lb.getSubject(s);
+            sb.append(b.getName()).append(": score=").append(b.get(id).getScore()).append(" rank=")
+                    .append(b.getRank(id)).append('/').append(b.size()).append(" percentile=")
+                    .append(String.format("%.1f", b.getPercentile(id))).append('\n');
+        }
+        send(ex, 200, sb.toString());
+    }
+
+    private void handleStudent(HttpExchange ex) throws IOException {
+        try {
+            send(ex, 200, engine.getStoredResults(params(ex).get("email")));
+        } catch (IllegalArgumentException e) {
+            send(ex, 404, e.getMessage() + "\n");
+        }
+    }
+
+    private void handleSnapshot(HttpExchange ex) throws IOException {
+        byte[] snapshot;
+        try {
+            snapshot = engine.snapshot(params(ex).get("session"));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            send(ex, 404, e.getMessage() + "\n");
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        ex.sendResponseHeaders(200, snapshot.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(snapshot);
+        }
+    }
+
+    // body: a snapshot from /snapshot; answers the new session id
+    private void handleResume(HttpExchange ex) throws IOException {
+        if (!"POST".equals(ex.getRequestMethod())) {
+            send(ex, 405, "Use POST\n");
+            return;
+        }
+        byte[] body;
+        try (InputStream in = ex.getRequestBody()) {
+            body = in.readNBytes(AnswerJournal.MAX_SNAPSHOT + 1);
+        }
+        try {
+            if (body.length > AnswerJournal.MAX_SNAPSHOT)
+                throw new IOException("Snapshot too large");
+            send(ex, 200, engine.resumeSession(body) + "\n");
+        } catch (IOException | IllegalArgumentException e) {
+            send(ex, 400, "Invalid snapshot: " + e.getMessage() + "\n");
+        } catch (UncheckedIOException e) {
+            send(ex, 500, "Session could not be saved\n");
+        }
+    }
+
+    private void handleSearch(HttpExchange ex) throws IOException {
+        Map<String, String> p = params(ex);
+        String q = p.get("q");
+        if (q == null || q.isBlank()) {
+            send(ex, 400, "Missing q\n");
+            return;
+        }
+        try {
+            int limit = Integer.parseInt(p.getOrDefault("limit", "20"));
+            if (limit < 1 || limit > 1000)
+                throw new NumberFormatException();
+            send(ex, 200, engine.search(q, limit));
+        } catch (NumberFormatException e) {
+            send(ex, 400, "limit must be between 1 and 1000\n");
+        }
+    }
+
+    private void handleItems(HttpExchange ex) throws IOException {
+        StringWriter out = new StringWriter(8192);
+        engine.writeItemReport(out);
+        send(ex, 200, out.toString());
+    }
+
+    private void handleMetrics(HttpExchange ex) throws IOException {
+        StringBuilder sb = new StringBuilder(8192);
+        Metrics.writePrometheus(sb);
+        send(ex, 200, sb.toString());
+    }
+
+    static Map<String, String> params(HttpExchange ex) {
+        Map<String, String> map = new HashMap<>();
+        String query = ex.getRequestURI().getRawQuery();
+        if (query == null)
+            return map;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0)
+                continue;
+            map.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return map;
+    }
+
+    static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    // Main method to launch the headless server (default port 8080)
+    // optional further arguments are a compiled question bank file ("-" for the
+    // demo questions), an answer journal file and a result store file ("-" for none)
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        BinaryBank bank = args.length > 1 && !args[1].equals("-") ? BinaryBank.open(Paths.get(args[1])) : null;
+        Path journal = args.length > 2 && !args[2].equals("-") ? Paths.get(args[2]) : null;
+        Path results = args.length > 3 && !args[3].equals("-") ? Paths.get(args[3]) : null;
+        QuizEngine engine = journal != null || results != null ? new QuizEngine(bank, journal, results)
+                : new QuizEngine(bank);
+        QuizServer server = new QuizServer(engine, port);
+        server.start();
+        Metrics.startFileExport();
+        System.out.println("JEE Confidence Quiz server listening on http://127.0.0.1:" + server.getPort());
+    }
+}
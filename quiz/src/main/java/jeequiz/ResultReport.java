@@ -0,0 +1,61 @@
+package jeequiz;
+
+// ResultReport : this class builds the final result text for a student. It is
+// shared by the Swing result dialog and the headless quiz engine.
+// A subtopic whose confidence is clearly off (see Calibration) gets feedback
+// on that instead of the fixed confidence thresholds.
+
+class ResultReport {
+
+    // feedback bands by confidence percentage, see band()
+    static final String[] BANDS = { "work_harder", "revise", "good_to_go" };
+    static final String[] FEEDBACK = { "Work harder!", "Revise concepts.", "You are good to go!" };
+
+    // 2 from 75%, 1 from 50%, else 0
+
+    static int band(double confidencePercentage) {
+        return confidencePercentage >= 75 ? 2 : confidencePercentage >= 50 ? 1 : 0;
+    }
+
+    public static String build(Student student) {
+        long start = System.nanoTime();
+        QuizEvents.BuildReport event = null;
+        if (QuizEvents.RESULT_REPORT.isEnabled()) {
+            event = new QuizEvents.BuildReport();
+            event.begin();
+            event.subjects = student.getSubjects().size();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("******** FINAL RESULT ********\nTotal Score: " + student.getTotalScore() + "\n");
+        Calibration overall = student.getCalibration();
+        if (overall.getAnswers() > 0)
+            sb.append("Calibration: " + overall.toSummary()
+                    + String.format(", confidence gap %+.0f%%", overall.getConfidenceGap() * 100) + "\n");
+        sb.append("\n");
+        for (Subject subj : student.getSubjects()) {
+            sb.append(subj.getName() + ": " + subj.getTotalScore() + "\n");
+            for (Subtopic st : subj.getSubtopics()) {
+                sb.append("  " + st.getName() + " Score:" + st.getScore() + " Conf:"
+                        + String.format("%.2f", st.getConfidencePercentage()) + "%\n");
+                if (st.getTimedQuestions() > 0)
+                    sb.append(String.format("    Time: %.1fs, %.1fs per question", st.getTimeMillis() / 1000.0,
+                            st.getTimeMillis() / 1000.0 / st.getTimedQuestions())
+                            + (st.getTimedOut() > 0 ? ", " + st.getTimedOut() + " timed out" : "") + "\n");
+                Calibration c = st.getCalibration();
+                if (c.getAnswers() > 0)
+                    sb.append("    Calibration: " + c.toSummary() + "\n");
+                String calibrationFeedback = c.getFeedback();
+                if (calibrationFeedback != null)
+                    sb.append("    Feedback: " + calibrationFeedback + "\n");
+                else
+                    sb.append("    Feedback: " + FEEDBACK[band(st.getConfidencePercentage())] + "\n");
+            }
+            sb.append("\n");
+        }
+        String report = sb.toString();
+        if (event != null)
+            event.commit();
+        Metrics.RESULT_REPORT.recordSince(start);
+        return report;
+    }
+}
@@ -0,0 +1,476 @@
+package jeequiz;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+// ResultStore : this class keeps the final scores of students in a file so
+// they survive the process, one fixed size record per student keyed by email.
+//
+// The file is memory-mapped and the record data never lives on the Java heap:
+// the records themselves form an open addressing hash table (linear probing
+// on a 64 bit hash of the email), so a lookup or update touches one or two
+// records in place. The table doubles, into a new file that replaces the old
+// one, when it is 70% full. Files above 1 GB are mapped in 1 GB segments with
+// no record crossing a segment, so millions of students fit.
+//
+// Every record carries a CRC32C. With syncEachWrite the changed record is
+// forced to disk before put() returns; otherwise sync() does it for all. A
+// record torn by a crash fails its checksum and reads as missing.
+//
+// File layout (big endian):
+// header : magic, version, subtopics, recordSize, capacity, count (6 ints)
+// record : hash (long, 0 = free), crc (int), age (int), totalScore (int),
+//          email length (short), name length (short), updated (long, millis),
+//          email (96 bytes), name (64 bytes),
+//          score, totalConfidence, totalMaxConfidence (int) per subtopic
+// subtopics are numbered in bank order across all subjects
+
+class ResultStore implements Closeable {
+
+    static final int MAGIC = 0x4A454552; // "JEER"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int EMAIL_BYTES = 96, NAME_BYTES = 64;
+    static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int SEGMENT_BYTES = 1 << 30;
+    private static final int FIXED_SIZE = 32 + EMAIL_BYTES + NAME_BYTES;
+
+    private final Path file;
+    private final int subtopics, recordSize, perSegment;
+    private final boolean syncEachWrite;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+    private int capacity, count;
+
+    private ResultStore(Path file, int subtopics, boolean syncEachWrite) {
+        this.file = file;
+        this.subtopics = subtopics;
+        this.syncEachWrite = syncEachWrite;
+        recordSize = FIXED_SIZE + 12 * subtopics;
+        perSegment = SEGMENT_BYTES / recordSize;
+    }
+
+    // opens the store, creating it when the file does not exist; subtopics is
+    // the number of subtopics of the bank and must match an existing file
+
+    public static ResultStore open(Path file, int subtopics, boolean syncEachWrite) throws IOException {
+        ResultStore store = new ResultStore(file, subtopics, syncEachWrite);
+        if (!Files.exists(file) || Files.size(file) == 0)
+            create(file, subtopics, store.recordSize, INITIAL_CAPACITY);
+        store.map();
+        return store;
+    }
+
+    private static void create(Path file, int subtopics, int recordSize, int capacity) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE);
+            h.putInt(MAGIC).putInt(VERSION).putInt(subtopics).putInt(recordSize).putInt(capacity).putInt(0);
+            h.clear();
+            ch.write(h, 0);
+            // sparse: unwritten records read as zero, i.e. free
+            ch.write(ByteBuffer.allocate(1), HEADER_SIZE + (long) capacity * recordSize - 1);
+            ch.force(true);
+        }
+    }
+
+    private void map() throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a result store: " + file);
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported result store version");
+            if (header.getInt(8) != subtopics || header.getInt(12) != recordSize)
+                throw new IOException("Result store was made for " + header.getInt(8) + " subtopics, not "
+                        + subtopics);
+            capacity = header.getInt(16);
+            count = header.getInt(20);
+            if (ch.size() < HEADER_SIZE + (long) capacity * recordSize)
+                throw new IOException("Result store file is truncated");
+            segments = new MappedByteBuffer[(capacity + perSegment - 1) / perSegment];
+            for (int i = 0; i < segments.length; i++) {
+                int records = Math.min(perSegment, capacity - i * perSegment);
+                segments[i] = ch.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER_SIZE + (long) i * perSegment * recordSize, (long) records * recordSize);
+            }
+        }
+    }
+
+    private ByteBuffer segment(int slot) {
+        return segments[slot / perSegment];
+    }
+
+    private int offset(int slot) {
+        return (slot % perSegment) * recordSize;
+    }
+
+    static long hash(byte[] email) {
+        long h = 0xcbf29ce484222325L; // FNV-1a, then a final mix
+        for (byte b : email)
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    // slot holding the email, or -(free slot + 1) where it would go
+
+    private int find(byte[] email, long h) {
+        int mask = capacity - 1;
+        for (int slot = (int) h & mask;; slot = (slot + 1) & mask) {
+            ByteBuffer seg = segment(slot);
+            int off = offset(slot);
+            long stored = seg.getLong(off);
+            if (stored == 0)
+                return -(slot + 1);
+            if (stored == h && seg.getShort(off + 20) == email.length && sameBytes(seg, off + 32, email))
+                return slot;
+        }
+    }
+
+    private static boolean sameBytes(ByteBuffer seg, int pos, byte[] b) {
+        for (int i = 0; i < b.length; i++)
+            if (seg.get(pos + i) != b[i])
+                return false;
+        return true;
+    }
+
+    private static byte[] emailBytes(String email) {
+        byte[] b = email.trim().toLowerCase().getBytes(StandardCharsets.UTF_8);
+        if (b.length == 0 || b.length > EMAIL_BYTES)
+            throw new IllegalArgumentException("Email must be 1 to " + EMAIL_BYTES + " bytes");
+        return b;
+    }
+
+    // writes the student's current scores, replacing an earlier record
+    // the student must hold the bank the store was opened for
+
+    public void put(Student student) throws IOException {
+        byte[] email = emailBytes(student.getEmail());
+        byte[] name = truncate(student.getName().getBytes(StandardCharsets.UTF_8), NAME_BYTES);
+        long h = hash(email);
+        lock.writeLock().lock();
+        try {
+            int slot = find(email, h);
+            if (slot < 0) {
+                if ((count + 1) * 10L > capacity * 7L) {
+                    grow();
+                    slot = find(email, h);
+                }
+                slot = -slot - 1;
+                count++;
+                header.putInt(20, count);
+            }
+            ByteBuffer seg = segment(slot);
+            int off = offset(slot);
+            seg.putInt(off + 12, student.getAge());
+            seg.putInt(off + 16, student.getTotalScore());
+            seg.putShort(off + 20, (short) email.length);
+            seg.putShort(off + 22, (short) name.length);
+            seg.putLong(off + 24, System.currentTimeMillis());
+            seg.put(off + 32, email);
+            seg.put(off + 32 + EMAIL_BYTES, name);
+            int pos = off + FIXED_SIZE, t = 0;
+            for (Subject subj : student.getSubjects()) {
+                for (Subtopic st : subj.getSubtopics()) {
+                    if (t++ == subtopics)
+                        throw new IllegalArgumentException("Student has more subtopics than the store");
+                    seg.putInt(pos, st.getScore());
+                    seg.putInt(pos + 4, st.getTotalConfidence());
+                    seg.putInt(pos + 8, st.getTotalMaxConfidence());
+                    pos += 12;
+                }
+            }
+            seg.putLong(off, h);
+            seg.putInt(off + 8, checksum(seg, off));
+            if (syncEachWrite) {
+                ((MappedByteBuffer) seg).force(off, recordSize);
+                header.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static byte[] truncate(byte[] b, int max) {
+        if (b.length <= max)
+            return b;
+        int end = max;
+        while (end > 0 && (b[end] & 0xC0) == 0x80) // do not cut a UTF-8 character
+            end--;
+        byte[] t = new byte[end];
+        System.arraycopy(b, 0, t, 0, end);
+        return t;
+    }
+
+    private int checksum(ByteBuffer seg, int off) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer rec = seg.duplicate();
+        rec.limit(off + recordSize).position(off);
+        rec.limit(off + 8);
+        crc.update(rec);
+        rec.limit(off + recordSize).position(off + 12);
+        crc.update(rec);
+        return (int) crc.getValue();
+    }
+
+    private void grow() throws IOException {
+        Path next = file.resolveSibling(file.getFileName() + ".grow");
+        int newCapacity = capacity * 2;
+        create(next, subtopics, recordSize, newCapacity);
+        ResultStore bigger = new ResultStore(next, subtopics, false);
+        bigger.map();
+        byte[] rec = new byte[recordSize];
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            ByteBuffer seg = segment(slot);
+            int off = offset(slot);
+            long h = seg.getLong(off);
+            if (h == 0)
+                continue;
+            seg.get(off, rec);
+            int to = (int) h & mask;
+            while (bigger.segment(to).getLong(bigger.offset(to)) != 0)
+                to = (to + 1) & mask;
+            bigger.segment(to).put(bigger.offset(to), rec);
+        }
+        bigger.header.putInt(20, count);
+        bigger.sync();
+        Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        header = bigger.header;
+        segments = bigger.segments;
+        capacity = newCapacity;
+    }
+
+    // slot of the email's valid record, or -1
+
+    private int lookup(String email) {
+        byte[] e;
+        try {
+            e = emailBytes(email);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+        int slot = find(e, hash(e));
+        if (slot < 0)
+            return -1;
+        ByteBuffer seg = segment(slot);
+        return seg.getInt(offset(slot) + 8) == checksum(seg, offset(slot)) ? slot : -1;
+    }
+
+    public boolean contains(String email) {
+        lock.readLock().lock();
+        try {
+            return lookup(email) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // total score of the student, or Integer.MIN_VALUE when not stored
+
+    public int getTotalScore(String email) {
+        lock.readLock().lock();
+        try {
+            int slot = lookup(email);
+            return slot < 0 ? Integer.MIN_VALUE : segment(slot).getInt(offset(slot) + 16);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSubtopicScore(String email, int subtopic) {
+        lock.readLock().lock();
+        try {
+            int slot = lookup(email);
+            return slot < 0 ? Integer.MIN_VALUE : segment(slot).getInt(offset(slot) + FIXED_SIZE + 12 * subtopic);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // rebuilds a Student with its scores from the record; shape gives the
+    // subjects and subtopics (e.g. the bank's), only the names are used
+    // returns null when the email is not stored
+
+    public Student load(String email, List<Subject> shape) {
+        lock.readLock().lock();
+        try {
+            int slot = lookup(email);
+            if (slot < 0)
+                return null;
+            ByteBuffer seg = segment(slot);
+            int off = offset(slot);
+            byte[] e = new byte[seg.getShort(off + 20)], n = new byte[seg.getShort(off + 22)];
+            seg.get(off + 32, e);
+            seg.get(off + 32 + EMAIL_BYTES, n);
+            Student student = new Student(new String(n, StandardCharsets.UTF_8), new String(e, StandardCharsets.UTF_8),
+                    seg.getInt(off + 12));
+            student.addScore(seg.getInt(off + 16));
+            int pos = off + FIXED_SIZE;
+            for (Subject subj : shape) {
+                Subject copy = new Subject(subj.getName());
+                for (Subtopic st : subj.getSubtopics()) {
+                    Subtopic t = new Subtopic(st.getName());
+                    t.restore(seg.getInt(pos), seg.getInt(pos + 4), seg.getInt(pos + 8));
+                    copy.addSubtopic(t);
+                    pos += 12;
+                }
+                student.addSubject(copy);
+            }
+            return student;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Record : a reusable copy of one stored record, filled by read() so a
+    // scan over the whole store allocates nothing per student
+
+    static class Record {
+        final byte[] raw, email = new byte[EMAIL_BYTES], name = new byte[NAME_BYTES];
+        final int[] score, totalConfidence, totalMaxConfidence;
+        int emailLength, nameLength, age, totalScore;
+        long updated;
+        int capacity; // of the store at the read; a grow moves every slot
+        private final CRC32C crc = new CRC32C();
+        private final ByteBuffer view;
+
+        Record(int recordSize, int subtopics) {
+            raw = new byte[recordSize];
+            view = ByteBuffer.wrap(raw);
+            score = new int[subtopics];
+            totalConfidence = new int[subtopics];
+            totalMaxConfidence = new int[subtopics];
+        }
+    }
+
+    public Record newRecord() {
+        return new Record(recordSize, subtopics);
+    }
+
+    public int getSubtopicCount() {
+        return subtopics;
+    }
+
+    // copies the record in the slot (0..getCapacity()-1) into r; false when the
+    // slot is free or its record is torn
+
+    public boolean read(int slot, Record r) {
+        ByteBuffer rec = r.view;
+        lock.readLock().lock();
+        try {
+            if (slot < 0 || slot >= capacity)
+                throw new IndexOutOfBoundsException("Slot " + slot + " of " + capacity);
+            r.capacity = capacity;
+            ByteBuffer seg = segment(slot);
+            int off = offset(slot);
+            if (seg.getLong(off) == 0)
+                return false;
+            seg.get(off, r.raw);
+        } finally {
+            lock.readLock().unlock();
+        }
+        r.crc.reset();
+        r.crc.update(r.raw, 0, 8);
+        r.crc.update(r.raw, 12, recordSize - 12);
+        if ((int) r.crc.getValue() != rec.getInt(8))
+            return false;
+        r.age = rec.getInt(12);
+        r.totalScore = rec.getInt(16);
+        r.emailLength = rec.getShort(20);
+        r.nameLength = rec.getShort(22);
+        r.updated = rec.getLong(24);
+        System.arraycopy(r.raw, 32, r.email, 0, r.emailLength);
+        System.arraycopy(r.raw, 32 + EMAIL_BYTES, r.name, 0, r.nameLength);
+        for (int t = 0, pos = FIXED_SIZE; t < subtopics; t++, pos += 12) {
+            r.score[t] = rec.getInt(pos);
+            r.totalConfidence[t] = rec.getInt(pos + 4);
+            r.totalMaxConfidence[t] = rec.getInt(pos + 8);
+        }
+        return true;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCapacity() {
+        lock.readLock().lock();
+        try {
+            return capacity;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // forces every record to disk
+
+    public void sync() {
+        lock.readLock().lock();
+        try {
+            for (MappedByteBuffer seg : segments)
+                seg.force();
+            header.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    // Main method for a quick load test: java jeequiz.ResultStore file [students]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java jeequiz.ResultStore <file> [students]");
+            return;
+        }
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Student shape = new Student("shape", "shape", 0);
+        QuestionBank.loadDefault(shape);
+        int subtopicCount = 0;
+        for (Subject s : shape.getSubjects())
+            subtopicCount += s.getSubtopics().size();
+        try (ResultStore store = open(Paths.get(args[0]), subtopicCount, false)) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                Student st = new Student("Student " + i, "student" + i + "@example.com", 17);
+                BankCache.shared().get("default", QuestionBank::loadDefault).addTo(st);
+                st.addScore(i % 100);
+                store.put(st);
+            }
+            store.sync();
+            long t1 = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < n; i++)
+                sum += store.getTotalScore("student" + i + "@example.com");
+            long t2 = System.nanoTime();
+            System.out.println(n + " students: put " + String.format("%.0f", n / ((t1 - t0) / 1e9)) + "/s, get "
+                    + String.format("%.0f", n / ((t2 - t1) / 1e9)) + "/s, capacity " + store.getCapacity()
+                    + ", file " + (Files.size(Paths.get(args[0])) >> 20) + " MB, checksum " + sum);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package jeequiz;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// ScoringRules : this class holds the marking scheme of a paper: one Rule for
+// the whole paper plus optional Rules for single subjects (sections).
+//
+// A Rule is compiled once into a table of marks indexed by the question type,
+// the outcome of an answer and its confidence, so marking an answer is one
+// outcome test and one array read, with no allocation and no branching on
+// the question type. Column 0 of the table is the unweighted mark (the
+// subtopic score), columns 1-3 are the mark times the confidence (the
+// student total).
+//
+// Question types, their keys and selections (see Question.getCorrectAnswer):
+// - single   : one correct option index; correct or wrong
+// - numeric  : one correct integer value (an exact match); correct or wrong
+// - multiple : correct options as a bit mask (bit i is option i); all of
+//              them (correct), any wrong one (wrong), or only some right ones
+//              (partial, one step per right option)
+// Every answer is one of these; a question left open is never marked (see
+// Quiz.timeOut), so there is no unanswered outcome.
+//
+// Spec syntax (-Djeequiz.scoring): a rule for the paper, then optional
+// "Subject=rule" sections, separated by ';'. A rule is a ',' separated list
+// of type:correct/wrong, with /partial for multiple; types a section leaves
+// out are marked as in the paper rule, e.g.
+//   single:4/-1,numeric:4/0;Mathematics=numeric:4/-1
+//   multiple:4/-2/1        (JEE Advanced: +4, +1 per right option, -2)
+
+class ScoringRules {
+
+    static final int SINGLE = 0, NUMERIC = 1, MULTIPLE = 2;
+    private static final String[] TYPES = { "single", "numeric", "multiple" };
+
+    // outcomes within a type; PARTIAL + k - 1 is a multiple answer with k
+    // right options. Rule.outcome returns type * OUTCOMES + outcome
+    static final int WRONG = 0, CORRECT = 1, PARTIAL = 2;
+    private static final int OUTCOMES = PARTIAL + 3;
+
+    // marks of a type when a spec does not give them: single +4/-1 (the
+    // marking the quiz always had), numeric +4/0, multiple +4/-2/+1
+    private static final int[][] DEFAULT_MARKS = { { 4, -1, 0 }, { 4, 0, 0 }, { 4, -2, 1 } };
+
+    // Rule : the compiled marking of every question type
+
+    static final class Rule {
+        private final int[][] scheme; // [type] = { correct, wrong, partial }
+        private final int[] marks; // [(type * OUTCOMES + outcome) * 4 + confidence]
+
+        Rule(int[][] scheme) {
+            this.scheme = scheme;
+            marks = new int[TYPES.length * OUTCOMES * 4];
+            for (int t = 0; t < TYPES.length; t++) {
+                int[] base = new int[OUTCOMES];
+                base[CORRECT] = scheme[t][0];
+                base[WRONG] = scheme[t][1];
+                for (int k = 1; k <= 3; k++)
+                    base[PARTIAL + k - 1] = t == MULTIPLE ? k * scheme[t][2] : scheme[t][1];
+                for (int o = 0; o < OUTCOMES; o++)
+                    for (int c = 0; c < 4; c++)
+                        marks[((t * OUTCOMES) + o) * 4 + c] = c == 0 ? base[o] : base[o] * c;
+            }
+        }
+
+        // outcome of an answer to a question of the given type and key; the
+        // selection must be valid for the type (see isValid)
+
+        public int outcome(int type, int key, int selected) {
+            int o;
+            if (selected == key)
+                o = CORRECT;
+            else if (type != MULTIPLE || (selected & ~key) != 0)
+                o = WRONG;
+            else
+                o = PARTIAL + Integer.bitCount(selected) - 1;
+            return type * OUTCOMES + o;
+        }
+
+        // marks for the student total: the mark times the confidence (1-3)
+        public int total(int outcome, int confidenceValue) {
+            return marks[outcome * 4 + confidenceValue];
+        }
+
+        // marks for the subtopic score, not weighted by confidence
+        public int section(int outcome) {
+            return marks[outcome * 4];
+        }
+
+        // lowest and highest section mark of one question of a type
+        public int min(int type) {
+            int m = 0;
+            for (int o = 0; o < OUTCOMES; o++)
+                m = Math.min(m, section(type * OUTCOMES + o));
+            return m;
+        }
+
+        public int max(int type) {
+            int m = 0;
+            for (int o = 0; o < OUTCOMES; o++)
+                m = Math.max(m, section(type * OUTCOMES + o));
+            return m;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int t = 0; t < TYPES.length; t++) {
+                sb.append(t == 0 ? "" : ",").append(TYPES[t]).append(':').append(scheme[t][0]).append('/')
+                        .append(scheme[t][1]);
+                if (t == MULTIPLE)
+                    sb.append('/').append(scheme[t][2]);
+            }
+            return sb.toString();
+        }
+    }
+
+    // whether an outcome of Rule.outcome is a fully correct answer
+    static boolean isCorrect(int outcome) {
+        return outcome % OUTCOMES == CORRECT;
+    }
+
+    // whether a selection can answer a question of the given type: an option
+    // 0-3, a non-empty mask of the four options, or any value
+
+    static boolean isValid(int type, int selected) {
+        switch (type) {
+            case SINGLE:
+                return selected >= 0 && selected <= 3;
+            case MULTIPLE:
+                return selected > 0 && selected <= 15;
+            default:
+                return true;
+        }
+    }
+
+    // the options an answer chose, as a mask: one bit for single, the answer
+    // itself for multiple, none for numeric
+
+    static int optionMask(int type, int selected) {
+        return type == SINGLE ? 1 << selected : type == MULTIPLE ? selected : 0;
+    }
+
+    static String typeName(int type) {
+        return TYPES[type];
+    }
+
+    // the default marks of every type, times the confidence
+    static final Rule MCQ = new Rule(DEFAULT_MARKS);
+    static final ScoringRules DEFAULT = new ScoringRules(MCQ, new HashMap<>());
+
+    private final Rule paper;
+    private final Map<String, Rule> sections; // by lower case subject name
+
+    private ScoringRules(Rule paper, Map<String, Rule> sections) {
+        this.paper = paper;
+        this.sections = sections;
+    }
+
+    // the rules given by -Djeequiz.scoring, else DEFAULT
+
+    public static ScoringRules configured() {
+        String spec = System.getProperty("jeequiz.scoring");
+        return spec == null ? DEFAULT : parse(spec);
+    }
+
+    public static ScoringRules parse(String spec) {
+        int[][] paper = copy(DEFAULT_MARKS);
+        Map<String, String> sectionSpecs = new HashMap<>();
+        for (String part : spec.split(";")) {
+            part = part.trim();
+            if (part.isEmpty())
+                continue;
+            int eq = part.indexOf('=');
+            if (eq < 0)
+                parseRule(part, paper);
+            else
+                sectionSpecs.put(part.substring(0, eq).trim().toLowerCase(Locale.ROOT), part.substring(eq + 1));
+        }
+        Map<String, Rule> sections = new HashMap<>();
+        for (Map.Entry<String, String> e : sectionSpecs.entrySet()) {
+            int[][] scheme = copy(paper);
+            parseRule(e.getValue(), scheme);
+            sections.put(e.getKey(), new Rule(scheme));
+        }
+        return new ScoringRules(new Rule(paper), sections);
+    }
+
+    private static int[][] copy(int[][] scheme) {
+        int[][] c = new int[scheme.length][];
+        for (int t = 0; t < c.length; t++)
+            c[t] = scheme[t].clone();
+        return c;
+    }
+
+    // sets the marks of every type the rule names in scheme
+
+    private static void parseRule(String s, int[][] scheme) {
+        for (String typeRule : s.split(",")) {
+            String[] typeMarks = typeRule.trim().split(":");
+            int type = -1;
+            for (int t = 0; t < TYPES.length; t++)
+                if (TYPES[t].equalsIgnoreCase(typeMarks[0].trim()))
+                    type = t;
+            if (type < 0 || typeMarks.length != 2)
+                throw new IllegalArgumentException("Bad scoring rule: " + s);
+            String[] m = typeMarks[1].split("/");
+            if (m.length != (type == MULTIPLE ? 3 : 2))
+                throw new IllegalArgumentException("Bad marks in scoring rule: " + s);
+            try {
+                for (int i = 0; i < m.length; i++)
+                    scheme[type][i] = Integer.parseInt(m[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad marks in scoring rule: " + s);
+            }
+        }
+    }
+
+    public Rule forSubject(String name) {
+        return sections.getOrDefault(name.toLowerCase(Locale.ROOT), paper);
+    }
+
+    // the rule of every subject of a bank, by subject index
+
+    public Rule[] forSubjects(List<Subject> subjects) {
+        Rule[] rules = new Rule[subjects.size()];
+        for (int s = 0; s < rules.length; s++)
+            rules[s] = forSubject(subjects.get(s).getName());
+        return rules;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(paper.toString());
+        for (Map.Entry<String, Rule> e : sections.entrySet())
+            sb.append(';').append(e.getKey()).append('=').append(e.getValue());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,390 @@
+package jeequiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// SearchIndex : this class is an in-memory inverted index over the question
+// text and options of a bank, so authors and reviewers can find questions by
+// keyword instead of walking every subject and subtopic.
+//
+// Text is split into lower case words (letters and digits). For every word the
+// index keeps the ids of the questions that contain it as a posting list:
+// ids only grow, so each list stores the gaps between ids as variable length
+// bytes (1 byte for most gaps). Words of the correct option are also indexed
+// under their own key for "correct:" queries.
+//
+// A query is a list of words that must all appear (in the text or an option)
+// plus optional filters:  words subject:Physics subtopic:Fluids correct:volt
+// The shortest posting list is walked and the others are advanced alongside
+// it, jumping over blocks of 64 ids, so a query costs about the length of the
+// shortest list rather than of the longest.
+//
+// Questions can be added at any time (they get the next id) and removed by id.
+// A removed id is skipped by queries at once; its postings are dropped when
+// more than a quarter of the indexed questions are removed (compaction).
+// Not thread safe while questions are added or removed. Queries only read,
+// so once the index is built and safely published (the engine keeps it in a
+// volatile field and never changes it) any number of threads can search.
+
+class SearchIndex {
+
+    private static final char CORRECT = '=';
+
+    // Postings : question ids of one word, gap encoded; every SKIP ids the
+    // last id and the byte offset are noted so long lists can be jumped over
+
+    private static class Postings {
+        static final int SKIP = 64;
+
+        byte[] data = new byte[4];
+        int[] skips = new int[0]; // pairs of (id before the block, offset of the block)
+        int length, count, last = -1;
+
+        void add(int id) {
+            if (id == last)
+                return;
+            if (count > 0 && count % SKIP == 0) {
+                int k = count / SKIP - 1;
+                if (2 * k + 2 > skips.length)
+                    skips = Arrays.copyOf(skips, Math.max(8, skips.length * 2));
+                skips[2 * k] = last;
+                skips[2 * k + 1] = length;
+            }
+            int gap = id - last;
+            if (length + 5 > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            while (gap >= 0x80) {
+                data[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            data[length++] = (byte) gap;
+            last = id;
+            count++;
+        }
+
+        int skipCount() {
+            return count > 0 ? (count - 1) / SKIP : 0;
+        }
+    }
+
+    // Cursor : walks one posting list in id order
+
+    private static class Cursor {
+        final Postings p;
+        int pos, doc = -1, skip;
+
+        Cursor(Postings p) {
+            this.p = p;
+        }
+
+        // next id, or Integer.MAX_VALUE at the end
+        int next() {
+            if (pos >= p.length)
+                return doc = Integer.MAX_VALUE;
+            int gap = 0, shift = 0;
+            byte b;
+            do {
+                b = p.data[pos++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return doc += gap;
+        }
+
+        // first id >= target, using the skips to pass whole blocks
+        int advance(int target) {
+            int n = p.skipCount();
+            while (skip < n && p.skips[2 * skip] < target) {
+                if (p.skips[2 * skip + 1] > pos) {
+                    doc = p.skips[2 * skip];
+                    pos = p.skips[2 * skip + 1];
+                }
+                skip++;
+            }
+            while (doc < target)
+                next();
+            return doc;
+        }
+    }
+
+    // Result : ids of the first matches (in id order) and the number of all matches
+
+    static class Result {
+        final int[] ids;
+        final int total;
+
+        Result(int[] ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+    }
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> subjectIds = new HashMap<>(), subtopicIds = new HashMap<>();
+    private final List<String> subjectNames = new ArrayList<>(), subtopicNames = new ArrayList<>();
+    private MCQQuestion[] docs = new MCQQuestion[1024];
+    private int[] subjectOf = new int[1024], subtopicOf = new int[1024];
+    private final BitSet removed = new BitSet();
+    private int size, live, removedSinceCompaction;
+
+    // indexes every question of the subjects
+
+    public static SearchIndex of(List<Subject> subjects) {
+        SearchIndex index = new SearchIndex();
+        for (Subject subj : subjects)
+            for (Subtopic st : subj.getSubtopics())
+                for (MCQQuestion q : st.getQuestions())
+                    index.add(subj.getName(), st.getName(), q);
+        return index;
+    }
+
+    // indexes a question and returns its id
+
+    public int add(String subject, String subtopic, MCQQuestion q) {
+        int id = size++;
+        if (id == docs.length) {
+            docs = Arrays.copyOf(docs, id * 2);
+            subjectOf = Arrays.copyOf(subjectOf, id * 2);
+            subtopicOf = Arrays.copyOf(subtopicOf, id * 2);
+        }
+        docs[id] = q;
+        subjectOf[id] = intern(subjectIds, subjectNames, subject);
+        subtopicOf[id] = intern(subtopicIds, subtopicNames, subject + '\u0000' + subtopic);
+        index(q.getText(), id, "");
+        for (int i = 0; i < q.getOptionCount(); i++) {
+            String option = q.getOption(i);
+            index(option, id, "");
+            if (q.isCorrectOption(i))
+                index(option, id, String.valueOf(CORRECT));
+        }
+        live++;
+        return id;
+    }
+
+    private static int intern(Map<String, Integer> ids, List<String> names, String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = names.size();
+            ids.put(key, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    private void index(String text, int id, String prefix) {
+        for (String word : words(text))
+            postings.computeIfAbsent(prefix + word, w -> new Postings()).add(id);
+    }
+
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder w = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                w.append(Character.toLowerCase(c));
+            } else if (w.length() > 0) {
+                words.add(w.toString());
+                w.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    // removes a question; returns false if the id is unknown or already removed
+
+    public boolean remove(int id) {
+        if (id < 0 || id >= size || removed.get(id))
+            return false;
+        removed.set(id);
+        docs[id] = null;
+        live--;
+        if (++removedSinceCompaction * 4 > size)
+            compact();
+        return true;
+    }
+
+    // rewrites every posting list without the removed ids
+    // ids stay the same, so callers can keep the ids they hold
+
+    private void compact() {
+        postings.entrySet().removeIf(e -> {
+            Postings old = e.getValue();
+            Postings fresh = new Postings();
+            Cursor c = new Cursor(old);
+            for (int id = c.next(); id != Integer.MAX_VALUE; id = c.next())
+                if (!removed.get(id))
+                    fresh.add(id);
+            e.setValue(fresh);
+            return fresh.count == 0;
+        });
+        removedSinceCompaction = 0;
+    }
+
+    public MCQQuestion get(int id) {
+        return id >= 0 && id < size ? docs[id] : null;
+    }
+
+    public String getSubject(int id) {
+        return subjectNames.get(subjectOf[id]);
+    }
+
+    public String getSubtopic(int id) {
+        String s = subtopicNames.get(subtopicOf[id]);
+        return s.substring(s.indexOf('\u0000') + 1);
+    }
+
+    public int size() {
+        return live;
+    }
+
+    public int getWordCount() {
+        return postings.size();
+    }
+
+    // bytes used by all posting lists
+    public long getPostingBytes() {
+        long n = 0;
+        for (Postings p : postings.values())
+            n += p.length;
+        return n;
+    }
+
+    // runs a query (see the class comment) and returns up to limit ids
+
+    public Result search(String query, int limit) {
+        List<Postings> lists = new ArrayList<>();
+        int subject = -1;
+        String subtopic = null;
+        for (String token : query.trim().split("\\s+")) {
+            if (token.isEmpty())
+                continue;
+            String lower = token.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("subject:")) {
+                Integer s = subjectIds.get(lower.substring(8));
+                if (s == null)
+                    return new Result(new int[0], 0);
+                subject = s;
+            } else if (lower.startsWith("subtopic:")) {
+                subtopic = lower.substring(9);
+            } else {
+                String prefix = lower.startsWith("correct:") ? String.valueOf(CORRECT) : "";
+                for (String word : words(prefix.isEmpty() ? token : token.substring(8))) {
+                    Postings p = postings.get(prefix + word);
+                    if (p == null)
+                        return new Result(new int[0], 0);
+                    lists.add(p);
+                }
+            }
+        }
+        BitSet subtopicMatch = null;
+        if (subtopic != null) {
+            subtopicMatch = new BitSet();
+            for (int i = 0; i < subtopicNames.size(); i++) {
+                String name = subtopicNames.get(i);
+                if (name.substring(name.indexOf('\u0000') + 1).equalsIgnoreCase(subtopic))
+                    subtopicMatch.set(i);
+            }
+            if (subtopicMatch.isEmpty())
+                return new Result(new int[0], 0);
+        }
+        int[] hits = new int[Math.min(limit, 1024)];
+        int found = 0, total = 0;
+        if (lists.isEmpty()) {
+            // filters only
+            for (int id = 0; id < size; id++) {
+                if (accept(id, subject, subtopicMatch)) {
+                    if (found < limit)
+                        hits = add(hits, found++, id);
+                    total++;
+                }
+            }
+            return new Result(Arrays.copyOf(hits, found), total);
+        }
+        lists.sort((a, b) -> Integer.compare(a.count, b.count));
+        Cursor[] cursors = new Cursor[lists.size()];
+        for (int i = 0; i < cursors.length; i++)
+            cursors[i] = new Cursor(lists.get(i));
+        for (int id = cursors[0].next(); id != Integer.MAX_VALUE; id = cursors[0].next()) {
+            boolean all = true;
+            for (int i = 1; i < cursors.length && all; i++) {
+                int d = cursors[i].advance(id);
+                if (d == Integer.MAX_VALUE)
+                    return new Result(Arrays.copyOf(hits, found), total);
+                all = d == id;
+            }
+            if (all && accept(id, subject, subtopicMatch)) {
+                if (found < limit)
+                    hits = add(hits, found++, id);
+                total++;
+            }
+        }
+        return new Result(Arrays.copyOf(hits, found), total);
+    }
+
+    private boolean accept(int id, int subject, BitSet subtopicMatch) {
+        return !removed.get(id) && (subject < 0 || subjectOf[id] == subject)
+                && (subtopicMatch == null || subtopicMatch.get(subtopicOf[id]));
+    }
+
+    private static int[] add(int[] hits, int at, int id) {
+        if (at == hits.length)
+            hits = Arrays.copyOf(hits, hits.length * 2);
+        hits[at] = id;
+        return hits;
+    }
+
+    // one line per hit: id, subject / subtopic, question text
+
+    public String toReport(Result r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(r.total).append(" matches\n");
+        for (int id : r.ids)
+            sb.append(id).append(": ").append(getSubject(id)).append(" / ").append(getSubtopic(id)).append(": ")
+                    .append(docs[id].getText()).append('\n');
+        return sb.toString();
+    }
+
+    // Main method: java jeequiz.SearchIndex [questions.bank | -] [query]
+    // without a query, queries are read from standard input one per line
+    public static void main(String[] args) throws IOException {
+        Student bank = new Student("index", "index", 0);
+        if (args.length > 0 && !args[0].equals("-"))
+            BinaryBank.open(Paths.get(args[0])).loadInto(bank);
+        else
+            QuestionBank.loadDefault(bank);
+        long t0 = System.nanoTime();
+        SearchIndex index = of(bank.getSubjects());
+        System.out.println("Indexed " + index.size() + " questions, " + index.getWordCount() + " words, "
+                + (index.getPostingBytes() >> 10) + " KB of postings in "
+                + String.format("%.0f", (System.nanoTime() - t0) / 1e6) + " ms");
+        if (args.length > 1) {
+            run(index, String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null)
+            if (!line.isBlank())
+                run(index, line);
+    }
+
+    private static void run(SearchIndex index, String query) {
+        long t0 = System.nanoTime();
+        Result r = index.search(query, 10);
+        double ms = (System.nanoTime() - t0) / 1e6;
+        System.out.print(index.toReport(r));
+        System.out.println(String.format("(%.3f ms)", ms));
+    }
+}
@@ -0,0 +1,419 @@
+package jeequiz;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// SessionRouter : this class spreads quiz sessions over several worker
+// processes (QuizServer instances), so no single JVM has to hold every
+// Student and Quiz.
+//
+// A session lives on the worker that owns its student's email on a HashRing.
+// The router hands out its own session ids and keeps, for each, the worker
+// and the worker's session id; calls are forwarded to that worker over HTTP.
+// When a worker is added or removed the ring changes and every session whose
+// email now belongs to another worker is moved: /snapshot on the old worker,
+// /resume on the new one, then /end on the old one (see SessionSnapshot). A
+// session's calls wait while it moves, so clients keep their ids and never
+// notice. There is no coordination service: the workers are given at start
+// and changed through /workers.
+//
+// GET  /start, /question, /results, /end and POST /answer as on QuizServer
+// GET  /student?email=..          -> stored result, asked of the owner of the
+//                                    email first, then of the other workers
+// GET  /workers                   -> workers and their session counts
+// GET  /workers?add=host:port     -> adds a worker and moves its sessions to it
+// GET  /workers?remove=host:port  -> moves the worker's sessions away and drops it
+//
+// Cohort, leaderboard and item statistics stay per worker. The session table
+// is in the router's memory only; the workers keep the sessions themselves
+// in their journals. Stored results are not moved either: a student's result
+// stays with the worker where the quiz finished, which after a change of the
+// ring need not be the owner, so /student falls back to every worker.
+
+public class SessionRouter {
+
+    private static final int MOVERS = 8;
+
+    // Route : where one session lives; changed only under its own lock
+
+    private static final class Route {
+        final String email;
+        String worker, remoteId;
+        boolean ended;
+
+        Route(String email, String worker, String remoteId) {
+            this.email = email;
+            this.worker = worker;
+            this.remoteId = remoteId;
+        }
+    }
+
+    // Reply : a worker's answer, passed on as it is
+    private static final class Reply {
+        final int status;
+        final byte[] body;
+        final String contentType;
+
+        Reply(int status, byte[] body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        String text() {
+            return new String(body, StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final ConcurrentHashMap<String, Route> routes = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    // starts hold the read lock from choosing a worker until the route is
+    // stored, so a ring change never misses a session being started
+    private final ReentrantReadWriteLock ringLock = new ReentrantReadWriteLock();
+    private final Object membership = new Object(); // one worker change at a time
+    private volatile HashRing ring;
+
+    public SessionRouter(int port, List<String> workers) throws IOException {
+        ring = new HashRing(workers);
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = QuizServer.newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/start", this::handleStart);
+        server.createContext("/question", ex -> handleSession(ex, "/question"));
+        server.createContext("/answer", ex -> handleSession(ex, "/answer"));
+        server.createContext("/results", ex -> handleSession(ex, "/results"));
+        server.createContext("/end", ex -> handleSession(ex, "/end"));
+        server.createContext("/student", this::handleStudent);
+        server.createContext("/workers", this::handleWorkers);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public List<String> getWorkers() {
+        return ring.getWorkers();
+    }
+
+    private void handleStart(HttpExchange ex) throws IOException {
+        Map<String, String> p = QuizServer.params(ex);
+        String email = p.get("email");
+        if (email == null || email.trim().isEmpty()) {
+            QuizServer.send(ex, 400, "Invalid input: provide valid name, age (integer) and email.\n");
+            return;
+        }
+        Reply reply = null;
+        String id = null;
+        ringLock.readLock().lock();
+        try {
+            String worker = ring.owner(email.trim());
+            if (worker != null) {
+                reply = call(worker, "GET", "/start", p, null);
+                if (reply.status == 200) {
+                    id = Long.toString(nextId.incrementAndGet(), 36);
+                    routes.put(id, new Route(email.trim(), worker, reply.text()));
+                }
+            }
+        } catch (IOException e) {
+            reply = new Reply(502, "Worker unavailable\n".getBytes(StandardCharsets.UTF_8), null);
+        } finally {
+            ringLock.readLock().unlock();
+        }
+        if (reply == null)
+            QuizServer.send(ex, 503, "No workers\n");
+        else if (id != null)
+            QuizServer.send(ex, 200, id + "\n");
+        else
+            pass(ex, reply);
+    }
+
+    // forwards a call for one session to the worker that holds it
+    private void handleSession(HttpExchange ex, String path) throws IOException {
+        Map<String, String> p = QuizServer.params(ex);
+        String id = p.get("session");
+        Route route = id == null ? null : routes.get(id);
+        if (route == null) {
+            QuizServer.send(ex, 404, "Unknown session: " + id + "\n");
+            return;
+        }
+        Reply reply = null;
+        try {
+            synchronized (route) {
+                if (!route.ended) {
+                    p.put("session", route.remoteId);
+                    reply = call(route.worker, ex.getRequestMethod(), path, p, null);
+                    if (path.equals("/end") && reply.status == 200) {
+                        route.ended = true;
+                        routes.remove(id);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            reply = new Reply(502, "Worker unavailable\n".getBytes(StandardCharsets.UTF_8), null);
+        }
+        if (reply == null)
+            QuizServer.send(ex, 404, "Unknown session: " + id + "\n");
+        else
+            pass(ex, reply);
+    }
+
+    private void handleStudent(HttpExchange ex) throws IOException {
+        Map<String, String> p = QuizServer.params(ex);
+        String worker = p.get("email") == null ? null : ring.owner(p.get("email").trim());
+        if (worker == null) {
+            QuizServer.send(ex, 404, "Unknown student: " + p.get("email") + "\n");
+            return;
+        }
+        Reply first = null;
+        List<String> order = new ArrayList<>(ring.getWorkers());
+        order.remove(worker);
+        order.add(0, worker);
+        for (String w : order) {
+            try {
+                Reply reply = call(w, "GET", "/student", p, null);
+                if (reply.status == 200) {
+                    pass(ex, reply);
+                    return;
+                }
+                if (first == null)
+                    first = reply;
+            } catch (IOException e) {
+                // an unreachable worker may hold the result; try the others
+            }
+        }
+        if (first != null)
+            pass(ex, first);
+        else
+            QuizServer.send(ex, 502, "Worker unavailable\n");
+    }
+
+    private void handleWorkers(HttpExchange ex) throws IOException {
+        Map<String, String> p = QuizServer.params(ex);
+        String add = p.get("add"), remove = p.get("remove");
+        StringBuilder sb = new StringBuilder();
+        if (add != null || remove != null) {
+            String worker = (add != null ? add : remove).trim();
+            if (worker.isEmpty() || worker.contains("/")) {
+                QuizServer.send(ex, 400, "Worker must be host:port\n");
+                return;
+            }
+            if (remove != null && ring.getWorkers().size() == 1 && ring.getWorkers().contains(worker)) {
+                QuizServer.send(ex, 409, "Cannot remove the last worker\n");
+                return;
+            }
+            int[] moved = add != null ? addWorker(worker) : removeWorker(worker);
+            sb.append("moved=").append(moved[0]).append(" failed=").append(moved[1]).append('\n');
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (Route r : routes.values())
+            counts.merge(r.worker, 1, Integer::sum);
+        for (String w : ring.getWorkers())
+            sb.append(w).append(" sessions=").append(counts.getOrDefault(w, 0)).append('\n');
+        QuizServer.send(ex, 200, sb.toString());
+    }
+
+    // adds a worker and moves to it the sessions it now owns; returns the
+    // number of sessions moved and of moves that failed (those stay put)
+
+    public int[] addWorker(String worker) {
+        synchronized (membership) {
+            setRing(ring.with(worker));
+            return rebalance();
+        }
+    }
+
+    // moves every session of the worker to the new owners and drops it; the
+    // worker must still answer for its sessions to move
+
+    public int[] removeWorker(String worker) {
+        synchronized (membership) {
+            setRing(ring.without(worker));
+            return rebalance();
+        }
+    }
+
+    private void setRing(HashRing next) {
+        ringLock.writeLock().lock();
+        try {
+            ring = next;
+        } finally {
+            ringLock.writeLock().unlock();
+        }
+    }
+
+    private int[] rebalance() {
+        HashRing current = ring;
+        List<Future<Boolean>> moves = new ArrayList<>();
+        ExecutorService movers = Executors.newFixedThreadPool(MOVERS);
+        try {
+            for (Route route : routes.values()) {
+                String owner = current.owner(route.email);
+                if (!owner.equals(route.worker))
+                    moves.add(movers.submit(() -> move(route, owner)));
+            }
+            int moved = 0, failed = 0;
+            for (Future<Boolean> f : moves) {
+                try {
+                    if (f.get())
+                        moved++;
+                    else
+                        failed++;
+                } catch (ExecutionException e) {
+                    failed++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed++;
+                }
+            }
+            return new int[] { moved, failed };
+        } finally {
+            movers.shutdown();
+        }
+    }
+
+    // snapshot on the old worker, resume on the new one, end on the old one;
+    // the session's calls wait on the route meanwhile
+
+    private boolean move(Route route, String target) throws IOException {
+        synchronized (route) {
+            if (route.ended || route.worker.equals(target))
+                return true;
+            Reply snapshot = call(route.worker, "GET", "/snapshot", Map.of("session", route.remoteId), null);
+            if (snapshot.status != 200)
+                return false;
+            Reply resumed = call(target, "POST", "/resume", Map.of(), snapshot.body);
+            if (resumed.status != 200)
+                return false;
+            String oldWorker = route.worker, oldId = route.remoteId;
+            route.worker = target;
+            route.remoteId = resumed.text();
+            try {
+                call(oldWorker, "GET", "/end", Map.of("session", oldId), null);
+            } catch (IOException e) {
+                // the copy on the old worker is only left behind; the route has moved
+            }
+            return true;
+        }
+    }
+
+    private Reply call(String worker, String method, String path, Map<String, String> params, byte[] body)
+            throws IOException {
+        StringBuilder uri = new StringBuilder("http://").append(worker).append(path);
+        char sep = '?';
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            uri.append(sep).append(URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8)).append('=')
+                    .append(URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8));
+            sep = '&';
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri.toString()))
+                .timeout(Duration.ofSeconds(30));
+        if (method.equals("POST"))
+            request.POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(body));
+        else
+            request.GET();
+        try {
+            HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+            return new Reply(response.statusCode(), response.body(),
+                    response.headers().firstValue("Content-Type").orElse(null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad worker address: " + worker, e);
+        }
+    }
+
+    private static void pass(HttpExchange ex, Reply reply) throws IOException {
+        ex.getResponseHeaders().set("Content-Type",
+                reply.contentType != null ? reply.contentType : "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(reply.status, reply.body.length == 0 ? -1 : reply.body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(reply.body);
+        }
+    }
+
+    // Main method: java jeequiz.SessionRouter <port> <host:port>...
+    // or java jeequiz.SessionRouter <port> spawn=<n> [bank|-] to start n local
+    // QuizServer JVMs on the next ports (each with its own journal when
+    // journals=<dir> is given); they are stopped with the router. Every
+    // spawned worker keeps its own result store in results=<dir>, else in the
+    // journal directory, else in a new temporary directory
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java jeequiz.SessionRouter <port> <host:port>... | spawn=<n> [bank|-]"
+                    + " [journals=<dir>] [results=<dir>]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        List<String> workers = new ArrayList<>();
+        List<Process> spawned = new ArrayList<>();
+        if (args[1].startsWith("spawn=")) {
+            int n = Integer.parseInt(args[1].substring(6));
+            String bank = args.length > 2 && !args[2].contains("=") ? args[2] : "-";
+            String journals = null, results = null;
+            for (String a : args) {
+                if (a.startsWith("journals="))
+                    journals = a.substring(9);
+                else if (a.startsWith("results="))
+                    results = a.substring(8);
+            }
+            if (results == null)
+                results = journals != null ? journals : Files.createTempDirectory("jeequiz-results").toString();
+            Files.createDirectories(Paths.get(results));
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            for (int i = 1; i <= n; i++) {
+                String journal = journals == null ? "-" : new File(journals, "worker-" + (port + i) + ".log").getPath();
+                String store = new File(results, "worker-" + (port + i) + ".store").getPath();
+                spawned.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "jeequiz.QuizServer", Integer.toString(port + i), bank, journal, store).inheritIO().start());
+                workers.add("127.0.0.1:" + (port + i));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> spawned.forEach(Process::destroy)));
+        } else {
+            for (int i = 1; i < args.length; i++)
+                workers.add(args[i]);
+        }
+        SessionRouter router = new SessionRouter(port, workers);
+        router.start();
+        System.out.println("Session router listening on http://127.0.0.1:" + router.getPort() + " for " + workers);
+    }
+}
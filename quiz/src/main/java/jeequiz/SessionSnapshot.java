@@ -0,0 +1,352 @@
+package jeequiz;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// SessionSnapshot : this class saves the whole state of a quiz session as a
+// few bytes and puts it back, so a session can be paused, checkpointed or
+// moved to another process. Questions are not saved: the session is resumed
+// on the same bank, checked with the plan's shape hash.
+//
+// Saved are the student (name, email, age, total score, calibration), every
+// subtopic's score and confidence totals, calibration and time spent, the
+// shuffle seed, the cursor and the answered positions. Numbers are variable length
+// (zig-zag for values that can be negative); the answered set is stored as the
+// length of its leading run plus the raw words after it, which for a quiz
+// answered in order is just one number. A CRC32C at the end catches damage.
+//
+// Layout: magic "JEES" (4 bytes), version, flags (1 finished, 2 shuffled),
+// shape hash (8 bytes), name, email, age, total score, calibration (6),
+// [shuffle seed (8 bytes)], subtopic count, per subtopic: score, confidence,
+// max confidence, calibration (6), time spent (ms), timed questions, timed out,
+// cursor, leading run, word count, words (8 bytes each), CRC32C (4 bytes).
+// Calibration is answers and correct for confidence 1..3. Version 1 had no
+// times and is still read.
+//
+// Usage: byte[] b = SessionSnapshot.write(quiz); then later
+//   SessionSnapshot s = SessionSnapshot.read(b);
+//   Student st = s.newStudent(); <load the bank into st>
+//   Quiz q = new Quiz(st, plan); s.applyTo(q);
+
+class SessionSnapshot {
+
+    static final int MAGIC = 0x4A454553; // "JEES"
+    static final int VERSION = 2;
+    private static final int FINISHED = 1, SHUFFLED = 2;
+    private static final int STRIDE = 11; // ints per subtopic
+
+    private final byte[] data;
+    private int pos;
+
+    // fields read by read()
+    private int flags, age, totalScore, cursor, run;
+    private long shapeHash, seed;
+    private String name, email;
+    private int[] studentCalibration, subtopics; // subtopics: 11 ints per subtopic
+    private long[] times; // ms per subtopic
+    private long[] words; // answered positions after the leading run
+
+    private SessionSnapshot(byte[] data) {
+        this.data = data;
+    }
+
+    // the session's state; call with nothing else changing the quiz (the quiz
+    // lock is held while writing)
+
+    public static byte[] write(Quiz quiz) {
+        synchronized (quiz) {
+            Student student = quiz.getStudent();
+            byte[] name = student.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] email = student.getEmail().getBytes(StandardCharsets.UTF_8);
+            BitSet answered = quiz.getAnswered();
+            if (answered == null)
+                throw new IllegalStateException("Quiz not started");
+            int run = answered.nextClearBit(0);
+            long[] words = answered.get(run & ~63, Math.max(answered.length(), run & ~63)).toLongArray();
+            int subtopicCount = 0;
+            for (Subject subj : student.getSubjects())
+                subtopicCount += subj.getSubtopics().size();
+
+            SessionSnapshot out = new SessionSnapshot(new byte[64 + name.length + email.length
+                    + 65 * (subtopicCount + 1) + 8 * words.length]);
+            out.putInt(MAGIC);
+            out.putVarint(VERSION);
+            Shuffle shuffle = quiz.getShuffle();
+            int flags = (quiz.isQuizFinished() ? FINISHED : 0) | (shuffle != null ? SHUFFLED : 0);
+            out.data[out.pos++] = (byte) flags;
+            out.putLong(quiz.getPlan().getShapeHash());
+            out.putBytes(name);
+            out.putBytes(email);
+            out.putVarint(student.getAge());
+            out.putSigned(student.getTotalScore());
+            out.putCalibration(student.getCalibration());
+            if (shuffle != null)
+                out.putLong(shuffle.getSeed());
+            out.putVarint(subtopicCount);
+            for (Subject subj : student.getSubjects()) {
+                for (Subtopic st : subj.getSubtopics()) {
+                    out.putSigned(st.getScore());
+                    out.putVarint(st.getTotalConfidence());
+                    out.putVarint(st.getTotalMaxConfidence());
+                    out.putCalibration(st.getCalibration());
+                    out.putVarLong(st.getTimeMillis());
+                    out.putVarint(st.getTimedQuestions());
+                    out.putVarint(st.getTimedOut());
+                }
+            }
+            out.putVarint(quiz.getPosition());
+            out.putVarint(run);
+            out.putVarint(words.length);
+            for (long w : words)
+                out.putLong(w);
+            CRC32C crc = new CRC32C();
+            crc.update(out.data, 0, out.pos);
+            out.putInt((int) crc.getValue());
+            return Arrays.copyOf(out.data, out.pos);
+        }
+    }
+
+    // parses and checks a snapshot
+    public static SessionSnapshot read(byte[] data) throws IOException {
+        if (data.length < 12)
+            throw new IOException("Session snapshot too short");
+        CRC32C crc = new CRC32C();
+        crc.update(data, 0, data.length - 4);
+        SessionSnapshot in = new SessionSnapshot(data);
+        in.pos = data.length - 4;
+        if (in.getInt() != (int) crc.getValue())
+            throw new IOException("Session snapshot is damaged");
+        in.pos = 0;
+        try {
+            if (in.getInt() != MAGIC)
+                throw new IOException("Not a session snapshot");
+            int version = in.getVarint();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unsupported session snapshot version");
+            in.flags = data[in.pos++];
+            in.shapeHash = in.getLong();
+            in.name = new String(in.getBytes(), StandardCharsets.UTF_8);
+            in.email = new String(in.getBytes(), StandardCharsets.UTF_8);
+            in.age = in.getVarint();
+            in.totalScore = in.getSigned();
+            in.studentCalibration = in.getCalibration();
+            if ((in.flags & SHUFFLED) != 0)
+                in.seed = in.getLong();
+            int n = in.getCount(9);
+            in.subtopics = new int[n * STRIDE];
+            in.times = new long[n];
+            for (int t = 0; t < n; t++) {
+                in.subtopics[t * STRIDE] = in.getSigned();
+                in.subtopics[t * STRIDE + 1] = in.getVarint();
+                in.subtopics[t * STRIDE + 2] = in.getVarint();
+                System.arraycopy(in.getCalibration(), 0, in.subtopics, t * STRIDE + 3, 6);
+                if (version >= 2) {
+                    in.times[t] = in.getVarLong();
+                    in.subtopics[t * STRIDE + 9] = in.getVarint();
+                    in.subtopics[t * STRIDE + 10] = in.getVarint();
+                }
+            }
+            in.cursor = in.getVarint();
+            in.run = in.getVarint();
+            if (in.cursor < 0 || in.run < 0)
+                throw new IOException("Session snapshot has a negative position");
+            in.words = new long[in.getCount(8)];
+            for (int i = 0; i < in.words.length; i++)
+                in.words[i] = in.getLong();
+            if (in.pos != data.length - 4)
+                throw new IOException("Session snapshot has trailing data");
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Session snapshot is truncated", e);
+        }
+        return in;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public boolean isFinished() {
+        return (flags & FINISHED) != 0;
+    }
+
+    // the saved shuffle, or null when the quiz was not shuffled
+    public Shuffle getShuffle() {
+        return (flags & SHUFFLED) != 0 ? new Shuffle(seed) : null;
+    }
+
+    public Student newStudent() {
+        return new Student(name, email, age);
+    }
+
+    // puts the saved state into a quiz that was built, but not started, for a
+    // new student (see newStudent) holding the same bank
+
+    public void applyTo(Quiz quiz) {
+        synchronized (quiz) {
+            Student student = quiz.getStudent();
+            List<Subject> subjects = student.getSubjects();
+            int t = 0;
+            for (Subject subj : subjects)
+                t += subj.getSubtopics().size();
+            if (t * STRIDE != subtopics.length)
+                throw new IllegalArgumentException("Snapshot has " + subtopics.length / STRIDE
+                        + " subtopics, bank " + t);
+            // everything is checked before the quiz is touched
+            QuizPlan plan = quiz.getPlan() != null ? quiz.getPlan() : QuizPlan.compile(subjects);
+            if (plan.getShapeHash() != shapeHash)
+                throw new IllegalArgumentException("Snapshot was taken on a different bank");
+            quiz.setShuffle(getShuffle());
+            quiz.resume(getAnswered(plan.size()), cursor, isFinished());
+            student.addScore(totalScore - student.getTotalScore());
+            restore(student.getCalibration(), studentCalibration, 0);
+            t = 0;
+            for (Subject subj : subjects) {
+                for (Subtopic st : subj.getSubtopics()) {
+                    int at = t * STRIDE;
+                    st.restore(subtopics[at], subtopics[at + 1], subtopics[at + 2]);
+                    restore(st.getCalibration(), subtopics, at + 3);
+                    st.restoreTime(times[t], subtopics[at + 9], subtopics[at + 10]);
+                    t++;
+                }
+            }
+        }
+    }
+
+    // the answered positions, refused when any lies outside a plan of size
+    // positions (before the set is built, so a damaged run cannot size it)
+    private BitSet getAnswered(int size) {
+        int base = run & ~63;
+        if (run > size || words.length > (size - base + 63) / 64)
+            throw new IllegalArgumentException("Saved quiz does not fit the bank");
+        BitSet answered = new BitSet(size);
+        answered.set(0, run);
+        for (int i = 0; i < words.length; i++)
+            for (long w = words[i]; w != 0; w &= w - 1)
+                answered.set(base + i * 64 + Long.numberOfTrailingZeros(w));
+        return answered;
+    }
+
+    private static void restore(Calibration c, int[] counts, int from) {
+        for (int level = 1; level <= 3; level++)
+            c.restore(level, counts[from + 2 * (level - 1)], counts[from + 2 * (level - 1) + 1]);
+    }
+
+    private void putCalibration(Calibration c) {
+        for (int level = 1; level <= 3; level++) {
+            putVarint(c.getAnswers(level));
+            putVarint(c.getCorrect(level));
+        }
+    }
+
+    private int[] getCalibration() {
+        int[] c = new int[6];
+        for (int i = 0; i < 6; i++)
+            c[i] = getVarint();
+        return c;
+    }
+
+    private void putVarint(int v) {
+        while ((v & ~0x7F) != 0) {
+            data[pos++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        data[pos++] = (byte) v;
+    }
+
+    private void putVarLong(long v) {
+        while ((v & ~0x7FL) != 0) {
+            data[pos++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        data[pos++] = (byte) v;
+    }
+
+    private void putSigned(int v) {
+        putVarint(v << 1 ^ v >> 31);
+    }
+
+    private void putInt(int v) {
+        for (int shift = 24; shift >= 0; shift -= 8)
+            data[pos++] = (byte) (v >>> shift);
+    }
+
+    private void putLong(long v) {
+        for (int shift = 56; shift >= 0; shift -= 8)
+            data[pos++] = (byte) (v >>> shift);
+    }
+
+    private void putBytes(byte[] b) {
+        putVarint(b.length);
+        System.arraycopy(b, 0, data, pos, b.length);
+        pos += b.length;
+    }
+
+    private int getVarint() {
+        int v = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = data[pos++];
+            v |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    // a count of items of at least minBytes each, refused when the rest of
+    // the snapshot cannot hold them (so a damaged count allocates nothing)
+    private int getCount(int minBytes) throws IOException {
+        int n = getVarint();
+        if (n < 0 || n > (data.length - 4 - pos) / minBytes)
+            throw new IOException("Session snapshot is truncated");
+        return n;
+    }
+
+    private long getVarLong() {
+        long v = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = data[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    private int getSigned() {
+        int v = getVarint();
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    private int getInt() {
+        int v = 0;
+        for (int i = 0; i < 4; i++)
+            v = v << 8 | (data[pos++] & 0xFF);
+        return v;
+    }
+
+    private long getLong() {
+        long v = 0;
+        for (int i = 0; i < 8; i++)
+            v = v << 8 | (data[pos++] & 0xFF);
+        return v;
+    }
+
+    private byte[] getBytes() {
+        int length = getVarint();
+        if (length < 0 || pos + length > data.length)
+            throw new ArrayIndexOutOfBoundsException(length);
+        byte[] b = Arrays.copyOfRange(data, pos, pos + length);
+        pos += length;
+        return b;
+    }
+}
@@ -0,0 +1,136 @@
+package jeequiz;
+
+import java.util.Locale;
+
+// Shuffle : this class gives every student their own question order within
+// each subtopic and their own option order for each question, so neighbours
+// do not see the same paper.
+//
+// Nothing is copied or stored per question: the orders are seeded
+// permutations computed when needed. permute(key, n, i) maps i to a position
+// in 0..n-1 with a few multiply / xor-shift rounds on the smallest power of
+// two that holds n (each round is a bijection), walking the cycle until the
+// value falls below n (up to 16 elements a packed Fisher-Yates shuffle is
+// used instead). The same seed always gives the same orders, so a
+// session can be rebuilt from its answers, and a session only holds one long.
+//
+// Question orders are keyed by the subtopic (its first plan position) and
+// option orders by the question's plan position; the option a student sees
+// at place d is option(position, count, d) of the shared question.
+
+class Shuffle {
+
+    private static final int SMALL = 16;
+    private static final long QUESTIONS = 0x51A7E5C0FFEEL, OPTIONS = 0x0B7104E5L;
+
+    private final long seed;
+
+    public Shuffle(long seed) {
+        this.seed = seed;
+    }
+
+    // the shuffle for a student when -Djeequiz.shuffle=<exam seed> is set, else null
+
+    public static Shuffle configured(String email) {
+        String seed = System.getProperty("jeequiz.shuffle");
+        return seed == null ? null : forStudent(email, Long.parseLong(seed));
+    }
+
+    // the order of one student: the same email and exam seed give the same order
+
+    public static Shuffle forStudent(String email, long examSeed) {
+        return new Shuffle(mix(examSeed ^ mix(email.toLowerCase(Locale.ROOT).hashCode())));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // index within the subtopic of the question shown at place slot
+
+    public int question(int subtopicStart, int subtopicSize, int slot) {
+        return permute(mix(seed + QUESTIONS + subtopicStart), subtopicSize, slot);
+    }
+
+    // index of the shared option shown at place displayed
+
+    public int option(int position, int optionCount, int displayed) {
+        return permute(mix(seed + OPTIONS + position), optionCount, displayed);
+    }
+
+    // the shared answer for an answer given in displayed order to a question
+    // of the given type (see ScoringRules): the option, every option of a
+    // mask, or a value, which is not shuffled
+
+    public int answer(int position, int optionCount, int type, int displayed) {
+        switch (type) {
+            case ScoringRules.SINGLE:
+                return option(position, optionCount, displayed);
+            case ScoringRules.MULTIPLE:
+                int mask = 0;
+                for (int d = 0; d < optionCount; d++)
+                    if ((displayed >> d & 1) != 0)
+                        mask |= 1 << option(position, optionCount, d);
+                return mask;
+            default:
+                return displayed;
+        }
+    }
+
+    // place at which the shared option is shown (inverse of option)
+
+    public int displayed(int position, int optionCount, int original) {
+        long key = mix(seed + OPTIONS + position);
+        for (int d = 0; d < optionCount; d++)
+            if (permute(key, optionCount, d) == original)
+                return d;
+        throw new IllegalArgumentException("Option " + original + " of " + optionCount);
+    }
+
+    // i-th element of the permutation of 0..n-1 chosen by key
+    static int permute(long key, int n, int i) {
+        if (i < 0 || i >= n)
+            throw new IndexOutOfBoundsException("Index " + i + " of " + n);
+        if (n <= SMALL)
+            return (int) (small(key, n) >>> (4 * i)) & 0xF;
+        int bits = 32 - Integer.numberOfLeadingZeros(n - 1);
+        long mask = (1L << bits) - 1;
+        int half = Math.max(1, bits / 2);
+        long k0 = mix(key), k1 = mix(k0), k2 = mix(k1);
+        long x = i;
+        do {
+            x = round(x, k0, mask, half);
+            x = round(x, k1, mask, half);
+            x = round(x, k2, mask, half);
+        } while (x >= n);
+        return (int) x;
+    }
+
+    // a Fisher-Yates shuffle of 0..n-1 (n <= 16) packed as 4 bit values into
+    // one long; exactly uniform over the n! orders, which the rounds are not
+    // for tiny n such as the four options
+    private static long small(long key, int n) {
+        long packed = 0xFEDCBA9876543210L;
+        for (int j = n - 1; j > 0; j--) {
+            key = mix(key + j);
+            int r = (int) Long.remainderUnsigned(key, j + 1);
+            long a = packed >>> (4 * j) & 0xF, b = packed >>> (4 * r) & 0xF;
+            packed &= ~(0xFL << (4 * j) | 0xFL << (4 * r));
+            packed |= a << (4 * r) | b << (4 * j);
+        }
+        return packed;
+    }
+
+    // multiply by an odd number, add, xor-shift: each step is a bijection mod 2^bits
+
+    private static long round(long x, long k, long mask, int half) {
+        x = (x * (k | 1) + (k >>> 32)) & mask;
+        return x ^ (x >>> half);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,196 @@
+package jeequiz;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// TimingWheel : this class runs a very large number of timers (one or two per
+// quiz session) on one thread, instead of one scheduled task or Swing timer
+// each.
+//
+// Time is cut into ticks. The wheel has 4 levels of 64 slots; level L holds
+// the timers due in the current 64^(L+1) tick block but not in the current
+// 64^L block, in the slot of their 64^L sub block. Every slot is a doubly
+// linked list of Timeout objects, so scheduling and cancelling are O(1) and
+// allocate only the Timeout. When the clock enters a new block the slot of
+// that block on the level above is moved down ("cascaded"), so every timer is
+// moved at most 3 times. Level 0 slots are run as their tick comes.
+//
+// With the default 10 ms tick the wheel holds timers up to 46 hours ahead.
+// Tasks run on the wheel thread and must be short; a task that throws is
+// counted and dropped.
+
+class TimingWheel implements Closeable {
+
+    private static final int LEVELS = 4, BITS = 6, SLOTS = 1 << BITS, MASK = SLOTS - 1;
+    static final long DEFAULT_TICK_MILLIS = 10;
+
+    // Timeout : one scheduled task; cancel() is O(1)
+
+    final class Timeout {
+        private final Runnable task;
+        private final long deadline; // tick
+        private Timeout prev, next;
+        private int slot = -1; // level * SLOTS + slot, -1 when not in the wheel
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // true if the task was still pending and will now never run
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (slot < 0)
+                    return false;
+                unlink(this);
+                pending--;
+                return true;
+            }
+        }
+    }
+
+    private final long tickNanos, origin;
+    private final Timeout[] slots = new Timeout[LEVELS * SLOTS]; // list heads
+    private final Thread thread;
+    private long now; // last tick run
+    private int pending;
+    private long failures;
+    private volatile boolean closed;
+
+    public TimingWheel() {
+        this(DEFAULT_TICK_MILLIS, "timing-wheel");
+    }
+
+    public TimingWheel(long tickMillis, String name) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("Tick must be positive");
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        origin = System.nanoTime();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // runs task once after delayMillis, never earlier and at most about one
+    // tick later
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        if (delay / tickNanos >= (1L << (BITS * LEVELS)) - 2)
+            throw new IllegalArgumentException("Delay too long for the wheel: " + delayMillis + " ms");
+        // the first tick that starts at or after the due time
+        long due = (System.nanoTime() - origin + delay + tickNanos - 1) / tickNanos;
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Timing wheel closed");
+            Timeout t = new Timeout(task, Math.max(now + 1, due));
+            place(t);
+            pending++;
+            return t;
+        }
+    }
+
+    // timers scheduled and neither run nor cancelled
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    // tasks that threw
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    private long elapsedTicks() {
+        return (System.nanoTime() - origin) / tickNanos;
+    }
+
+    // the lowest level whose current block holds the deadline
+    private void place(Timeout t) {
+        int level = 0;
+        while (level < LEVELS - 1 && t.deadline >>> (BITS * (level + 1)) != now >>> (BITS * (level + 1)))
+            level++;
+        int index = level * SLOTS + (int) (t.deadline >>> (BITS * level) & MASK);
+        t.slot = index;
+        t.prev = null;
+        t.next = slots[index];
+        if (t.next != null)
+            t.next.prev = t;
+        slots[index] = t;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null)
+            t.prev.next = t.next;
+        else
+            slots[t.slot] = t.next;
+        if (t.next != null)
+            t.next.prev = t.prev;
+        t.prev = t.next = null;
+        t.slot = -1;
+    }
+
+    private void run() {
+        List<Runnable> due = new ArrayList<>();
+        while (!closed) {
+            long target = elapsedTicks();
+            synchronized (this) {
+                while (now < target)
+                    advance(due);
+            }
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        failures++;
+                    }
+                }
+            }
+            due.clear();
+            long next = origin + (target + 1) * tickNanos;
+            LockSupport.parkNanos(this, next - System.nanoTime());
+        }
+    }
+
+    // one tick: cascade the blocks the clock enters (highest level first, so
+    // timers can fall more than one level), then take the due slot
+    private void advance(List<Runnable> due) {
+        now++;
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((now & ((1L << (BITS * level)) - 1)) != 0)
+                continue;
+            int index = level * SLOTS + (int) (now >>> (BITS * level) & MASK);
+            Timeout t = slots[index];
+            slots[index] = null;
+            while (t != null) {
+                Timeout next = t.next;
+                place(t);
+                t = next;
+            }
+        }
+        int index = (int) (now & MASK);
+        for (Timeout t = slots[index]; t != null; t = t.next) {
+            t.slot = -1;
+            due.add(t.task);
+            pending--;
+        }
+        slots[index] = null;
+    }
+
+    // stops the wheel; pending timers never run
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// AnswerJournalTest : writes journals and reads them back, whole, cut off
+// and damaged, and checks that journals of older versions are still read
+
+class AnswerJournalTest {
+
+    @TempDir
+    Path dir;
+
+    // Log : records every replayed record as one line
+    static class Log implements AnswerJournal.Replay {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void start(long session, String name, String email, int age) {
+            lines.add("start " + session + " " + name + " " + email + " " + age);
+        }
+
+        @Override
+        public void answer(long session, int selected, int confidenceValue, int spentMillis) {
+            lines.add("answer " + session + " " + selected + " " + confidenceValue + " " + spentMillis);
+        }
+
+        @Override
+        public void timeout(long session, int end, int spentMillis) {
+            lines.add("timeout " + session + " " + end + " " + spentMillis);
+        }
+
+        @Override
+        public void end(long session) {
+            lines.add("end " + session);
+        }
+
+        @Override
+        public void resume(long session, byte[] snapshot) {
+            lines.add("resume " + session + " " + Arrays.toString(snapshot));
+        }
+    }
+
+    private static final List<String> ALL = List.of("start 1 Asha asha@example.com 17", "answer 1 2 3 1500",
+            "timeout 1 4 30000", "resume 2 [1, 2, 3]", "end 1");
+
+    private Path writeAll() throws IOException {
+        Path file = dir.resolve("answers.journal");
+        try (AnswerJournal j = new AnswerJournal(file, 0)) {
+            j.appendStart(1, "Asha", "asha@example.com", 17);
+            j.appendAnswer(1, 2, 3, 1500);
+            j.appendTimeout(1, 4, 30000);
+            j.appendResume(2, new byte[] { 1, 2, 3 });
+            j.awaitDurable(j.appendEnd(1));
+        }
+        return file;
+    }
+
+    @Test
+    void replaysEveryRecord() throws IOException {
+        Path file = writeAll();
+        Log log = new Log();
+        assertEquals(Files.size(file), AnswerJournal.replay(file, log));
+        assertEquals(ALL, log.lines);
+    }
+
+    @Test
+    void missingFileIsEmpty() throws IOException {
+        Log log = new Log();
+        assertEquals(0, AnswerJournal.replay(dir.resolve("none.journal"), log));
+        assertTrue(log.lines.isEmpty());
+    }
+
+    @Test
+    void tornTailIsCutAndAppendingContinues() throws IOException {
+        Path file = writeAll();
+        long full = Files.size(file);
+        byte[] bytes = Files.readAllBytes(file);
+        // every cut inside the last record (END: 1 + 8 + 4 bytes) keeps the rest
+        for (int cut = 1; cut < 13; cut++) {
+            Files.write(file, Arrays.copyOf(bytes, (int) full - cut));
+            Log log = new Log();
+            assertEquals(full - 13, AnswerJournal.replay(file, log));
+            assertEquals(ALL.subList(0, 4), log.lines);
+        }
+        Log log = new Log();
+        long valid = AnswerJournal.replay(file, log);
+        try (AnswerJournal j = new AnswerJournal(file, valid)) {
+            j.awaitDurable(j.appendEnd(2));
+        }
+        log = new Log();
+        AnswerJournal.replay(file, log);
+        assertEquals(List.of(ALL.get(0), ALL.get(1), ALL.get(2), ALL.get(3), "end 2"), log.lines);
+    }
+
+    @Test
+    void zeroFilledTailIsIgnored() throws IOException {
+        Path file = writeAll();
+        long full = Files.size(file);
+        Files.write(file, new byte[4096], StandardOpenOption.APPEND);
+        assertEquals(full, AnswerJournal.replay(file, new Log()));
+    }
+
+    @Test
+    void replayStopsAtTheFirstDamagedRecord() throws IOException {
+        Path file = writeAll();
+        byte[] bytes = Files.readAllBytes(file);
+        int startLength = 1 + 8 + 4 + 2 + 4 + 2 + 16 + 4;
+        // a bit flipped anywhere after the type byte of the answer record
+        for (int at = 8 + startLength + 1; at < 8 + startLength + 22; at++) {
+            byte[] damaged = bytes.clone();
+            damaged[at] ^= 0x20;
+            Files.write(file, damaged);
+            Log log = new Log();
+            assertEquals(8 + startLength, AnswerJournal.replay(file, log));
+            assertEquals(ALL.subList(0, 1), log.lines);
+        }
+    }
+
+    @Test
+    void impossibleAnswerIsNotReplayed() throws IOException {
+        // an answer with option 0 and confidence 0 but a valid checksum
+        ByteBuffer record = ByteBuffer.allocate(1 + 8 + 4 + 1 + 4 + 4);
+        record.put(AnswerJournal.CHOICE).putLong(1).putInt(0).put((byte) 0).putInt(10);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        Path file = dir.resolve("bad.journal");
+        Files.write(file, ByteBuffer.allocate(8).putInt(AnswerJournal.MAGIC).putInt(AnswerJournal.VERSION).array());
+        Files.write(file, record.array(), StandardOpenOption.APPEND);
+        Log log = new Log();
+        assertEquals(8, AnswerJournal.replay(file, log));
+        assertTrue(log.lines.isEmpty());
+    }
+
+    @Test
+    void masksAndValuesAreReplayed() throws IOException {
+        Path file = dir.resolve("typed.journal");
+        try (AnswerJournal j = new AnswerJournal(file, 0)) {
+            j.appendAnswer(1, 0b1011, 2, 10);
+            j.awaitDurable(j.appendAnswer(1, -12, 1, 20));
+        }
+        Log log = new Log();
+        AnswerJournal.replay(file, log);
+        assertEquals(List.of("answer 1 11 2 10", "answer 1 -12 1 20"), log.lines);
+    }
+
+    @Test
+    void unknownRecordTypeIsADamagedTail() throws IOException {
+        Path file = writeAll();
+        long full = Files.size(file);
+        Files.write(file, new byte[] { 99, 0, 0, 0 }, StandardOpenOption.APPEND);
+        Log log = new Log();
+        long valid = AnswerJournal.replay(file, log);
+        assertEquals(full, valid);
+        assertEquals(ALL, log.lines);
+        new AnswerJournal(file, valid).close();
+        assertEquals(full, Files.size(file));
+    }
+
+    @Test
+    void unknownRecordTypeInAnOldJournalIsAnErrorAndLeavesNoUpgradeFile() throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(64).putInt(AnswerJournal.MAGIC).putInt(3);
+        b.put(AnswerJournal.END).putLong(5);
+        b.put((byte) 99).putLong(5);
+        Path file = dir.resolve("v3.journal");
+        Files.write(file, Arrays.copyOf(b.array(), b.position()));
+        assertThrows(IOException.class, () -> AnswerJournal.replay(file, new Log()));
+        assertThrows(IOException.class, () -> new AnswerJournal(file, 8));
+        assertFalse(Files.exists(dir.resolve("v3.journal.upgrade")));
+        assertEquals(8 + 9 + 9, Files.size(file));
+    }
+
+    @Test
+    void newerVersionIsRefused() throws IOException {
+        Path file = dir.resolve("newer.journal");
+        Files.write(file, ByteBuffer.allocate(8).putInt(AnswerJournal.MAGIC).putInt(AnswerJournal.VERSION + 1)
+                .array());
+        assertThrows(IOException.class, () -> AnswerJournal.replay(file, new Log()));
+    }
+
+    @Test
+    void versionFourJournalIsReadAndUpgraded() throws IOException {
+        // a TIMED answer of version 4, with its checksum
+        ByteBuffer record = ByteBuffer.allocate(1 + 8 + 1 + 4 + 4);
+        record.put(AnswerJournal.TIMED).putLong(3).put((byte) (2 << 2 | 1)).putInt(700);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        Path file = dir.resolve("v4.journal");
+        Files.write(file, ByteBuffer.allocate(8).putInt(AnswerJournal.MAGIC).putInt(4).array());
+        Files.write(file, record.array(), StandardOpenOption.APPEND);
+        long valid = AnswerJournal.replay(file, new Log());
+        assertEquals(8 + record.capacity(), valid);
+        try (AnswerJournal j = new AnswerJournal(file, valid)) {
+            j.awaitDurable(j.appendAnswer(3, 0b0110, 3, 800));
+        }
+        assertEquals(AnswerJournal.VERSION, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(4));
+        Log log = new Log();
+        AnswerJournal.replay(file, log);
+        assertEquals(List.of("answer 3 2 1 700", "answer 3 6 3 800"), log.lines);
+    }
+
+    @Test
+    void versionOneJournalIsReadAndUpgraded() throws IOException {
+        // START, ANSWER and END of version 1, without checksums, and a torn tail
+        ByteBuffer b = ByteBuffer.allocate(128).putInt(AnswerJournal.MAGIC).putInt(1);
+        b.put(AnswerJournal.START).putLong(5).putInt(16).putShort((short) 1).put((byte) 'R').putShort((short) 3)
+                .put("r@x".getBytes());
+        b.put(AnswerJournal.ANSWER).putLong(5).put((byte) (1 << 2 | 2));
+        b.put(AnswerJournal.END).putLong(5);
+        b.put(AnswerJournal.END).putInt(0);
+        Path file = dir.resolve("v1.journal");
+        Files.write(file, Arrays.copyOf(b.array(), b.position()));
+        List<String> expected = List.of("start 5 R r@x 16", "answer 5 1 2 0", "end 5");
+
+        Log log = new Log();
+        long valid = AnswerJournal.replay(file, log);
+        assertEquals(b.position() - 5, valid);
+        assertEquals(expected, log.lines);
+
+        try (AnswerJournal j = new AnswerJournal(file, valid)) {
+            j.awaitDurable(j.appendEnd(6));
+        }
+        assertEquals(AnswerJournal.VERSION, ByteBuffer.wrap(Files.readAllBytes(file)).getInt(4));
+        log = new Log();
+        assertEquals(Files.size(file), AnswerJournal.replay(file, log));
+        List<String> upgraded = new ArrayList<>(expected);
+        upgraded.add("end 6");
+        assertEquals(upgraded, log.lines);
+    }
+
+    @Test
+    void concurrentAppendsAllArrive() throws Exception {
+        Path file = dir.resolve("concurrent.journal");
+        Thread[] threads = new Thread[8];
+        try (AnswerJournal j = new AnswerJournal(file, 0)) {
+            for (int t = 0; t < threads.length; t++) {
+                long session = t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 500; i++)
+                            j.awaitDurable(j.appendAnswer(session, i & 3, 1 + i % 3, i));
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread t : threads)
+                t.join();
+        }
+        long[] perSession = new long[threads.length];
+        AnswerJournal.replay(file, new Log() {
+            @Override
+            public void answer(long session, int selected, int confidenceValue, int spentMillis) {
+                assertEquals(perSession[(int) session]++, spentMillis);
+            }
+        });
+        long[] expected = new long[threads.length];
+        Arrays.fill(expected, 500);
+        assertArrayEquals(expected, perSession);
+    }
+}
@@ -0,0 +1,170 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// BinaryBankTest : compiles a CSV bank, reads it back through every access
+// path and checks that damaged or cut bank files are refused
+
+class BinaryBankTest {
+
+    private static final String CSV = String.join("\n",
+            "subject,subtopic,question,option1,option2,option3,option4,correct",
+            "Physics,Mechanics,\"F = ma, so a = ?\",F/m,m/F,Fm,F+m,0",
+            "Physics,Mechanics,Unit of force?,Joule,Newton,Watt,Pascal,1",
+            "Physics,Optics,\"Light is a \"\"wave\"\"?\",No,Only in vacuum,Yes,Never,2",
+            "Chemistry,Organic,Simplest alkane?,Ethane,Propane,Butane,Methane,3",
+            "");
+
+    @TempDir
+    Path dir;
+
+    private Path compile() throws IOException {
+        Path csv = dir.resolve("bank.csv"), bank = dir.resolve("bank.bin");
+        Files.writeString(csv, CSV, StandardCharsets.UTF_8);
+        BinaryBank.compile(csv, bank);
+        return bank;
+    }
+
+    @Test
+    void compiledBankHoldsTheCsv() throws IOException {
+        BinaryBank bank = BinaryBank.open(compile());
+        assertEquals(2, bank.getSubjectCount());
+        assertEquals(3, bank.getSubtopicCount());
+        assertEquals(4, bank.getQuestionCount());
+        assertEquals("Chemistry", bank.getSubjectName(1));
+        assertArrayEquals(new int[][] { { 2, 1 }, { 1 } }, bank.getSubtopicSizes());
+
+        Subject physics = bank.buildSubject(0);
+        assertEquals("Optics", physics.getSubtopics().get(1).getName());
+        MCQQuestion q = physics.getSubtopics().get(0).getQuestions().get(0);
+        assertEquals("F = ma, so a = ?", q.getText());
+        assertArrayEquals(new String[] { "F/m", "m/F", "Fm", "F+m" }, q.getOptions());
+        assertEquals(0, q.getCorrectAnswer());
+        assertEquals("Light is a \"wave\"?", bank.buildQuestions(0).get(1).get(0).getText());
+        assertEquals(3, bank.buildQuestions(1).get(0).get(0).getCorrectAnswer());
+    }
+
+    @Test
+    void streamGivesTheRowsInFileOrder() throws IOException {
+        List<String> rows = new ArrayList<>();
+        BinaryBank.open(compile()).stream((subject, subtopic, text, options, type, correct) -> rows
+                .add(subject + "|" + subtopic + "|" + text + "|" + String.join("/", options) + "|" + correct));
+        assertEquals(List.of("Physics|Mechanics|F = ma, so a = ?|F/m/m/F/Fm/F+m|0",
+                "Physics|Mechanics|Unit of force?|Joule/Newton/Watt/Pascal|1",
+                "Physics|Optics|Light is a \"wave\"?|No/Only in vacuum/Yes/Never|2",
+                "Chemistry|Organic|Simplest alkane?|Ethane/Propane/Butane/Methane|3"), rows);
+    }
+
+    private static final String TYPED_CSV = String.join("\n",
+            "Physics,Mechanics,Vector quantities?,Force,Mass,Velocity,Time,0+2",
+            "Physics,Mechanics,Scalar quantity?,Force,Mass,Velocity,Time,1+",
+            "Maths,Algebra,2 - 14 = ?,,,,,=-12",
+            "Maths,Algebra,Largest?,1,4,3,2,1",
+            "");
+
+    @Test
+    void typesAndKeysRoundTrip() throws IOException {
+        Path csv = dir.resolve("typed.csv"), file = dir.resolve("typed.bin");
+        Files.writeString(csv, TYPED_CSV, StandardCharsets.UTF_8);
+        BinaryBank.compile(csv, file);
+        BinaryBank bank = BinaryBank.open(file);
+        List<MCQQuestion> mechanics = bank.buildQuestions(0).get(0), algebra = bank.buildQuestions(1).get(0);
+        assertEquals(ScoringRules.MULTIPLE, mechanics.get(0).getType());
+        assertEquals(0b0101, mechanics.get(0).getCorrectAnswer());
+        assertEquals(0b0010, mechanics.get(1).getCorrectAnswer());
+        assertEquals(ScoringRules.NUMERIC, algebra.get(0).getType());
+        assertEquals(-12, algebra.get(0).getCorrectAnswer());
+        assertEquals(ScoringRules.SINGLE, algebra.get(1).getType());
+        assertEquals(1, algebra.get(1).getCorrectAnswer());
+
+        QuestionStore store = QuestionStore.fromBank(bank);
+        for (int q = 0; q < 4; q++) {
+            MCQQuestion built = q < 2 ? mechanics.get(q) : algebra.get(q - 2);
+            assertEquals(built.getType(), store.getType(q));
+            assertEquals(built.getCorrectAnswer(), store.getCorrectAnswer(q));
+        }
+        assertThrows(IOException.class, () -> {
+            Files.writeString(csv, "Maths,Algebra,Bad,a,b,c,d,0+4\n", StandardCharsets.UTF_8);
+            BinaryBank.compile(csv, file);
+        });
+    }
+
+    // the bank in the layout of version 1: 24 byte question records without
+    // the type, mask and value
+    private static byte[] toVersionOne(byte[] bytes) {
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        int questions = b.getInt(16), questionTable = b.getInt(28), stringPool = b.getInt(32);
+        ByteBuffer v1 = ByteBuffer.allocate(bytes.length - questions * 4);
+        v1.put(bytes, 0, questionTable);
+        for (int q = 0; q < questions; q++) {
+            int rec = questionTable + q * BinaryBank.QUESTION_SIZE;
+            v1.put(bytes, rec, 21).put(new byte[3]);
+        }
+        v1.put(bytes, stringPool, bytes.length - stringPool);
+        return v1.putInt(4, 1).putInt(32, stringPool - questions * 4).array();
+    }
+
+    @Test
+    void versionOneBankIsStillRead() throws IOException {
+        Path file = dir.resolve("v1.bin");
+        Files.write(file, toVersionOne(Files.readAllBytes(compile())));
+        BinaryBank bank = BinaryBank.open(file);
+        MCQQuestion q = bank.buildQuestions(1).get(0).get(0);
+        assertEquals("Simplest alkane?", q.getText());
+        assertEquals(ScoringRules.SINGLE, q.getType());
+        assertEquals(3, q.getCorrectAnswer());
+        assertEquals(1, QuestionStore.fromBank(bank).getCorrectAnswer(1));
+    }
+
+    @Test
+    void loadIntoBuildsTheWholeModel() throws IOException {
+        Student student = new Student("Asha", "asha@example.com", 17);
+        BinaryBank.open(compile()).loadInto(student);
+        assertEquals(2, student.getSubjects().size());
+        assertEquals("Unit of force?",
+                student.getSubjects().get(0).getSubtopics().get(0).getQuestions().get(1).getText());
+    }
+
+    @Test
+    void otherFilesAreRefused() throws IOException {
+        byte[] bytes = Files.readAllBytes(compile());
+        Path file = dir.resolve("damaged.bin");
+
+        byte[] magic = bytes.clone();
+        magic[0] ^= 0x01;
+        Files.write(file, magic);
+        assertThrows(IOException.class, () -> BinaryBank.open(file));
+
+        byte[] version = bytes.clone();
+        ByteBuffer.wrap(version).putInt(4, BinaryBank.VERSION + 1);
+        Files.write(file, version);
+        assertThrows(IOException.class, () -> BinaryBank.open(file));
+
+        Files.write(file, Arrays.copyOf(bytes, BinaryBank.HEADER_SIZE - 1));
+        assertThrows(IOException.class, () -> BinaryBank.open(file));
+    }
+
+    @Test
+    void cutBankIsRefused() throws IOException {
+        byte[] bytes = Files.readAllBytes(compile());
+        int stringPool = ByteBuffer.wrap(bytes).getInt(32);
+        Path file = dir.resolve("cut.bin");
+        for (int length = BinaryBank.HEADER_SIZE; length < stringPool; length += 7) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> BinaryBank.open(file), "length " + length);
+        }
+    }
+}
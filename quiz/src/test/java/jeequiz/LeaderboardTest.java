@@ -0,0 +1,102 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+// LeaderboardTest : fills boards with random scores and checks rank,
+// percentile and top-K against a plain count over all students
+
+class LeaderboardTest {
+
+    // one subject of 10 questions: -10..40 on its board, -30..120 overall
+    private static List<Subject> bank() {
+        Subtopic st = new Subtopic("Mechanics");
+        for (int i = 0; i < 10; i++)
+            st.addQuestion(new MCQQuestion("Q" + i, new String[] { "a", "b", "c", "d" }, i & 3, 0));
+        Subject physics = new Subject("Physics");
+        physics.addSubtopic(st);
+        return List.of(physics);
+    }
+
+    @Test
+    void rankAndPercentileFollowTheScores() {
+        Leaderboard lb = new Leaderboard(bank());
+        Random random = new Random(42);
+        int n = 500;
+        int[] total = new int[n];
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < n; i++) {
+                total[i] = random.nextInt(151) - 30;
+                lb.update("s" + i, "Student " + i, total[i], 0, total[i] / 3);
+            }
+        }
+        Leaderboard.Board board = lb.getOverall();
+        assertEquals(n, board.size());
+        for (int i = 0; i < n; i++) {
+            int higher = 0, lower = 0, same = 0;
+            for (int score : total) {
+                if (score > total[i])
+                    higher++;
+                else if (score < total[i])
+                    lower++;
+                else
+                    same++;
+            }
+            assertEquals(higher + 1, board.getRank("s" + i));
+            assertEquals((lower + same / 2.0) / n * 100, board.getPercentile("s" + i), 1e-9);
+        }
+        assertEquals(-1, board.getRank("nobody"));
+        assertEquals(-1, board.getPercentile("nobody"));
+    }
+
+    @Test
+    void topKIsOrderedAndConsistentWithRank() {
+        Leaderboard lb = new Leaderboard(bank());
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            int score = random.nextInt(51) - 10;
+            lb.update("s" + i, "Student " + i, score * 3, 0, score);
+        }
+        Leaderboard.Board board = lb.getBoard("physics");
+        List<Leaderboard.Entry> top = board.topK(25);
+        assertEquals(25, top.size());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getScore() >= top.get(i).getScore());
+            int rank = board.getRank(top.get(i).getKey());
+            assertTrue(rank <= i + 1, "rank " + rank + " at place " + (i + 1));
+        }
+        assertEquals(1, board.getRank(top.get(0).getKey()));
+        assertEquals(200, board.topK(1000).size());
+    }
+
+    @Test
+    void scoresOutsideTheRangeAreClamped() {
+        Leaderboard lb = new Leaderboard(bank());
+        lb.update("high", "High", 10_000, 0, 10_000);
+        lb.update("low", "Low", -10_000, 0, -10_000);
+        assertEquals(120, lb.getOverall().get("high").getScore());
+        assertEquals(-30, lb.getOverall().get("low").getScore());
+        assertEquals(40, lb.getSubject(0).get("high").getScore());
+        assertEquals(100.0 * 0.75, lb.getOverall().getPercentile("high"), 1e-9);
+    }
+
+    @Test
+    void newStudentsStartAtZeroOnEveryBoard() {
+        Leaderboard lb = new Leaderboard(bank());
+        lb.add("a", "A");
+        lb.add("b", "B");
+        lb.update("b", "B", 12, 0, 4);
+        assertEquals(2, lb.getOverall().getRank("a"));
+        assertEquals(1, lb.getSubject(0).getRank("b"));
+        assertEquals(25.0, lb.getOverall().getPercentile("a"), 1e-9);
+        List<String> keys = new ArrayList<>();
+        for (Leaderboard.Entry e : lb.getOverall().topK(10))
+            keys.add(e.getKey());
+        assertEquals(List.of("b", "a"), keys);
+    }
+}
@@ -0,0 +1,132 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// ResultStoreTest : stores students, reopens the file and reads them back,
+// across a growth of the table, and checks that a damaged record reads as
+// missing
+
+class ResultStoreTest {
+
+    @TempDir
+    Path dir;
+
+    // two subjects with 2 and 1 subtopics
+    private static List<Subject> shape() {
+        Subject physics = new Subject("Physics"), chemistry = new Subject("Chemistry");
+        physics.addSubtopic(new Subtopic("Mechanics"));
+        physics.addSubtopic(new Subtopic("Optics"));
+        chemistry.addSubtopic(new Subtopic("Organic"));
+        return List.of(physics, chemistry);
+    }
+
+    private static Student student(int i) {
+        Student s = new Student("Student " + i, "s" + i + "@example.com", 16 + i % 4);
+        s.addScore(i * 3 - 50);
+        int t = 0;
+        for (Subject subject : shape()) {
+            Subject copy = new Subject(subject.getName());
+            for (Subtopic st : subject.getSubtopics()) {
+                Subtopic scored = new Subtopic(st.getName());
+                scored.restore(i + t, 2 * i + t, 3 * i + t);
+                copy.addSubtopic(scored);
+                t++;
+            }
+            s.addSubject(copy);
+        }
+        return s;
+    }
+
+    @Test
+    void studentsSurviveReopenAndGrowth() throws IOException {
+        Path file = dir.resolve("results.store");
+        int n = ResultStore.INITIAL_CAPACITY * 2;
+        try (ResultStore store = ResultStore.open(file, 3, false)) {
+            for (int i = 0; i < n; i++)
+                store.put(student(i));
+            store.put(student(7)); // replaces, does not add
+            assertEquals(n, store.size());
+            assertTrue(store.getCapacity() > ResultStore.INITIAL_CAPACITY);
+        }
+        try (ResultStore store = ResultStore.open(file, 3, false)) {
+            assertEquals(n, store.size());
+            for (int i = 0; i < n; i += 97) {
+                Student loaded = store.load("S" + i + "@Example.com", shape());
+                assertEquals("Student " + i, loaded.getName());
+                assertEquals(16 + i % 4, loaded.getAge());
+                assertEquals(i * 3 - 50, loaded.getTotalScore());
+                Subtopic optics = loaded.getSubjects().get(0).getSubtopics().get(1);
+                assertEquals(i + 1, optics.getScore());
+                assertEquals(2 * i + 1, optics.getTotalConfidence());
+                assertEquals(3 * i + 1, optics.getTotalMaxConfidence());
+                assertEquals(i + 2, store.getSubtopicScore("s" + i + "@example.com", 2));
+            }
+            assertNull(store.load("nobody@example.com", shape()));
+            assertEquals(Integer.MIN_VALUE, store.getTotalScore("nobody@example.com"));
+        }
+    }
+
+    @Test
+    void damagedRecordReadsAsMissing() throws IOException {
+        Path file = dir.resolve("damaged.store");
+        try (ResultStore store = ResultStore.open(file, 3, true)) {
+            store.put(student(1));
+            store.put(student(2));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] name = "Student 1".getBytes(StandardCharsets.UTF_8);
+        int at = indexOf(bytes, name);
+        bytes[at] ^= 0x01;
+        Files.write(file, bytes);
+        try (ResultStore store = ResultStore.open(file, 3, false)) {
+            assertFalse(store.contains("s1@example.com"));
+            assertNull(store.load("s1@example.com", shape()));
+            assertTrue(store.contains("s2@example.com"));
+            int readable = 0;
+            ResultStore.Record r = store.newRecord();
+            for (int slot = 0; slot < store.getCapacity(); slot++)
+                if (store.read(slot, r))
+                    readable++;
+            assertEquals(1, readable);
+        }
+    }
+
+    @Test
+    void storeOfAnotherBankIsRefused() throws IOException {
+        Path file = dir.resolve("other.store");
+        ResultStore.open(file, 3, false).close();
+        assertThrows(IOException.class, () -> ResultStore.open(file, 4, false));
+    }
+
+    @Test
+    void cutStoreIsRefused() throws IOException {
+        Path file = dir.resolve("cut.store");
+        ResultStore.open(file, 3, false).close();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> ResultStore.open(file, 3, false));
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            for (int j = 0; j < needle.length; j++)
+                if (haystack[i + j] != needle[j])
+                    continue outer;
+            return i;
+        }
+        throw new AssertionError("not found");
+    }
+}
@@ -0,0 +1,142 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// ScoringRulesTest : checks the compiled marks of single, numeric and multiple
+// answer questions (with partial marks), the spec syntax, and that a bank
+// with all three types is marked, journaled, replayed and resumed by the
+// engine with the same scores
+
+class ScoringRulesTest {
+
+    @TempDir
+    Path dir;
+
+    private static int mark(ScoringRules.Rule rule, int type, int key, int selected, int confidence) {
+        return rule.total(rule.outcome(type, key, selected), confidence);
+    }
+
+    @Test
+    void defaultMarksOfEveryType() {
+        ScoringRules.Rule rule = ScoringRules.DEFAULT.forSubject("Physics");
+        assertEquals(8, mark(rule, ScoringRules.SINGLE, 2, 2, 2));
+        assertEquals(-3, mark(rule, ScoringRules.SINGLE, 2, 1, 3));
+        assertEquals(4, mark(rule, ScoringRules.NUMERIC, -12, -12, 1));
+        assertEquals(0, mark(rule, ScoringRules.NUMERIC, -12, 12, 3));
+        assertEquals(4, rule.max(ScoringRules.SINGLE));
+        assertEquals(-1, rule.min(ScoringRules.SINGLE));
+        assertEquals(0, rule.min(ScoringRules.NUMERIC));
+    }
+
+    @Test
+    void multipleAnswersGetPartialMarks() {
+        ScoringRules.Rule rule = ScoringRules.parse("multiple:4/-2/1").forSubject("Physics");
+        int key = 0b1011; // options 0, 1 and 3
+        assertEquals(4, mark(rule, ScoringRules.MULTIPLE, key, key, 1));
+        assertEquals(1, mark(rule, ScoringRules.MULTIPLE, key, 0b0001, 1));
+        assertEquals(2, mark(rule, ScoringRules.MULTIPLE, key, 0b1001, 1));
+        assertEquals(6, mark(rule, ScoringRules.MULTIPLE, key, 0b1010, 3));
+        assertEquals(-2, mark(rule, ScoringRules.MULTIPLE, key, 0b0100, 1));
+        assertEquals(-6, mark(rule, ScoringRules.MULTIPLE, key, 0b1111, 3));
+        assertTrue(ScoringRules.isCorrect(rule.outcome(ScoringRules.MULTIPLE, key, key)));
+        assertFalse(ScoringRules.isCorrect(rule.outcome(ScoringRules.MULTIPLE, key, 0b0011)));
+        assertEquals(2, rule.section(rule.outcome(ScoringRules.MULTIPLE, key, 0b0011)));
+    }
+
+    @Test
+    void sectionsOverrideOnlyTheTypesTheyName() {
+        ScoringRules rules = ScoringRules.parse("single:3/-1,numeric:4/-1;Maths=numeric:5/0");
+        ScoringRules.Rule paper = rules.forSubject("Physics"), maths = rules.forSubject("MATHS");
+        assertEquals(-1, mark(paper, ScoringRules.NUMERIC, 7, 8, 1));
+        assertEquals(5, mark(maths, ScoringRules.NUMERIC, 7, 7, 1));
+        assertEquals(0, mark(maths, ScoringRules.NUMERIC, 7, 8, 1));
+        assertEquals(3, mark(maths, ScoringRules.SINGLE, 0, 0, 1));
+        assertEquals(1, mark(maths, ScoringRules.MULTIPLE, 0b11, 0b01, 1));
+        assertEquals("single:3/-1,numeric:5/0,multiple:4/-2/1", maths.toString());
+    }
+
+    @Test
+    void badSpecsAreRefused() {
+        for (String spec : new String[] { "single:4", "multiple:4/-2", "numeric:4/x", "essay:4/0", "single" })
+            assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(spec), spec);
+    }
+
+    @Test
+    void answersAreParsedAndCheckedByType() {
+        assertEquals(2, QuestionBankLoader.parseAnswer("2", ScoringRules.SINGLE));
+        assertEquals(0b0101, QuestionBankLoader.parseAnswer("0+2", ScoringRules.MULTIPLE));
+        assertEquals(0b1000, QuestionBankLoader.parseAnswer("3+", ScoringRules.MULTIPLE));
+        assertEquals(-12, QuestionBankLoader.parseAnswer(" -12 ", ScoringRules.NUMERIC));
+        for (String bad : new String[] { "4", "0+0", "+1", "1++2", "", "12" })
+            assertThrows(IllegalArgumentException.class,
+                    () -> QuestionBankLoader.parseAnswer(bad, ScoringRules.MULTIPLE), bad);
+        assertThrows(IllegalArgumentException.class, () -> QuestionBankLoader.parseAnswer("1+", ScoringRules.SINGLE));
+        assertThrows(IllegalArgumentException.class, () -> QuestionBankLoader.parseAnswer("1.5", ScoringRules.NUMERIC));
+        assertFalse(ScoringRules.isValid(ScoringRules.MULTIPLE, 0));
+        assertFalse(ScoringRules.isValid(ScoringRules.SINGLE, 4));
+        assertTrue(ScoringRules.isValid(ScoringRules.NUMERIC, Integer.MIN_VALUE));
+    }
+
+    private static final String CSV = String.join("\n",
+            "subject,subtopic,question,option1,option2,option3,option4,correct",
+            "Physics,Mechanics,Unit of force?,Joule,Newton,Watt,Pascal,1",
+            "Physics,Mechanics,Vector quantities?,Force,Mass,Velocity,Time,0+2",
+            "Physics,Mechanics,Work done lifting 3 N by -4 m in J?,,,,,=-12",
+            "Physics,Mechanics,Scalar quantities?,Force,Mass,Velocity,Time,1+3",
+            "");
+
+    @Test
+    void engineMarksJournalsAndResumesEveryType() throws IOException {
+        Path csv = dir.resolve("typed.csv"), bankFile = dir.resolve("typed.bank");
+        Files.writeString(csv, CSV, StandardCharsets.UTF_8);
+        BinaryBank.compile(csv, bankFile);
+        BinaryBank bank = BinaryBank.open(bankFile);
+        Path journal = dir.resolve("typed.journal");
+        String id;
+        byte[] snapshot;
+        try (QuizEngine engine = new QuizEngine(bank, journal)) {
+            id = engine.startSession("Asha", "asha@example.com", 17);
+            assertThrows(IllegalArgumentException.class, () -> engine.submitAnswer(id, 4, 2));
+            engine.submitAnswer(id, 1, 2); // correct: +4 x 2
+            assertThrows(IllegalArgumentException.class, () -> engine.submitAnswer(id, 0, 2));
+            engine.submitAnswer(id, 0b0001, 2); // one of two options: +1 x 2
+            engine.submitAnswer(id, -12, 2); // correct value: +4 x 2
+            snapshot = engine.snapshot(id);
+            engine.submitAnswer(id, 0b0011, 2); // a wrong option: -2 x 2
+
+            Student student = engine.getSession(id).getStudent();
+            assertEquals(14, student.getTotalScore());
+            assertEquals(7, student.getSubjects().get(0).getTotalScore());
+
+            // the resumed copy keeps the partial and numeric marks
+            String resumed = engine.resumeSession(snapshot);
+            Student copy = engine.getSession(resumed).getStudent();
+            assertEquals(18, copy.getTotalScore());
+            assertEquals(9, copy.getSubjects().get(0).getTotalScore());
+            engine.submitAnswer(resumed, 0b1010, 1); // all right options: +4 x 1
+            assertEquals(22, copy.getTotalScore());
+
+            // every option of a multiple answer counts, a numeric answer picks none
+            assertArrayEquals(new long[] { 1, 0, 0, 0 }, engine.getCohortStats().getDistribution(0, 0, 1));
+            assertArrayEquals(new long[] { 1, 2, 0, 1 }, engine.getCohortStats().getDistribution(0, 0, 3));
+            ItemAnalysis items = engine.getItemAnalysis();
+            assertEquals(1, items.getAnswers(2));
+            assertEquals(0, items.getOptionCount(2, 0));
+            assertEquals(1.0, items.getDifficulty(2));
+        }
+        try (QuizEngine replayed = new QuizEngine(bank, journal)) {
+            assertEquals(14, replayed.getSession(id).getStudent().getTotalScore());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// SessionRouterTest : starts two QuizServer processes, routes sessions to them
+// through a SessionRouter and adds and removes workers, checking that every
+// session keeps its router id and its state, and that answers given after a
+// move land on the session's new worker, and that stored results are found
+// after their student's email moved to another worker
+
+class SessionRouterTest {
+
+    private static final int SESSIONS = 30;
+
+    @TempDir
+    Path dir;
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final List<Process> workers = new ArrayList<>();
+    private String a, b;
+    private SessionRouter router;
+
+    @BeforeEach
+    void startWorkers() throws Exception {
+        a = startWorker();
+        b = startWorker();
+        router = new SessionRouter(0, List.of(a));
+        router.start();
+    }
+
+    @AfterEach
+    void stopAll() {
+        if (router != null)
+            router.stop();
+        for (Process p : workers)
+            p.destroy();
+    }
+
+    private String startWorker() throws Exception {
+        int port;
+        try (ServerSocket s = new ServerSocket(0)) {
+            port = s.getLocalPort();
+        }
+        Path classes = Paths.get(QuizServer.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String results = dir.resolve("worker-" + port + ".store").toString();
+        workers.add(new ProcessBuilder(java, "-cp", classes.toString(), "jeequiz.QuizServer", Integer.toString(port),
+                "-", "-", results).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start());
+        String worker = "127.0.0.1:" + port;
+        long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+        while (true) {
+            try {
+                if (get(worker, "/cohort").statusCode() == 200)
+                    return worker;
+            } catch (IOException e) {
+                // not listening yet
+            }
+            if (System.nanoTime() > deadline)
+                throw new AssertionError("Worker on port " + port + " did not start");
+            Thread.sleep(100);
+        }
+    }
+
+    private HttpResponse<String> get(String host, String pathAndQuery) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri(host, pathAndQuery)).GET());
+    }
+
+    private HttpResponse<String> post(String host, String pathAndQuery) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(uri(host, pathAndQuery)).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.timeout(Duration.ofSeconds(30)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(String host, String pathAndQuery) {
+        try {
+            return new URI("http://" + host + pathAndQuery);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private String routed(String pathAndQuery) throws IOException, InterruptedException {
+        HttpResponse<String> r = get("127.0.0.1:" + router.getPort(), pathAndQuery);
+        assertEquals(200, r.statusCode(), pathAndQuery + ": " + r.body());
+        return r.body();
+    }
+
+    private void answer(String id, int option) throws IOException, InterruptedException {
+        HttpResponse<String> r = post("127.0.0.1:" + router.getPort(),
+                "/answer?session=" + id + "&option=" + option + "&confidence=2");
+        assertEquals(200, r.statusCode(), r.body());
+    }
+
+    // score of every student on a worker's overall board, by student name
+    private Map<String, Integer> board(String worker) throws IOException, InterruptedException {
+        Map<String, Integer> scores = new HashMap<>();
+        String body = get(worker, "/leaderboard?board=overall&k=1000").body();
+        for (String line : body.split("\n")) {
+            int dot = line.indexOf(". "), open = line.lastIndexOf(" ("), close = line.lastIndexOf(") ");
+            if (dot > 0 && open > dot && close > open)
+                scores.put(line.substring(dot + 2, open), Integer.parseInt(line.substring(close + 2).trim()));
+        }
+        return scores;
+    }
+
+    @Test
+    void sessionsFollowTheRing() throws Exception {
+        List<String> ids = new ArrayList<>(), results = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            String id = routed("/start?name=Student" + i + "&email=s" + i + "@example.com&age=17").trim();
+            for (int k = 0; k < 3; k++)
+                answer(id, (i + k) & 3);
+            ids.add(id);
+            results.add(routed("/results?session=" + id));
+        }
+        assertEquals(SESSIONS, board(a).size());
+
+        // adding b moves exactly the sessions b now owns; their state comes along
+        HashRing both = new HashRing(List.of(a, b));
+        List<Integer> toB = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++)
+            if (both.owner("s" + i + "@example.com").equals(b))
+                toB.add(i);
+        assertTrue(!toB.isEmpty() && toB.size() < SESSIONS, "ring gave b " + toB.size() + " sessions");
+        int[] moved = router.addWorker(b);
+        assertEquals(toB.size(), moved[0]);
+        assertEquals(0, moved[1]);
+        assertEquals(List.of(a, b), router.getWorkers());
+        for (int i = 0; i < SESSIONS; i++)
+            assertEquals(results.get(i), routed("/results?session=" + ids.get(i)), "session " + i);
+
+        // an answer to a moved session changes its score on b only
+        int i0 = toB.get(0);
+        String name = "Student" + i0;
+        int before = board(a).get(name);
+        assertEquals(before, board(b).get(name));
+        answer(ids.get(i0), 1);
+        answer(ids.get(i0), 2);
+        assertNotEquals(results.get(i0), routed("/results?session=" + ids.get(i0)));
+        assertEquals(before, board(a).get(name));
+        assertNotEquals(before, board(b).get(name));
+
+        // removing a moves everything left to b under the same ids
+        for (int i = 0; i < SESSIONS; i++)
+            results.set(i, routed("/results?session=" + ids.get(i)));
+        moved = router.removeWorker(a);
+        assertEquals(SESSIONS - toB.size(), moved[0]);
+        assertEquals(0, moved[1]);
+        assertEquals(List.of(b), router.getWorkers());
+        for (int i = 0; i < SESSIONS; i++)
+            assertEquals(results.get(i), routed("/results?session=" + ids.get(i)), "session " + i);
+        Map<String, Integer> onA = board(a);
+        assertEquals(SESSIONS, board(b).size());
+        for (int i = 0; i < SESSIONS; i++) {
+            if (toB.contains(i))
+                continue;
+            int onB = board(b).get("Student" + i);
+            answer(ids.get(i), 3);
+            answer(ids.get(i), 0);
+            assertEquals(onA.get("Student" + i), board(a).get("Student" + i));
+            assertNotEquals(onB, board(b).get("Student" + i));
+        }
+        String workers = routed("/workers");
+        assertTrue(workers.contains(b + " sessions=" + SESSIONS), workers);
+
+        // an ended session is gone from the router
+        routed("/end?session=" + ids.get(0));
+        assertEquals(404, get("127.0.0.1:" + router.getPort(), "/results?session=" + ids.get(0)).statusCode());
+    }
+
+    @Test
+    void storedResultsAreFoundAfterTheRingChanged() throws Exception {
+        // a student whose email will belong to b finishes the quiz on a
+        HashRing both = new HashRing(List.of(a, b));
+        int i = 0;
+        while (!both.owner("s" + i + "@example.com").equals(b))
+            i++;
+        String email = "s" + i + "@example.com";
+        String id = routed("/start?name=Student" + i + "&email=" + email + "&age=17").trim();
+        while (!routed("/question?session=" + id).contains("finished=true"))
+            answer(id, 1);
+        // the store keeps the scores, not the calibration and times
+        String total = routed("/results?session=" + id).split("\n")[1];
+        String stored = routed("/student?email=" + email);
+        assertTrue(total.startsWith("Total Score: ") && stored.contains(total + "\n"), stored);
+
+        router.addWorker(b);
+        assertEquals(404, get(b, "/student?email=" + email).statusCode());
+        assertEquals(stored, routed("/student?email=" + email));
+        assertEquals(404, get("127.0.0.1:" + router.getPort(), "/student?email=nobody@example.com").statusCode());
+    }
+}
@@ -0,0 +1,135 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+
+// SessionSnapshotTest : takes snapshots of sessions of the demo bank, resumes
+// them and checks that the copy behaves like the original, and that damaged
+// or cut snapshots are refused
+
+class SessionSnapshotTest {
+
+    private static String answerSome(QuizEngine engine, int answers) {
+        String id = engine.startSession("Asha", "asha@example.com", 17);
+        for (int i = 0; i < answers; i++)
+            engine.submitAnswer(id, i % 4, 1 + i % 3);
+        return id;
+    }
+
+    @Test
+    void resumedSessionMatchesTheOriginal() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            String id = answerSome(engine, 7);
+            String copy = engine.resumeSession(engine.snapshot(id));
+            assertEquals(engine.getResults(id), engine.getResults(copy));
+            assertEquals(engine.getCurrentQuestion(id).getText(), engine.getCurrentQuestion(copy).getText());
+            for (int i = 0; i < 5; i++) {
+                engine.submitAnswer(id, i % 4, 2);
+                engine.submitAnswer(copy, i % 4, 2);
+            }
+            assertEquals(engine.getResults(id), engine.getResults(copy));
+        }
+    }
+
+    @Test
+    void snapshotFieldsRoundTrip() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            String id = answerSome(engine, 3);
+            SessionSnapshot s = SessionSnapshot.read(engine.snapshot(id));
+            assertEquals("Asha", s.getName());
+            assertEquals("asha@example.com", s.getEmail());
+            assertEquals(17, s.getAge());
+            assertEquals(engine.getSession(id).isQuizFinished(), s.isFinished());
+        }
+    }
+
+    @Test
+    void finishedSessionStaysFinished() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            String id = engine.startSession("Ravi", "ravi@example.com", 18);
+            while (engine.submitAnswer(id, 1, 3))
+                ;
+            String copy = engine.resumeSession(engine.snapshot(id));
+            assertTrue(engine.getSession(copy).isQuizFinished());
+            assertEquals(engine.getResults(id), engine.getResults(copy));
+        }
+    }
+
+    @Test
+    void damagedSnapshotIsRefused() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            byte[] snapshot = engine.snapshot(answerSome(engine, 4));
+            for (int at = 0; at < snapshot.length; at++) {
+                byte[] damaged = snapshot.clone();
+                damaged[at] ^= 0x01;
+                assertThrows(IOException.class, () -> SessionSnapshot.read(damaged), "byte " + at);
+            }
+        }
+    }
+
+    // the snapshot with the leading run of answered positions (after the cursor,
+    // before one word and the CRC) replaced by the given varint, resealed
+    private static byte[] withRun(byte[] snapshot, byte... run) {
+        int at = snapshot.length - 4 - 8 - 1 - 1;
+        ByteBuffer b = ByteBuffer.allocate(snapshot.length - 1 + run.length);
+        b.put(snapshot, 0, at).put(run).put(snapshot, at + 1, snapshot.length - 4 - at - 1);
+        CRC32C crc = new CRC32C();
+        crc.update(b.array(), 0, b.position());
+        return b.putInt((int) crc.getValue()).array();
+    }
+
+    @Test
+    void runOutsideThePlanIsRefused() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            byte[] snapshot = engine.snapshot(answerSome(engine, 4));
+            assertEquals(4, snapshot[snapshot.length - 14]);
+            assertEquals(engine.getResults(engine.resumeSession(snapshot)),
+                    engine.getResults(engine.resumeSession(withRun(snapshot, (byte) 4))));
+            byte[] negative = withRun(snapshot, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x0F);
+            assertThrows(IOException.class, () -> SessionSnapshot.read(negative));
+            byte[] huge = withRun(snapshot, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x07);
+            assertThrows(IllegalArgumentException.class, () -> engine.resumeSession(huge));
+        }
+    }
+
+    @Test
+    void snapshotOfAnotherBankLeavesTheQuizUntouched() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            SessionSnapshot s = SessionSnapshot.read(engine.snapshot(answerSome(engine, 4)));
+            // the same subjects and subtopics, but one question in each
+            Student student = s.newStudent();
+            for (Subject subject : engine.getSession(answerSome(engine, 0)).getStudent().getSubjects()) {
+                Subject copy = new Subject(subject.getName());
+                for (Subtopic st : subject.getSubtopics()) {
+                    Subtopic one = new Subtopic(st.getName());
+                    one.addQuestion(new MCQQuestion("Q", new String[] { "a", "b", "c", "d" }, 0, 0));
+                    copy.addSubtopic(one);
+                }
+                student.addSubject(copy);
+            }
+            Quiz quiz = new Quiz(student);
+            assertThrows(IllegalArgumentException.class, () -> s.applyTo(quiz));
+            assertNull(quiz.getAnswered());
+            assertNull(quiz.getShuffle());
+        }
+    }
+
+    @Test
+    void cutSnapshotIsRefused() throws IOException {
+        try (QuizEngine engine = new QuizEngine()) {
+            byte[] snapshot = engine.snapshot(answerSome(engine, 4));
+            for (int length = 0; length < snapshot.length; length++) {
+                byte[] cut = Arrays.copyOf(snapshot, length);
+                assertThrows(IOException.class, () -> SessionSnapshot.read(cut), "length " + length);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+
+// ShuffleTest : checks that every seeded order is a bijection, for the small
+// (Fisher-Yates) and the large (rounds) sizes, that option() and displayed()
+// are inverse, that answers map back by question type, and that orders
+// depend only on the seed
+
+class ShuffleTest {
+
+    @Test
+    void permuteIsABijection() {
+        int[] sizes = { 1, 2, 3, 4, 15, 16, 17, 31, 64, 100, 1000, 4097, 65_537 };
+        for (long key : new long[] { 0, 1, -1, 0x1234_5678_9ABCL }) {
+            for (int n : sizes) {
+                BitSet seen = new BitSet(n);
+                for (int i = 0; i < n; i++) {
+                    int p = Shuffle.permute(key, n, i);
+                    assertTrue(p >= 0 && p < n, "position " + p + " of " + n);
+                    assertTrue(!seen.get(p), "position " + p + " twice for n " + n);
+                    seen.set(p);
+                }
+                assertEquals(n, seen.cardinality());
+            }
+        }
+    }
+
+    @Test
+    void indexOutsideTheRangeIsRefused() {
+        assertThrows(IndexOutOfBoundsException.class, () -> Shuffle.permute(1, 4, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> Shuffle.permute(1, 100, -1));
+    }
+
+    @Test
+    void displayedIsTheInverseOfOption() {
+        Shuffle s = new Shuffle(99);
+        for (int position = 0; position < 200; position++)
+            for (int d = 0; d < 4; d++)
+                assertEquals(d, s.displayed(position, 4, s.option(position, 4, d)));
+    }
+
+    @Test
+    void answersAreMappedByType() {
+        Shuffle s = new Shuffle(99);
+        for (int position = 0; position < 50; position++) {
+            int both = 1 << s.option(position, 4, 0) | 1 << s.option(position, 4, 3);
+            assertEquals(both, s.answer(position, 4, ScoringRules.MULTIPLE, 0b1001));
+            assertEquals(s.option(position, 4, 2), s.answer(position, 4, ScoringRules.SINGLE, 2));
+            assertEquals(-12, s.answer(position, 4, ScoringRules.NUMERIC, -12));
+        }
+    }
+
+    @Test
+    void questionOrderCoversTheSubtopic() {
+        Shuffle s = Shuffle.forStudent("asha@example.com", 2024);
+        BitSet seen = new BitSet();
+        for (int slot = 0; slot < 250; slot++)
+            seen.set(s.question(1000, 250, slot));
+        assertEquals(250, seen.cardinality());
+    }
+
+    @Test
+    void ordersDependOnlyOnTheSeed() {
+        Shuffle a = Shuffle.forStudent("Asha@Example.com", 2024), b = Shuffle.forStudent("asha@example.com", 2024);
+        assertEquals(a.getSeed(), b.getSeed());
+        assertNotEquals(a.getSeed(), Shuffle.forStudent("asha@example.com", 2025).getSeed());
+        Shuffle c = new Shuffle(a.getSeed());
+        for (int slot = 0; slot < 50; slot++)
+            assertEquals(a.question(0, 50, slot), c.question(0, 50, slot));
+    }
+
+    @Test
+    void everyOptionOrderTurnsUp() {
+        // the four options have 24 orders; the small shuffle must reach them all
+        BitSet orders = new BitSet(256);
+        Shuffle s = new Shuffle(5);
+        for (int position = 0; position < 2000; position++) {
+            int code = 0;
+            for (int d = 0; d < 4; d++)
+                code = code << 2 | s.option(position, 4, d);
+            orders.set(code);
+        }
+        assertEquals(24, orders.cardinality());
+    }
+}
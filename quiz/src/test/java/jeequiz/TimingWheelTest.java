@@ -0,0 +1,93 @@
+package jeequiz;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.Test;
+
+// TimingWheelTest : runs timers on both sides of the level boundaries (so
+// they are cascaded down once or twice) and checks that none fires early,
+// and that cancelled timers never run
+
+class TimingWheelTest {
+
+    @Test
+    void timersAcrossLevelBoundariesFireInTime() throws InterruptedException {
+        // with a 1 ms tick level 1 starts at 64 ticks and level 2 at 4096
+        long[] delays = { 0, 1, 5, 63, 64, 65, 127, 128, 130, 1000, 4095, 4096, 4097, 4200 };
+        AtomicLongArray fired = new AtomicLongArray(delays.length);
+        CountDownLatch done = new CountDownLatch(delays.length);
+        try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+            long start = System.nanoTime();
+            for (int i = 0; i < delays.length; i++) {
+                int k = i;
+                wheel.schedule(() -> {
+                    fired.set(k, System.nanoTime() - start);
+                    done.countDown();
+                }, delays[i]);
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS), "timers still pending: " + wheel.getPending());
+            assertEquals(0, wheel.getPending());
+        }
+        for (int i = 0; i < delays.length; i++) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(fired.get(i));
+            assertTrue(fired.get(i) >= TimeUnit.MILLISECONDS.toNanos(delays[i]),
+                    "timer of " + delays[i] + " ms fired after " + millis + " ms");
+        }
+    }
+
+    @Test
+    void cancelledTimersNeverRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch kept = new CountDownLatch(1);
+        try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+            TimingWheel.Timeout near = wheel.schedule(runs::incrementAndGet, 20);
+            TimingWheel.Timeout far = wheel.schedule(runs::incrementAndGet, 200);
+            wheel.schedule(kept::countDown, 250);
+            assertEquals(3, wheel.getPending());
+            assertTrue(near.cancel());
+            assertTrue(far.cancel());
+            assertFalse(far.cancel());
+            assertEquals(1, wheel.getPending());
+            assertTrue(kept.await(10, TimeUnit.SECONDS));
+        }
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void cancelAfterRunningReturnsFalse() throws InterruptedException {
+        CountDownLatch ran = new CountDownLatch(1);
+        try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+            TimingWheel.Timeout t = wheel.schedule(ran::countDown, 2);
+            assertTrue(ran.await(10, TimeUnit.SECONDS));
+            assertFalse(t.cancel());
+        }
+    }
+
+    @Test
+    void failingTaskIsCountedAndTheWheelGoesOn() throws InterruptedException {
+        CountDownLatch after = new CountDownLatch(1);
+        try (TimingWheel wheel = new TimingWheel(1, "test-wheel")) {
+            wheel.schedule(() -> {
+                throw new IllegalStateException("boom");
+            }, 1);
+            wheel.schedule(after::countDown, 10);
+            assertTrue(after.await(10, TimeUnit.SECONDS));
+            assertEquals(1, wheel.getFailures());
+        }
+    }
+
+    @Test
+    void closedWheelRefusesTimers() {
+        TimingWheel wheel = new TimingWheel(1, "test-wheel");
+        wheel.close();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> { }, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, "bad"));
+    }
+}